@@ -0,0 +1,195 @@
+/**
+ * Broker@Cloud Verification and Testing Tool Suite.
+ * Copyright (C) 2015 Anthony J H Simons and Raluca Lefticaru, 
+ * University of Sheffield, UK.  All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This file is "foreground software", developed as an output of 
+ * the European Union collaborative research project, "Broker@Cloud: 
+ * enabling continuous quality assurance and optimization in future 
+ * enterprise cloud service brokers", FP7-ICT-2011-8 no. 318392, and
+ * is licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or 
+ * implied.  See the License for the specific language governing 
+ * permissions and limitations under the License.
+ * 
+ * The freedoms granted by the License to incorporate, redistribute,
+ * modify or extend the software apply only to "foreground software"
+ * contributed by the Broker@Cloud project; and not to any proprietary 
+ * software, or "background software" incorporated from other sources, 
+ * which may be offered under different terms of usage.
+ * 
+ * Please contact the Department of Computer Science, University of
+ * Sheffield, Regent Court, 211 Portobello, Sheffield S1 4DP, UK or
+ * visit www.sheffield.ac.uk/dcs if you need additional information 
+ * or have any questions.
+ */
+
+
+package uk.ac.sheffield.vtts;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.jast.ast.ASTError;
+import org.jast.ast.ASTReader;
+import org.jast.ast.NodeError;
+
+import uk.ac.sheffield.vtts.model.ScenarioCompiler;
+import uk.ac.sheffield.vtts.model.SemanticError;
+import uk.ac.sheffield.vtts.model.Service;
+
+/**
+ * Program that compares the speed of the tree interpreter with the speed of
+ * the optional bytecode backend, when generating tests from an XML service
+ * specification.  For each backend, the program reads a fresh copy of the
+ * specification, generates the test suite repeatedly to warm up the JIT 
+ * compiler, then reports the mean time taken by a further number of timed
+ * rounds, and the number of TestSequences generated in each round.  The 
+ * output of the model during each round is suppressed, so that only the
+ * simulation is timed.
+ * <p>
+ * This harness lives outside the main source tree, since it is not part of
+ * the framework.  It uses no benchmarking library, since none is shipped
+ * in lib/; instead, it follows the usual discipline of separate warm-up
+ * and timed rounds, over one model per backend.  Compile it against the 
+ * built classes and the JAST and ASM libraries, then run, for example:
+ * <pre>
+ * java -cp build/classes:bench:lib/* uk.ac.sheffield.vtts.BenchmarkScenarios
+ *     VatClearance.xml 4 5 20
+ * </pre>
+ * 
+ * Requires ASTReader, ASTError, NodeError from the JAST package.
+ * 
+ * @author Anthony J H Simons
+ * @version Broker@Cloud 1.0
+ */
+public class BenchmarkScenarios {
+	
+	/**
+	 * Reads the XML service specification from the input file.
+	 * @param inputFile the XML service specification file.
+	 * @return the unmarshalled Service.
+	 * @throws IOException if a file system related I/O error occurs.
+	 * @throws ASTError if an XML syntax error is found in the input.
+	 * @throws NodeError if the input does not contain a Service.
+	 */
+	private static Service readService(File inputFile) throws IOException,
+			ASTError, NodeError {
+		ASTReader reader = null;
+		try {
+			reader = new ASTReader(inputFile);
+			reader.usePackage("uk.ac.sheffield.vtts.model");
+			return (Service) reader.readDocument();
+		}
+		catch (ClassCastException ex) {
+			throw new NodeError("XML file must contain root element: Service");
+		}
+		finally {
+			if (reader != null) reader.close();
+		}
+	}
+	
+	/**
+	 * Times the generation of tests from a fresh copy of the specification,
+	 * using either the bytecode backend or the tree interpreter.  Since a
+	 * Scenario keeps its bytecode once compiled, each backend is timed on
+	 * its own copy of the specification.
+	 * @param inputFile the XML service specification file.
+	 * @param bytecode true, to use the bytecode backend.
+	 * @param testDepth the test depth.
+	 * @param warmups the number of warm-up rounds.
+	 * @param rounds the number of timed rounds.
+	 * @throws IOException if a file system related I/O error occurs.
+	 * @throws ASTError if an XML syntax error is found in the input.
+	 * @throws NodeError if the input does not contain a Service.
+	 * @throws SemanticError if a semantic error is detected in the model.
+	 */
+	private static void benchmark(File inputFile, boolean bytecode, 
+			int testDepth, int warmups, int rounds) throws IOException, 
+			ASTError, NodeError, SemanticError {
+		ScenarioCompiler.setEnabled(bytecode);
+		Service service = readService(inputFile);
+		PrintStream console = System.out;
+		PrintStream silent = new PrintStream(new OutputStream() {
+			public void write(int b) {}
+		});
+		int size = 0;
+		long elapsed = 0;
+		try {
+			System.setOut(silent);
+			for (int round = 0; round < warmups; ++round)
+				service.generateTests(testDepth, false);
+			for (int round = 0; round < rounds; ++round) {
+				long start = System.nanoTime();
+				size = service.generateTests(testDepth, false).size();
+				elapsed += System.nanoTime() - start;
+			}
+		}
+		finally {
+			System.setOut(console);
+		}
+		System.out.println((bytecode ? "Bytecode backend: " : 
+			"Tree interpreter: ") + (elapsed / rounds / 1000000L) + 
+			" ms per round, " + size + " test sequences.");
+	}
+	
+	/**
+	 * Reads an XML service specification from the input file, and times
+	 * the generation of tests using the tree interpreter, then using the 
+	 * bytecode backend.
+	 * @param args the XML service specification file, containing a root
+	 * Service node; and optionally an integer test depth (two by default),
+	 * an integer number of warm-up rounds (five by default) and an integer
+	 * number of timed rounds (twenty by default).
+	 * @throws IOException if a file system related I/O error occurs.
+	 * @throws IllegalArgumentException if an invalid argument is supplied.
+	 * @throws ASTError if an XML syntax error is found in the input.
+	 * @throws NodeError if marshalling or unmarshalling the model fails.
+	 * @throws SemanticError if a semantic error is detected in the model.
+	 */
+	public static void main(String[] args) throws IOException, IllegalArgumentException,
+			ASTError, NodeError, SemanticError {
+		System.out.println("Starting program: BenchmarkScenarios.\n");
+		
+		if (args.length > 0) {
+			
+			if (! args[0].endsWith(".xml")) {
+				throw new IllegalArgumentException(
+						"First argument must be an XML specification.");
+			}
+			
+			File inputFile = new File(args[0]);
+			int[] settings = { 2, 5, 20 };
+			for (int index = 1; index < args.length && index <= 3; ++index) {
+				try {
+					settings[index - 1] = Integer.parseInt(args[index]);
+				}
+				catch (NumberFormatException ex) {
+					throw new IllegalArgumentException(
+							"Optional arguments must be integers.");
+				}
+			}
+			if (settings[2] < 1)
+				throw new IllegalArgumentException(
+						"Number of timed rounds must be positive.");
+			
+			benchmark(inputFile, false, settings[0], settings[1], settings[2]);
+			benchmark(inputFile, true, settings[0], settings[1], settings[2]);
+		}
+		else
+			System.out.println("Usage: java BenchmarkScenarios <specFile.xml> [<testDepth:int> <warmups:int> <rounds:int>]");
+		
+		System.out.println("\nProgram completed with success.");
+	}
+
+}
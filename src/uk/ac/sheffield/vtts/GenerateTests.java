@@ -82,7 +82,8 @@ public class GenerateTests {
 	 * Service node; and optionally an integer test depth (zero by default)
 	 * and a boolean flag to indicate multi-objective testing (false by 
 	 * default).  Values for the optional parameters may also be set in the
-	 * service specification.
+	 * service specification.  Finally, an optional integer number of threads
+	 * (one by default) may be supplied, to speed up the simulation.
 	 * @throws IOException if a file system related I/O error occurs.
 	 * @throws IllegalArgumentException if an invalid argument is supplied.
 	 * @throws ASTError if an XML syntax error is found in the input.
@@ -143,7 +144,19 @@ public class GenerateTests {
 				multiTest = Boolean.parseBoolean(args[2]);
 			}
 
-			TestSuite testSuite = service.generateTests(testDepth, multiTest);
+			int threads = 1;
+			if (args.length > 3) {
+				try {
+					threads = Integer.parseInt(args[3]);
+				}
+				catch (NumberFormatException ex) {
+					throw new IllegalArgumentException(
+							"Fourth argument must be an integer number of threads.");
+				}
+			}
+
+			TestSuite testSuite = 
+					service.generateTests(testDepth, multiTest, threads);
 
 			ASTWriter writer = null;
 			try{
@@ -158,7 +171,7 @@ public class GenerateTests {
 			System.out.println("Marshalled the test suite to output file: " + outputFile);
 		}
 		else
-			System.out.println("Usage: java GenerateTests <specFile.xml> [<testDepth:int> <multiTest:bool>]");
+			System.out.println("Usage: java GenerateTests <specFile.xml> [<testDepth:int> <multiTest:bool> <threads:int>]");
 
 		System.out.println("\nProgram completed with success.");
 	}
@@ -74,7 +74,8 @@ public class VerifyProtocol {
 	 * a possible fault in the specification.  Uses a symbolic subsumption
 	 * checking algorithm, which is conservative.
 	 * @param args the XML service specification file, containing a root
-	 * Service node.
+	 * Service node; and optionally an integer number of threads (one by
+	 * default), to check the operations of the protocol concurrently.
 	 * @throws IOException if a file system related I/O error occurs.
 	 * @throws IllegalArgumentException if an invalid argument is supplied.
 	 * @throws ASTError if an XML syntax error is found in the input.
@@ -115,7 +116,18 @@ public class VerifyProtocol {
 			String outputName = service.getName() + "Verification.xml";
 			File outputFile = new File(directory, outputName);
 
-			service.verifyProtocol();
+			int threads = 1;
+			if (args.length > 1) {
+				try {
+					threads = Integer.parseInt(args[1]);
+				}
+				catch (NumberFormatException ex) {
+					throw new IllegalArgumentException(
+							"Second argument must be an integer number of threads.");
+				}
+			}
+
+			service.verifyProtocol(threads);
 
 			ASTWriter writer = null;
 			try{
@@ -130,7 +142,7 @@ public class VerifyProtocol {
 			System.out.println("Marshalled the verification to output file: " + outputFile);
 		}
 		else
-			System.out.println("Usage: java VerifyProtocol <specFile.xml>");
+			System.out.println("Usage: java VerifyProtocol <specFile.xml> [<threads:int>]");
 
 		System.out.println("\nProgram completed with success.");
 	}
@@ -35,6 +35,7 @@
 package uk.ac.sheffield.vtts.ground;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -68,6 +69,11 @@ import java.util.Map.Entry;
  * that collection type; however, if a single element value is provided,
  * a singleton collection will be created.  The wildcard "?" represents the
  * default singleton value.
+ * <p>
+ * Collection values are parsed in place, as regions of the original value
+ * text, recursing into nested List, Set, Map and Pair values without first
+ * copying them out.  Only the values of simple elements are extracted as
+ * separate Strings, when the elements themselves are created.
  * 
  * @author Anthony J H Simons
  * @version Broker@Cloud 1.0
@@ -151,6 +157,82 @@ public abstract class AbstractFactory implements Factory {
 		return result;
 	}
 	
+	/**
+	 * Finds the end of the next item in a separated region of a value-text,
+	 * while respecting bracketed structures.  Scans the region from the given
+	 * start index, counting all kinds of brackets, and returns the index of
+	 * the first separator found at the top level.  This divides the region
+	 * exactly as safeSplit() would, but without copying out any substrings.
+	 * The separator must not overlap with itself.
+	 * @param text the value-text to search.
+	 * @param start the start index of the next item.
+	 * @param end the end index of the separated region.
+	 * @param separator the separator pattern.
+	 * @return the index of the next separator; or the end index, if this is 
+	 * the last item; or -1, if the rest of the region is unbalanced.
+	 */
+	protected int safeEndOf(CharSequence text, int start, int end, 
+			String separator) {
+		int brackets = 0;
+		int limit = end - separator.length();
+		for (int index = start; index < end; ++index) {
+			char current = text.charAt(index);
+			if ("<[{(".indexOf(current) != -1)
+				++brackets;
+			else if (">]})".indexOf(current) != -1)
+				--brackets;
+			else if (brackets == 0 && index <= limit) {
+				boolean match = true;
+				for (int seek = 0; seek < separator.length(); ++seek) {
+					if (separator.charAt(seek) != text.charAt(index + seek)) {
+						match = false;
+						break;
+					}
+				}
+				if (match)
+					return index;
+			}
+		}
+		return brackets == 0 ? end : -1;
+	}
+	
+	/**
+	 * Extracts the value of a simple element from a region of a value-text.
+	 * This is the only point at which a separate String is created for part
+	 * of a larger value.
+	 * @param text the value-text, or null.
+	 * @param start the start index of the region.
+	 * @param end the end index of the region.
+	 * @return the element value, or null if there is no value-text.
+	 */
+	protected String valueOf(CharSequence text, int start, int end) {
+		return text == null ? null : text.subSequence(start, end).toString();
+	}
+	
+	/**
+	 * Reports whether a region of a value-text denotes a missing value.  This
+	 * is so if there is no value-text, or if the region is empty.
+	 * @param text the value-text, or null.
+	 * @param start the start index of the region.
+	 * @param end the end index of the region.
+	 * @return true, if the region denotes a missing value.
+	 */
+	private boolean isMissing(CharSequence text, int start, int end) {
+		return text == null || start == end;
+	}
+	
+	/**
+	 * Reports whether a region of a value-text is the wildcard "?", standing
+	 * for the default singleton value.
+	 * @param text the value-text.
+	 * @param start the start index of the region.
+	 * @param end the end index of the region.
+	 * @return true, if the region is the wildcard.
+	 */
+	private boolean isWildcard(CharSequence text, int start, int end) {
+		return end - start == 1 && text.charAt(start) == '?';
+	}
+	
 	/**
 	 * Try to synthesise an Entity ID in cases where these are manufactured.
 	 * The default ID is the first three characters of the Entity type, in
@@ -255,33 +337,83 @@ public abstract class AbstractFactory implements Factory {
 	 */
 	protected abstract Object createExternalObject(String value, String type);
 	
+	/**
+	 * Creates an instance of any kind of Object, whose printed representation
+	 * is a region of a larger value-text.  This is the recursive entry point
+	 * used to create the elements of List, Set, Map and Pair objects.  It is
+	 * abstract and must be implemented in descendant factories, which should
+	 * dispatch on the type, in their own type syntax, to create generic
+	 * objects directly from the region, and extract a value for simple 
+	 * objects using valueOf().
+	 * @param text the value-text, or null for a default instance.
+	 * @param start the start index of the region.
+	 * @param end the end index of the region.
+	 * @param type the type, as a String.
+	 * @return a new instance of the type.
+	 */
+	protected abstract Object createObject(CharSequence text, int start, 
+			int end, String type);
+	
+	/**
+	 * Adds the elements of a List or Set value to a collection.  Each element
+	 * is a top-level item of the region, separated by ", ", and is created
+	 * in place from its own sub-region.
+	 * @param result the collection to populate.
+	 * @param text the value-text.
+	 * @param start the start index of the element region, after "[".
+	 * @param end the end index of the element region, before "]".
+	 * @param type the element type, as a String.
+	 */
+	private void addElements(Collection<Object> result, CharSequence text, 
+			int start, int end, String type) {
+		for (int item = start; item <= end; ) {
+			int next = safeEndOf(text, item, end, ", ");
+			if (next == -1)
+				break;
+			result.add(createObject(text, item, next, type));
+			item = next + 2;
+		}
+	}
+	
+	/**
+	 * Adds a single element to a List or Set, in the case that the value is
+	 * not bracketed.  The wildcard "?" creates a default element.
+	 * @param result the collection to populate.
+	 * @param text the value-text.
+	 * @param start the start index of the element.
+	 * @param end the end index of the element.
+	 * @param type the element type, as a String.
+	 */
+	private void addSingleton(Collection<Object> result, CharSequence text,
+			int start, int end, String type) {
+		if (isWildcard(text, start, end))
+			result.add(createObject(null, 0, 0, type));
+		else
+			result.add(createObject(text, start, end, type));
+	}
+	
 	/**
 	 * Creates a generic List of the given element type, having the given 
 	 * value.  The value may be null or empty, in which case an empty List
 	 * is returned.  Otherwise, the value must be the printed representation
 	 * of a List, surrounded by square brackets, with comma-separated values
 	 * as the elements; or a singleton value.
-	 * @param value the list-value, as a String.
+	 * @param text the value-text, or null.
+	 * @param start the start index of the list-value.
+	 * @param end the end index of the list-value.
 	 * @param params the generic List type parameters.
 	 * @return a new List of the given generic type.
 	 */
-	protected List<Object> createListObject(String value, 
-			List<String> params) {
+	protected List<Object> createListObject(CharSequence text, int start, 
+			int end, List<String> params) {
 		if (params.size() != 1)
 			error("Badly-formed List type: List" + params);
 		List<Object> result = new ArrayList<Object>();
-		if (! (value == null || value == "")) {
-			int last = value.length() - 1;
-			if (value.charAt(0) == '[' &&  value.charAt(last) == ']') {
-				String elemList = value.substring(1, last);
-				for (String elem : safeSplit(elemList, ", ")) {
-					result.add(createObject(elem, params.get(0)));
-				}
-			}
-			else {
-				String single = value.equals("?") ? null : value;
-				result.add(createObject(single, params.get(0)));
-			}
+		if (! isMissing(text, start, end)) {
+			if (text.charAt(start) == '[' && text.charAt(end - 1) == ']')
+				addElements(result, text, start + 1, end - 1, params.get(0));
+			else
+				addSingleton(result, text, start, end, params.get(0));
 		}
 		return result;
 	}
@@ -292,27 +424,22 @@ public abstract class AbstractFactory implements Factory {
 	 * is returned.  Otherwise, the value must be the printed representation
 	 * of a Set, surrounded by square brackets, with comma-separated values
 	 * as the elements; or a singleton value.
-	 * @param value the set-value, as a String.
+	 * @param text the value-text, or null.
+	 * @param start the start index of the set-value.
+	 * @param end the end index of the set-value.
 	 * @param params the generic Set type parameters.
 	 * @return a new Set of the given generic type.
 	 */
-	protected Set<Object> createSetObject(String value, 
-			List<String> params) {
+	protected Set<Object> createSetObject(CharSequence text, int start, 
+			int end, List<String> params) {
 		if (params.size() != 1)
 			error("Badly-formed Set type: Set" + params);
 		Set<Object> result = new HashSet<Object>();
-		if (! (value == null || value == "")) {
-			int last = value.length() - 1;
-			if (value.charAt(0) == '[' &&  value.charAt(last) == ']') {
-				String elemList = value.substring(1, last);
-				for (String elem : safeSplit(elemList, ", ")) {
-					result.add(createObject(elem, params.get(0)));
-				}
-			}
-			else {
-				String single = value.equals("?") ? null : value;
-				result.add(createObject(single, params.get(0)));
-			}
+		if (! isMissing(text, start, end)) {
+			if (text.charAt(start) == '[' && text.charAt(end - 1) == ']')
+				addElements(result, text, start + 1, end - 1, params.get(0));
+			else
+				addSingleton(result, text, start, end, params.get(0));
 		}
 		return result;
 	}
@@ -324,29 +451,33 @@ public abstract class AbstractFactory implements Factory {
 	 * representation of a Map, surrounded by braces, with comma-separated
 	 * values as the pair-elements.  Each pair-element must separate the
 	 * first and second values with "=".
-	 * @param value the map-value, as a String.
+	 * @param text the value-text, or null.
+	 * @param start the start index of the map-value.
+	 * @param end the end index of the map-value.
 	 * @param params the generic Map type parameters.
 	 * @return a new Map of the given generic type.
 	 */
-	protected Map<Object, Object> createMapObject(String value, 
-			List<String> params) {
+	protected Map<Object, Object> createMapObject(CharSequence text, 
+			int start, int end, List<String> params) {
 		if (params.size() != 2)
 			error("Badly-formed Map type: Map" + params);
 		Map<Object, Object> result = new HashMap<Object, Object>();
-		if (! (value == null || value == "")) {
-			int last = value.length() - 1;
-			if (value.charAt(0) == '{' &&  value.charAt(last) == '}') {
-				String elemList = value.substring(1, last);
-				for (String elem : safeSplit(elemList, ", ")) {
+		if (! isMissing(text, start, end)) {
+			if (text.charAt(start) == '{' && text.charAt(end - 1) == '}') {
+				for (int item = start + 1; item <= end - 1; ) {
+					int next = safeEndOf(text, item, end - 1, ", ");
+					if (next == -1)
+						break;
 					Entry<Object, Object> entry = 
-							createPairObject(elem, params);
+							createPairObject(text, item, next, params);
 					result.put(entry.getKey(), entry.getValue());
+					item = next + 2;
 				}
 			}
 			else {
-				String single = value.equals("?") ? null : value;
-				Entry<Object, Object> entry =
-						createPairObject(single, params);
+				Entry<Object, Object> entry = isWildcard(text, start, end) ?
+						createPairObject(null, 0, 0, params) :
+						createPairObject(text, start, end, params);
 				result.put(entry.getKey(), entry.getValue());
 			}
 		}
@@ -361,32 +492,52 @@ public abstract class AbstractFactory implements Factory {
 	 * Entry is created with that key and a default object of the second type.
 	 * Otherwise, the value must be the printed representation of a Pair,
 	 * with the first and second components separated by "=".  
-	 * @param value the pair-value, as a String.
+	 * @param text the value-text, or null.
+	 * @param start the start index of the pair-value.
+	 * @param end the end index of the pair-value.
 	 * @param params the generic Entry type parameters.
 	 * @return a new Entry of the given generic type.
 	 */
-	protected Entry<Object, Object> createPairObject(String value, 
-			List<String> params) {
+	protected Entry<Object, Object> createPairObject(CharSequence text, 
+			int start, int end, List<String> params) {
 		if (params.size() != 2)
 			error("Badly-formed Pair type: Entry" + params);
 		Entry<Object, Object> result = null;
-		if (value == null || value == "") {
+		if (isMissing(text, start, end)) {
 			result = new SimpleEntry<Object, Object> (
-					createObject(null, params.get(0)),
-					createObject(null, params.get(1)));
+					createObject(null, 0, 0, params.get(0)),
+					createObject(null, 0, 0, params.get(1)));
 		}
 		else {
-			List<String> pair = safeSplit(value, "=");
-			if (pair.size() == 1)
+			// Count up to three top-level parts, recording the first two
+			int parts = 0;
+			int keyEnd = 0;
+			int valueStart = 0;
+			int valueEnd = 0;
+			for (int item = start; item <= end && parts < 3; ) {
+				int next = safeEndOf(text, item, end, "=");
+				if (next == -1)
+					break;
+				if (parts == 0)
+					keyEnd = next;
+				else if (parts == 1) {
+					valueStart = item;
+					valueEnd = next;
+				}
+				++parts;
+				item = next + 1;
+			}
+			if (parts == 1)
 				result = new SimpleEntry<Object, Object> (
-						createObject(pair.get(0), params.get(0)),
-						createObject(null, params.get(1)));
-			else if (pair.size() == 2)
-			result = new SimpleEntry<Object, Object> (
-					createObject(pair.get(0), params.get(0)),
-					createObject(pair.get(1), params.get(1)));
+						createObject(text, start, keyEnd, params.get(0)),
+						createObject(null, 0, 0, params.get(1)));
+			else if (parts == 2)
+				result = new SimpleEntry<Object, Object> (
+						createObject(text, start, keyEnd, params.get(0)),
+						createObject(text, valueStart, valueEnd, 
+								params.get(1)));
 			else
-				error("Badly-formed Pair value: " + value);
+				error("Badly-formed Pair value: " + valueOf(text, start, end));
 		}
 		return result;
 	}
@@ -97,6 +97,24 @@ public class JavaFactory extends AbstractFactory {
 	 * @return a new instance of the type.
 	 */
 	public Object createObject(String value, String type) {
+		return createObject(value, 0, value == null ? 0 : value.length(), 
+				type);
+	}
+	
+	/**
+	 * Creates an instance of any kind of Java Object, whose printed 
+	 * representation is a region of a larger value-text.  This is called
+	 * recursively to create the elements of List, Set, Map and Pair objects
+	 * in place.  It expects the type to be supplied in the Java format.
+	 * @param text the value-text, or null.
+	 * @param start the start index of the region.
+	 * @param end the end index of the region.
+	 * @param type the Java type, as a String.
+	 * @return a new instance of the type.
+	 */
+	@Override
+	protected Object createObject(CharSequence text, int start, int end, 
+			String type) {
 		Object result = null;
 		int left = type.indexOf('<');
 		int right = type.lastIndexOf('>');
@@ -106,19 +124,19 @@ public class JavaFactory extends AbstractFactory {
 			String params = type.substring(left + 1, right);
 			List<String> paramList = safeSplit(params, ", ");
 			if (base.equals("ArrayList"))
-				result = createListObject(value, paramList);
+				result = createListObject(text, start, end, paramList);
 			else if (base.equals("HashSet"))
-				result = createSetObject(value, paramList);
+				result = createSetObject(text, start, end, paramList);
 			else if (base.equals("HashMap"))
-				result = createMapObject(value, paramList);
+				result = createMapObject(text, start, end, paramList);
 			else if (base.equals("SimpleEntry"))
-				result = createPairObject(value, paramList);
+				result = createPairObject(text, start, end, paramList);
 			else
 				error("Unrecognised generic type: " + type);
 		}
 		// Check there are no opening and closing generic brackets
 		else if (left + right == -2)
-			result = createSimpleObject(value, type);
+			result = createSimpleObject(valueOf(text, start, end), type);
 		else
 			error("Badly-formed generic type: " + type);
 		return result;
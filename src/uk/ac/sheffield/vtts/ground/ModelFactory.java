@@ -36,13 +36,17 @@ package uk.ac.sheffield.vtts.ground;
 
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import uk.ac.sheffield.vtts.ground.TypeDescriptor.Kind;
 import uk.ac.sheffield.vtts.model.Entity;
 
 /**
@@ -61,12 +65,120 @@ import uk.ac.sheffield.vtts.model.Entity;
  * expressed as possibly nested types in the expression language.  As well
  * as extracting the value-type of lists and the key- and value-types of
  * maps, it is possible to extract the cognate pair-type for map entries.
+ * Each distinct type String is parsed only once, into a TypeDescriptor, 
+ * which is cached by this ModelFactory.  Object creation and the type API
+ * then consult the cached TypeDescriptor.
  * 
  * @author Anthony J H Simons
  * @version Broker@Cloud 1.0
  */
 public class ModelFactory extends AbstractFactory {
 	
+	/**
+	 * The decimal fraction by which a floating point value grows or shrinks
+	 * to its successor or predecessor.
+	 */
+	private static final double FRACTION = 0.3;
+	
+	/**
+	 * The cached TypeDescriptors, indexed by type name.  This ModelFactory
+	 * is shared by all model Expressions, so the cache is concurrent.
+	 */
+	private final ConcurrentMap<String, TypeDescriptor> descriptors = 
+			new ConcurrentHashMap<String, TypeDescriptor>();
+	
+	/**
+	 * Returns the TypeDescriptor for a type.  Parses the type, if it has not
+	 * been parsed before, and caches the result; otherwise returns the 
+	 * cached TypeDescriptor.
+	 * @param type the model type, as a String.
+	 * @return the TypeDescriptor for the type.
+	 */
+	public TypeDescriptor getDescriptor(String type) {
+		TypeDescriptor result = descriptors.get(type);
+		if (result == null) {
+			result = parse(type);
+			TypeDescriptor previous = descriptors.putIfAbsent(type, result);
+			if (previous != null)
+				result = previous;
+		}
+		return result;
+	}
+	
+	/**
+	 * Parses a type in the model language.  A generic type has a base-type
+	 * name, followed by type parameters in square brackets, separated by 
+	 * ", ".  Its value-type is the last symbol before the closing bracket;
+	 * its key-type is the first symbol after the opening bracket, if there
+	 * are two type parameters, otherwise "Integer"; and its pair-type is
+	 * "Pair[K, V]" with the same key-type and value-type.  A type without
+	 * brackets is a simple type.  Any other type is badly-formed.
+	 * @param type the model type, as a String.
+	 * @return a new TypeDescriptor for the type.
+	 */
+	protected TypeDescriptor parse(String type) {
+		int left = type.indexOf('[');
+		int right = type.lastIndexOf(']');
+		if (left > -1 && left < right) {
+			String base = type.substring(0, left);
+			Kind kind = Kind.INVALID;
+			if (base.equals("List"))
+				kind = Kind.LIST;
+			else if (base.equals("Set"))
+				kind = Kind.SET;
+			else if (base.equals("Map"))
+				kind = Kind.MAP;
+			else if (base.equals("Pair"))
+				kind = Kind.PAIR;
+			List<String> params = Collections.unmodifiableList(
+					safeSplit(type.substring(left + 1, right), ", "));
+			int space = safeIndexOf(type, ' ', left + 1);
+			int start = (space < 0 ? left : space) + 1;
+			String valueType = type.substring(start, right);
+			int end = safeIndexOf(type, ',', left + 1);
+			String keyType = (end != -1 ? 
+					type.substring(left + 1, end) : "Integer");
+			String pairType = (end != -1 ? "Pair[" : "Pair[Integer, ") + 
+					type.substring(left + 1);
+			return new TypeDescriptor(this, type, kind, base, params, 
+					keyType, valueType, pairType);
+		}
+		else if (left + right == -2)
+			return new TypeDescriptor(this, type, getSimpleKind(type));
+		else
+			return new TypeDescriptor(this, type, Kind.INVALID);
+	}
+	
+	/**
+	 * Returns the kind of a simple type.  Recognises the predefined types
+	 * String, Integer, Double, Long, Boolean, Character, Float, Short and
+	 * Byte.  Any other type is an external type.
+	 * @param type the simple type, as a String.
+	 * @return the kind of the simple type.
+	 */
+	protected Kind getSimpleKind(String type) {
+		if (type.equals("String"))
+			return Kind.STRING;
+		else if (type.equals("Integer"))
+			return Kind.INTEGER;
+		else if (type.equals("Double"))
+			return Kind.DOUBLE;
+		else if (type.equals("Long"))
+			return Kind.LONG;
+		else if (type.equals("Boolean"))
+			return Kind.BOOLEAN;
+		else if (type.equals("Character"))
+			return Kind.CHARACTER;
+		else if (type.equals("Float"))
+			return Kind.FLOAT;
+		else if (type.equals("Short"))
+			return Kind.SHORT;
+		else if (type.equals("Byte"))
+			return Kind.BYTE;
+		else
+			return Kind.EXTERNAL;
+	}
+	
 	/**
 	 * Creates a default instance of any kind of model Object with the given
 	 * model type.  This is a convenience for creating model instances when
@@ -91,28 +203,78 @@ public class ModelFactory extends AbstractFactory {
 	 * @return a new instance of the model type.
 	 */
 	public Object createObject(String value, String type) {
+		return createObject(value, getDescriptor(type));
+	}
+	
+	/**
+	 * Creates an instance of any kind of model Object with the given printed
+	 * representation and parsed model type.  Dispatches on the kind of the
+	 * type, to create a List, Set, Map, Pair or simple object.
+	 * @param value the value, as a String.
+	 * @param type the TypeDescriptor of the model type.
+	 * @return a new instance of the model type.
+	 */
+	public Object createObject(String value, TypeDescriptor type) {
+		return createObject(value, 0, value == null ? 0 : value.length(), 
+				type);
+	}
+	
+	/**
+	 * Creates an instance of any kind of model Object, whose printed 
+	 * representation is a region of a larger value-text.  This is called 
+	 * recursively to create the elements of List, Set, Map and Pair objects
+	 * in place.  It expects the type to be supplied in the modelling 
+	 * language format.
+	 * @param text the value-text, or null.
+	 * @param start the start index of the region.
+	 * @param end the end index of the region.
+	 * @param type the model type, as a String.
+	 * @return a new instance of the model type.
+	 */
+	@Override
+	protected Object createObject(CharSequence text, int start, int end, 
+			String type) {
+		return createObject(text, start, end, getDescriptor(type));
+	}
+	
+	/**
+	 * Creates an instance of any kind of model Object, whose printed 
+	 * representation is a region of a larger value-text, with the given
+	 * parsed model type.  Dispatches on the kind of the type, to create a
+	 * List, Set, Map or Pair object directly from the region, or else to
+	 * create a simple object from the extracted value.
+	 * @param text the value-text, or null.
+	 * @param start the start index of the region.
+	 * @param end the end index of the region.
+	 * @param type the TypeDescriptor of the model type.
+	 * @return a new instance of the model type.
+	 */
+	protected Object createObject(CharSequence text, int start, int end, 
+			TypeDescriptor type) {
 		Object result = null;
-		int left = type.indexOf('[');
-		int right = type.lastIndexOf(']');
-		if (left > -1 && right > -1) {
-			String base = type.substring(0, left);
-			String params = type.substring(left + 1, right);
-			List<String> paramList = safeSplit(params, ", ");
-			if (base.equals("List"))
-				result = createListObject(value, paramList);
-			else if (base.equals("Set"))
-				result = createSetObject(value, paramList);
-			else if (base.equals("Map"))
-				result = createMapObject(value, paramList);
-			else if (base.equals("Pair"))
-				result = createPairObject(value, paramList);
-			else
+		switch (type.getKind()) {
+		case LIST:
+			result = createListObject(text, start, end, type.getParameters());
+			break;
+		case SET:
+			result = createSetObject(text, start, end, type.getParameters());
+			break;
+		case MAP:
+			result = createMapObject(text, start, end, type.getParameters());
+			break;
+		case PAIR:
+			result = createPairObject(text, start, end, type.getParameters());
+			break;
+		case INVALID:
+			if (type.isGeneric())
 				error("unrecognised generic type: " + type);
+			else
+				error("Badly-formed generic type: " + type);
+			break;
+		default:
+			result = createSimpleObject(valueOf(text, start, end), 
+					type.getName());
 		}
-		else if (left + right == -2)
-			result = createSimpleObject(value, type);
-		else
-			error("Badly-formed generic type: " + type);
 		return result;
 	}
 
@@ -143,11 +305,10 @@ public class ModelFactory extends AbstractFactory {
 	 * @return the base-type, one of List, Set, Map or Pair.
 	 */
 	public String getBaseType(String paramType) {
-		int left = paramType.indexOf('[');
-		int right = paramType.lastIndexOf(']');  // just checking this
-		if (left == -1 || right == -1)
+		TypeDescriptor type = getDescriptor(paramType);
+		if (! type.isGeneric())
 			error("Cannot extract base type of: " + paramType);
-		return paramType.substring(0, left);
+		return type.getBaseType();
 	}
 
 	/**
@@ -161,13 +322,10 @@ public class ModelFactory extends AbstractFactory {
 	 * @return the value-type, the main element type, or second projection.
 	 */
 	public String getValueType(String paramType) {
-		int left = paramType.indexOf('[');  // just checking this
-		int right = paramType.lastIndexOf(']');
-		if (left == -1 || right == -1)
+		TypeDescriptor type = getDescriptor(paramType);
+		if (! type.isGeneric())
 			error("Cannot extract value type of: " + paramType);
-		int space = safeIndexOf(paramType, ' ', left+1);
-		int start = (space < 0 ? left : space) + 1;
-		return paramType.substring(start, right);
+		return type.getValueType();
 	}
 
 	/**
@@ -182,15 +340,10 @@ public class ModelFactory extends AbstractFactory {
 	 * @return the search key-type, the index type or first projection.
 	 */
 	public String getKeyType(String paramType) {
-		int left = paramType.indexOf('[');
-		int right = paramType.lastIndexOf(']');  // just checking this
-		int end = safeIndexOf(paramType, ',', left+1);
-		if (left == -1 || right == -1)
+		TypeDescriptor type = getDescriptor(paramType);
+		if (! type.isGeneric())
 			error("Cannot extract key type of: " + paramType);
-		if (end != -1)
-			return paramType.substring(left + 1, end);
-		else
-			return "Integer";
+		return type.getKeyType();
 	}
 
 	/**
@@ -204,15 +357,10 @@ public class ModelFactory extends AbstractFactory {
 	 * @return the pair-type for keyed (or indexed) elements.
 	 */
 	public String getPairType(String paramType) {
-		int left = paramType.indexOf('[');
-		int right = paramType.lastIndexOf(']');
-		int end = safeIndexOf(paramType, ',', left+1);
-		if (left == -1 || right == -1)
+		TypeDescriptor type = getDescriptor(paramType);
+		if (! type.isGeneric())
 			error("Cannot extract pair type of: " + paramType);
-		if (end != -1)
-			return "Pair[" + paramType.substring(left + 1);
-		else
-			return "Pair[Integer, " + paramType.substring(left + 1);
+		return type.getPairType();
 	}
 	
 	/**
@@ -227,34 +375,57 @@ public class ModelFactory extends AbstractFactory {
 	 * @return the next greater value.
 	 */
 	public Object getSuccessor(Object value, String type) {
-		if (type.equals("String"))
+		return getSuccessor(value, getDescriptor(type));
+	}
+	
+	/**
+	 * Returns the successor of an unboxed double value.  Grows the value by
+	 * the same decimal fraction as the successor of a Double object.
+	 * @param value a double value.
+	 * @return the next greater value.
+	 */
+	public double getSuccessor(double value) {
+		return value + FRACTION;
+	}
+	
+	/**
+	 * Returns the successor of a value of the given parsed type.  Dispatches
+	 * on the kind of the type.
+	 * @param value a non-null value.
+	 * @param type the TypeDescriptor of the model type.
+	 * @return the next greater value.
+	 */
+	public Object getSuccessor(Object value, TypeDescriptor type) {
+		switch (type.getKind()) {
+		case STRING:
 			return ((String) value) + "~Z";  // later than value
-		else if (type.equals("Integer"))
+		case INTEGER:
 			return ((Integer) value) + 1;
-		else if (type.equals("Double"))
-			return ((Double) value) + 0.3;
-		else if (type.equals("Long"))
+		case DOUBLE:
+			return getSuccessor((double) (Double) value);
+		case LONG:
 			return ((Long) value) + 1;
-		else if (type.equals("Boolean")) 
+		case BOOLEAN:
 			return ! (Boolean) value;
-		else if (type.equals("Character"))
+		case CHARACTER:
 			return (Character) ((Character) value) + 1;
-		else if (type.equals("Float"))
-			return ((Float) value) + 0.3;
-		else if (type.equals("Short"))
+		case FLOAT:
+			return ((Float) value) + FRACTION;
+		case SHORT:
 			return ((Short) value) + 1;
-		else if (type.equals("Byte"))
+		case BYTE:
 			return ((Byte) value) + 1;
-		else if (type.startsWith("List"))
+		case LIST:
 			return getNextList((List<?>) value, type, true);
-		else if (type.startsWith("Set"))
+		case SET:
 			return getNextSet((Set<?>) value, type, true);
-		else if (type.startsWith("Map"))
+		case MAP:
 			return getNextMap((Map<?, ?>) value, type, true);
-		else if (type.startsWith("Pair"))
+		case PAIR:
 			return getNextPair((Entry<?, ?>) value, type, true);
-		else 
+		default:
 			return value;  // unchanged -- a failsafe for other types
+		}
 	}
 
 	/**
@@ -270,36 +441,59 @@ public class ModelFactory extends AbstractFactory {
 	 * @return the previous smaller value.
 	 */
 	public Object getPredecessor(Object value, String type) {
-		if (type.equals("String"))
+		return getPredecessor(value, getDescriptor(type));
+	}
+	
+	/**
+	 * Returns the predecessor of an unboxed double value.  Shrinks the value
+	 * by the same decimal fraction as the predecessor of a Double object.
+	 * @param value a double value.
+	 * @return the previous smaller value.
+	 */
+	public double getPredecessor(double value) {
+		return value - FRACTION;
+	}
+	
+	/**
+	 * Returns the predecessor of a value of the given parsed type.  
+	 * Dispatches on the kind of the type.
+	 * @param value a non-null value.
+	 * @param type the TypeDescriptor of the model type.
+	 * @return the previous smaller value.
+	 */
+	public Object getPredecessor(Object value, TypeDescriptor type) {
+		switch (type.getKind()) {
+		case STRING:
 			return (value == "" ? value : 
 				"A-" + (String) value);  // earlier than value
-		else if (type.equals("Integer"))
+		case INTEGER:
 			return ((Integer) value) - 1;
-		else if (type.equals("Double"))
-			return ((Double) value) - 0.3;
-		else if (type.equals("Long"))
+		case DOUBLE:
+			return getPredecessor((double) (Double) value);
+		case LONG:
 			return ((Long) value) - 1;
-		else if (type.equals("Boolean")) 
+		case BOOLEAN:
 			return ! (Boolean) value;
-		else if (type.equals("Character"))
+		case CHARACTER:
 			return (value == (Character) '0' ? value : 
 				(Character) ((Character) value) - 1);
-		else if (type.equals("Float"))
-			return ((Float) value) - 0.3;
-		else if (type.equals("Short"))
+		case FLOAT:
+			return ((Float) value) - FRACTION;
+		case SHORT:
 			return ((Short) value) - 1;
-		else if (type.equals("Byte"))
+		case BYTE:
 			return ((Byte) value) - 1;
-		else if (type.startsWith("List"))
+		case LIST:
 			return getNextList((List<?>) value, type, false);
-		else if (type.startsWith("Set"))
+		case SET:
 			return getNextSet((Set<?>) value, type, false);
-		else if (type.startsWith("Map"))
+		case MAP:
 			return getNextMap((Map<?, ?>) value, type, false);
-		else if (type.startsWith("Pair"))
+		case PAIR:
 			return getNextPair((Entry<?, ?>) value, type, false);
-		else 
+		default:
 			return value;  // unchanged -- a failsafe for other types
+		}
 	}
 
 	/**
@@ -312,11 +506,12 @@ public class ModelFactory extends AbstractFactory {
 	 * @param more indicates the successor (true) or predecessor (false).
 	 * @return the successor or predecessor of the list, if any.
 	 */
-	protected Object getNextList(List<?> list, String type, boolean more) {
+	protected Object getNextList(List<?> list, TypeDescriptor type, 
+			boolean more) {
 		List<Object> result = new ArrayList<Object>(list);
 		int lastIndex = list.size() - 1;
 		if (more) {
-			String valueType = getValueType(type);
+			TypeDescriptor valueType = type.getValue();
 			if (list.isEmpty()) 
 				result.add(createObject(null, valueType));
 			else
@@ -337,11 +532,12 @@ public class ModelFactory extends AbstractFactory {
 	 * @param more indicates the successor (true) or predecessor (false).
 	 * @return the successor or predecessor of the set, if any.
 	 */
-	protected Object getNextSet(Set<?> set, String type, boolean more) {
+	protected Object getNextSet(Set<?> set, TypeDescriptor type, 
+			boolean more) {
 		Set<Object> result = new HashSet<Object>(set);
 		Object elem = set.isEmpty() ? null : set.iterator().next();
 		if (more) {
-			String valueType = getValueType(type);
+			TypeDescriptor valueType = type.getValue();
 			if (elem == null)
 				elem = createObject(null, valueType);
 			while (result.contains(elem)) {
@@ -364,13 +560,14 @@ public class ModelFactory extends AbstractFactory {
 	 * @param more indicates the successor (true) or predecessor (false).
 	 * @return the successor or predecessor of the map, if any.
 	 */
-	protected Object getNextMap(Map<?, ?> map, String type, boolean more) {
+	protected Object getNextMap(Map<?, ?> map, TypeDescriptor type, 
+			boolean more) {
 		Map<Object, Object> result = new HashMap<Object, Object>(map);
 		Object key = map.isEmpty() ? null : 
 			map.keySet().iterator().next();
 		if (more) {
-			String keyType = getKeyType(type);
-			String valueType = getValueType(type);
+			TypeDescriptor keyType = type.getKey();
+			TypeDescriptor valueType = type.getValue();
 			if (key == null)
 				key = createObject(null, keyType);
 			Object value = map.get(key);
@@ -399,10 +596,10 @@ public class ModelFactory extends AbstractFactory {
 	 * @param more indicates the successor (true) or predecessor (false).
 	 * @return the successor, or predecessor of the pair, if any.
 	 */
-	protected Object getNextPair(Entry<?, ?> pair, String type, 
+	protected Object getNextPair(Entry<?, ?> pair, TypeDescriptor type, 
 			boolean more) {
-		String keyType = getKeyType(type);
-		String valueType = getValueType(type);
+		TypeDescriptor keyType = type.getKey();
+		TypeDescriptor valueType = type.getValue();
 		if (more) {
 			return new SimpleEntry<Object, Object> (
 					getSuccessor(pair.getKey(), keyType),
@@ -0,0 +1,296 @@
+/**
+ * Broker@Cloud Verification and Testing Tool Suite.
+ * Copyright (C) 2015 Anthony J H Simons and Raluca Lefticaru, 
+ * University of Sheffield, UK.  All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This file is "foreground software", developed as an output of 
+ * the European Union collaborative research project, "Broker@Cloud: 
+ * enabling continuous quality assurance and optimization in future 
+ * enterprise cloud service brokers", FP7-ICT-2011-8 no. 318392, and
+ * is licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or 
+ * implied.  See the License for the specific language governing 
+ * permissions and limitations under the License.
+ * 
+ * The freedoms granted by the License to incorporate, redistribute,
+ * modify or extend the software apply only to "foreground software"
+ * contributed by the Broker@Cloud project; and not to any proprietary 
+ * software, or "background software" incorporated from other sources, 
+ * which may be offered under different terms of usage.
+ * 
+ * Please contact the Department of Computer Science, University of
+ * Sheffield, Regent Court, 211 Portobello, Sheffield S1 4DP, UK or
+ * visit www.sheffield.ac.uk/dcs if you need additional information 
+ * or have any questions.
+ */
+
+
+package uk.ac.sheffield.vtts.ground;
+
+import java.util.List;
+
+/**
+ * TypeDescriptor is the parsed form of a type in the model language.  A
+ * TypeDescriptor is created by a ModelFactory, which parses each distinct
+ * type String once and caches its TypeDescriptor, such that creating 
+ * objects and checking types need not scan the type String again.
+ * <p>
+ * A TypeDescriptor records the Kind of the type, which is one of the
+ * predefined simple types, an external (uninterpreted) type, one of the 
+ * generic types List, Set, Map or Pair, or an invalid type.  For a generic 
+ * type, it records the base-type name, the actual type parameters and the
+ * names of the key-type, value-type and pair-type, according to the rules
+ * of ModelFactory.  It also records whether the type is strictly ordered,
+ * and whether it is numeric.  The descriptors of the key-type, value-type
+ * and pair-type are obtained lazily from the same ModelFactory.  A 
+ * TypeDescriptor is immutable, and may be shared between threads.
+ * 
+ * @author Anthony J H Simons
+ * @version Broker@Cloud 1.0
+ */
+public class TypeDescriptor {
+	
+	/**
+	 * Kind enumerates the different kinds of model type.  EXTERNAL is any
+	 * simple type that is not predefined.  INVALID is any badly-formed type,
+	 * or any generic type that is not List, Set, Map or Pair.
+	 */
+	public enum Kind {
+		STRING, INTEGER, DOUBLE, LONG, BOOLEAN, CHARACTER, FLOAT, SHORT, 
+		BYTE, EXTERNAL, LIST, SET, MAP, PAIR, INVALID
+	}
+	
+	/**
+	 * The ModelFactory that created this TypeDescriptor.
+	 */
+	private final ModelFactory factory;
+	
+	/**
+	 * The type name, as written in the model language.
+	 */
+	private final String name;
+	
+	/**
+	 * The kind of this type.
+	 */
+	private final Kind kind;
+	
+	/**
+	 * The base-type name of a generic type, otherwise null.
+	 */
+	private final String baseType;
+	
+	/**
+	 * The actual type parameters of a generic type, otherwise null.
+	 */
+	private final List<String> parameters;
+	
+	/**
+	 * The key-type name of a generic type, otherwise null.
+	 */
+	private final String keyType;
+	
+	/**
+	 * The value-type name of a generic type, otherwise null.
+	 */
+	private final String valueType;
+	
+	/**
+	 * The pair-type name of a generic type, otherwise null.
+	 */
+	private final String pairType;
+	
+	/**
+	 * The descriptors of the key-type, value-type and pair-type, obtained
+	 * when first requested.
+	 */
+	private TypeDescriptor key, value, pair;
+	
+	/**
+	 * Creates a TypeDescriptor for a simple type, or a badly-formed type.
+	 * @param factory the ModelFactory creating this TypeDescriptor.
+	 * @param name the type name.
+	 * @param kind the kind of type.
+	 */
+	protected TypeDescriptor(ModelFactory factory, String name, Kind kind) {
+		this(factory, name, kind, null, null, null, null, null);
+	}
+	
+	/**
+	 * Creates a TypeDescriptor for a generic type.
+	 * @param factory the ModelFactory creating this TypeDescriptor.
+	 * @param name the type name.
+	 * @param kind the kind of type.
+	 * @param baseType the base-type name.
+	 * @param parameters the actual type parameters.
+	 * @param keyType the key-type name.
+	 * @param valueType the value-type name.
+	 * @param pairType the pair-type name.
+	 */
+	protected TypeDescriptor(ModelFactory factory, String name, Kind kind,
+			String baseType, List<String> parameters, String keyType, 
+			String valueType, String pairType) {
+		this.factory = factory;
+		this.name = name;
+		this.kind = kind;
+		this.baseType = baseType;
+		this.parameters = parameters;
+		this.keyType = keyType;
+		this.valueType = valueType;
+		this.pairType = pairType;
+	}
+	
+	/**
+	 * Returns the type name, as written in the model language.
+	 * @return the type name.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Returns the kind of this type.
+	 * @return the Kind.
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+	
+	/**
+	 * Reports whether this type has generic syntax.  True for every List,
+	 * Set, Map or Pair type, and for any other type with a bracketed list
+	 * of type parameters.
+	 * @return true, if this type has generic syntax.
+	 */
+	public boolean isGeneric() {
+		return baseType != null;
+	}
+	
+	/**
+	 * Reports whether this type is a List, Set or Map collection type.
+	 * @return true, if this is a collection type.
+	 */
+	public boolean isCollection() {
+		return kind == Kind.LIST || kind == Kind.SET || kind == Kind.MAP;
+	}
+	
+	/**
+	 * Reports whether this type is strictly ordered.  All number types are
+	 * ordered arithmetically; Character and String are lexicographically
+	 * ordered.  No other type is strictly ordered.
+	 * @return true, if this type is strictly ordered.
+	 */
+	public boolean isOrdered() {
+		return isNumeric() || kind == Kind.STRING || kind == Kind.CHARACTER;
+	}
+	
+	/**
+	 * Reports whether this type is a number type.
+	 * @return true, if this is Integer, Double, Long, Float, Short or Byte.
+	 */
+	public boolean isNumeric() {
+		switch (kind) {
+		case INTEGER:
+		case DOUBLE:
+		case LONG:
+		case FLOAT:
+		case SHORT:
+		case BYTE:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns the base-type name of a generic type.
+	 * @return the base-type name, or null, if this is not generic.
+	 */
+	public String getBaseType() {
+		return baseType;
+	}
+	
+	/**
+	 * Returns the actual type parameters of a generic type.
+	 * @return the list of type parameter names, or null, if this is not
+	 * generic.
+	 */
+	public List<String> getParameters() {
+		return parameters;
+	}
+	
+	/**
+	 * Returns the key-type name of a generic type.  This is the first type
+	 * parameter of a Map or Pair, or Integer, the index type of a List or
+	 * Set.
+	 * @return the key-type name, or null, if this is not generic.
+	 */
+	public String getKeyType() {
+		return keyType;
+	}
+	
+	/**
+	 * Returns the value-type name of a generic type.  This is the element
+	 * type of a List or Set, or the second type parameter of a Map or Pair.
+	 * @return the value-type name, or null, if this is not generic.
+	 */
+	public String getValueType() {
+		return valueType;
+	}
+	
+	/**
+	 * Returns the pair-type name of a generic type.  This is Pair[K, V] for
+	 * a Map[K, V] or Pair[K, V], or Pair[Integer, T] for a List[T] or Set[T].
+	 * @return the pair-type name, or null, if this is not generic.
+	 */
+	public String getPairType() {
+		return pairType;
+	}
+	
+	/**
+	 * Returns the descriptor of the key-type of a generic type.
+	 * @return the key-type descriptor, or null, if this is not generic.
+	 */
+	public TypeDescriptor getKey() {
+		if (key == null && keyType != null)
+			key = factory.getDescriptor(keyType);
+		return key;
+	}
+	
+	/**
+	 * Returns the descriptor of the value-type of a generic type.
+	 * @return the value-type descriptor, or null, if this is not generic.
+	 */
+	public TypeDescriptor getValue() {
+		if (value == null && valueType != null)
+			value = factory.getDescriptor(valueType);
+		return value;
+	}
+	
+	/**
+	 * Returns the descriptor of the pair-type of a generic type.
+	 * @return the pair-type descriptor, or null, if this is not generic.
+	 */
+	public TypeDescriptor getPair() {
+		if (pair == null && pairType != null)
+			pair = factory.getDescriptor(pairType);
+		return pair;
+	}
+	
+	/**
+	 * Returns the type name, as written in the model language.
+	 */
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
@@ -34,7 +34,10 @@
 
 package uk.ac.sheffield.vtts.model;
 
-import java.util.LinkedHashSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -47,6 +50,11 @@ import java.util.Set;
  * and including an Event for each labelled Scenario.  Alphabets may be
  * compared, to see whether the Machine and the Protocol handle the same
  * set of Events.
+ * <p>
+ * An Alphabet interns its Events, giving each distinct Event a dense index,
+ * in the order in which it was added.  Searches that simulate many Sequences
+ * may represent these compactly, as arrays of Event indices, and may look up
+ * Transitions by index, once a Machine has been indexed by this Alphabet.
  * 
  * @author Anthony J H Simons
  * @version Broker@Cloud 1.0
@@ -54,15 +62,21 @@ import java.util.Set;
 public class Alphabet extends Element {
 	
 	/**
-	 * The set of events in this alphabet.
+	 * The events in this alphabet, mapped to their indices.
 	 */
-	private Set<Event> events;
+	private Map<Event, Integer> indices;
+	
+	/**
+	 * The events in this alphabet, in order of their indices.
+	 */
+	private List<Event> events;
 
 	/**
 	 * Creates an empty Alphabet.
 	 */
 	public Alphabet() {
-		events = new LinkedHashSet<Event>();
+		indices = new LinkedHashMap<Event, Integer>();
+		events = new ArrayList<Event>();
 	}
 		
 	/**
@@ -89,7 +103,10 @@ public class Alphabet extends Element {
 	 * @return this alphabet.
 	 */
 	public Alphabet addEvent(Event event) {
-		events.add(event);
+		if (! indices.containsKey(event)) {
+			indices.put(event, events.size());
+			events.add(event);
+		}
 		return this;
 	}
 
@@ -98,7 +115,41 @@ public class Alphabet extends Element {
 	 * @return the set of events.
 	 */
 	public Set<Event> getEvents() {
-		return events;
+		return indices.keySet();
+	}
+	
+	/**
+	 * Returns the index of an event in this alphabet.
+	 * @param event the event.
+	 * @return the index of the event, or -1 if it is not in this alphabet.
+	 */
+	public int indexOf(Event event) {
+		Integer index = indices.get(event);
+		return index == null ? -1 : index;
+	}
+	
+	/**
+	 * Returns the event with a given index in this alphabet.
+	 * @param index the index of the event.
+	 * @return the event.
+	 */
+	public Event getEvent(int index) {
+		return events.get(index);
+	}
+	
+	/**
+	 * Creates a sequence from an array of event indices.  This converts the
+	 * compact representation of a sequence used during searches into the
+	 * full representation of a sequence of events.
+	 * @param path the indices of the events, in order.
+	 * @return the sequence of events.
+	 */
+	public Sequence createSequence(int[] path) {
+		Sequence result = new Sequence();
+		for (int index : path) {
+			result.addEvent(events.get(index));
+		}
+		return result;
 	}
 	
 	/**
@@ -112,7 +163,7 @@ public class Alphabet extends Element {
 	public Alphabet subtract(Alphabet other) {
 		Alphabet result = new Alphabet();
 		for (Event event : events) {
-			if (! other.events.contains(event))
+			if (! other.indices.containsKey(event))
 				result.addEvent(event);
 		}
 		return result;
@@ -47,6 +47,210 @@ package uk.ac.sheffield.vtts.model;
  */
 public class Arithmetic extends Function {
 	
+	/**
+	 * The operator codes of an Arithmetic expression, in the order of the
+	 * legal operator names.  Used for dispatching by compiled Evaluators.
+	 */
+	private static final int NEGATE = 0, PLUS = 1, MINUS = 2, TIMES = 3,
+			DIVIDE = 4, MODULO = 5;
+	
+	/**
+	 * NumberEvaluator represents the compiled form of an Arithmetic 
+	 * expression, whose operator is fixed.  Each subclass is specialised 
+	 * for one of the six legal numerical types.
+	 */
+	private abstract class NumberEvaluator extends Evaluator {
+		
+		/**
+		 * The operator code.
+		 */
+		protected final int operator = 
+				operatorCode("negate", "plus", "minus", "times", "divide",
+						"modulo");
+		
+		/**
+		 * The first operand.
+		 */
+		protected final Expression first = operand(0);
+		
+		/**
+		 * The second operand, or null for a negation.
+		 */
+		protected final Expression second = 
+				(operator == NEGATE ? null : operand(1));
+		
+		/**
+		 * Evaluates the compiled Arithmetic expression.
+		 * @return the arithmetical result, as a Number.
+		 */
+		@Override
+		public abstract Number evaluate();
+	}
+	
+	/**
+	 * IntegerEvaluator evaluates an Arithmetic expression on Integers.
+	 */
+	private class IntegerEvaluator extends NumberEvaluator {
+		@Override
+		public Number evaluate() {
+			return evaluateInt();
+		}
+		@Override
+		public int evaluateInt() {
+			int value0 = first.evaluateInt();
+			if (operator == NEGATE)
+				return - value0;
+			int value1 = second.evaluateInt();
+			switch (operator) {
+			case PLUS:
+				return value0 + value1;
+			case MINUS:
+				return value0 - value1;
+			case TIMES:
+				return value0 * value1;
+			case DIVIDE:
+				return value0 / value1;
+			default:  // MODULO
+				return value0 % value1;
+			}
+		}
+	}
+	
+	/**
+	 * DoubleEvaluator evaluates an Arithmetic expression on Doubles.
+	 */
+	private class DoubleEvaluator extends NumberEvaluator {
+		@Override
+		public Number evaluate() {
+			return evaluateDouble();
+		}
+		@Override
+		public double evaluateDouble() {
+			double value0 = first.evaluateDouble();
+			if (operator == NEGATE)
+				return - value0;
+			double value1 = second.evaluateDouble();
+			switch (operator) {
+			case PLUS:
+				return value0 + value1;
+			case MINUS:
+				return value0 - value1;
+			case TIMES:
+				return value0 * value1;
+			case DIVIDE:
+				return value0 / value1;
+			default:  // MODULO
+				return value0 % value1;
+			}
+		}
+	}
+	
+	/**
+	 * LongEvaluator evaluates an Arithmetic expression on Longs.
+	 */
+	private class LongEvaluator extends NumberEvaluator {
+		@Override
+		public Number evaluate() {
+			return evaluateLong();
+		}
+		@Override
+		public long evaluateLong() {
+			long value0 = first.evaluateLong();
+			if (operator == NEGATE)
+				return - value0;
+			long value1 = second.evaluateLong();
+			switch (operator) {
+			case PLUS:
+				return value0 + value1;
+			case MINUS:
+				return value0 - value1;
+			case TIMES:
+				return value0 * value1;
+			case DIVIDE:
+				return value0 / value1;
+			default:  // MODULO
+				return value0 % value1;
+			}
+		}
+	}
+	
+	/**
+	 * FloatEvaluator evaluates an Arithmetic expression on Floats.
+	 */
+	private class FloatEvaluator extends NumberEvaluator {
+		@Override
+		public Number evaluate() {
+			Object value0 = first.evaluate();
+			if (operator == NEGATE)
+				return - (Float) value0;
+			Object value1 = second.evaluate();
+			switch (operator) {
+			case PLUS:
+				return (Float) value0 + (Float) value1;
+			case MINUS:
+				return (Float) value0 - (Float) value1;
+			case TIMES:
+				return (Float) value0 * (Float) value1;
+			case DIVIDE:
+				return (Float) value0 / (Float) value1;
+			default:  // MODULO
+				return (Float) value0 % (Float) value1;
+			}
+		}
+	}
+	
+	/**
+	 * ShortEvaluator evaluates an Arithmetic expression on Shorts.  Like
+	 * Java's arithmetic on shorts, this yields Integer results.
+	 */
+	private class ShortEvaluator extends NumberEvaluator {
+		@Override
+		public Number evaluate() {
+			Object value0 = first.evaluate();
+			if (operator == NEGATE)
+				return - (Short) value0;
+			Object value1 = second.evaluate();
+			switch (operator) {
+			case PLUS:
+				return (Short) value0 + (Short) value1;
+			case MINUS:
+				return (Short) value0 - (Short) value1;
+			case TIMES:
+				return (Short) value0 * (Short) value1;
+			case DIVIDE:
+				return (Short) value0 / (Short) value1;
+			default:  // MODULO
+				return (Short) value0 % (Short) value1;
+			}
+		}
+	}
+	
+	/**
+	 * ByteEvaluator evaluates an Arithmetic expression on Bytes.  Like
+	 * Java's arithmetic on bytes, this yields Integer results.
+	 */
+	private class ByteEvaluator extends NumberEvaluator {
+		@Override
+		public Number evaluate() {
+			Object value0 = first.evaluate();
+			if (operator == NEGATE)
+				return - (Byte) value0;
+			Object value1 = second.evaluate();
+			switch (operator) {
+			case PLUS:
+				return (Byte) value0 + (Byte) value1;
+			case MINUS:
+				return (Byte) value0 - (Byte) value1;
+			case TIMES:
+				return (Byte) value0 * (Byte) value1;
+			case DIVIDE:
+				return (Byte) value0 / (Byte) value1;
+			default:  // MODULO
+				return (Byte) value0 % (Byte) value1;
+			}
+		}
+	}
+	
 	/**
 	 * Checks the name of an Arithmetic expression and sets the expected
 	 * number of operands.  All arithmetic operators expect two operands,
@@ -111,33 +315,38 @@ public class Arithmetic extends Function {
 		super(name, type);
 	}
 
+	/**
+	 * Creates the compiled form of this Arithmetic expression.  Selects the
+	 * Evaluator specialised for the result type, which was checked to be
+	 * the same as the type of the operands.
+	 * @return the Evaluator for this Arithmetic expression.
+	 */
+	@Override
+	protected Evaluator createEvaluator() {
+		if (type.equals("Integer"))
+			return new IntegerEvaluator();
+		else if (type.equals("Double"))
+			return new DoubleEvaluator();
+		else if (type.equals("Long"))
+			return new LongEvaluator();
+		else if (type.equals("Float"))
+			return new FloatEvaluator();
+		else if (type.equals("Short"))
+			return new ShortEvaluator();
+		else // if (type.equals("Byte"))
+			return new ByteEvaluator();
+	}
+
 	/**
 	 * Executes this Arithmetic on its operands.  Expects one operand for a
-	 * negation, and two operands otherwise.  Checks the consistency of the
-	 * types of the operands and result, then branches according to the name
-	 * of the arithmetical operator.
+	 * negation, and two operands otherwise.  Delegates to the compiled form
+	 * of this Arithmetic expression, which was specialised for the types of
+	 * the operands and result, and for the arithmetical operator, when this
+	 * expression was first compiled.
 	 * @return the arithmetical result, as a Number.
 	 */
 	public Number evaluate() {
-		typeCheck();  // Caches the result type.
-		Object value0 = operand(0).evaluate();
-		if (name.equals("negate"))
-			return negate(value0);
-		else {
-			Object value1 = operand(1).evaluate();
-			if (name.equals("plus"))
-				return plus(value0, value1);
-			else if (name.equals("minus"))
-				return minus(value0, value1);
-			else if (name.equals("times"))
-				return times(value0, value1);
-			else if (name.equals("divide"))
-				return divide(value0, value1);
-			else if (name.equals("modulo"))
-				return modulo(value0, value1);
-			else
-				return null;  // Never reached.
-		}
+		return (Number) getEvaluator().evaluate();
 	}
 	
 	/**
@@ -51,6 +51,123 @@ package uk.ac.sheffield.vtts.model;
  */
 public class Assignment extends Function {
 	
+	/**
+	 * The operator codes of an Assignment, in the order of the legal operator
+	 * names.  Used for dispatching by the compiled Evaluator.
+	 */
+	private static final int EQUALS = 0, NOT_EQUALS = 1, MORE_THAN = 2,
+			LESS_THAN = 3;
+	
+	/**
+	 * The ways in which an Assignment may bind its Parameter: as a boxed 
+	 * object, or as an unboxed int, long or double value.
+	 */
+	private static final int BOXED = 0, INT = 1, LONG = 2, DOUBLE = 3;
+	
+	/**
+	 * AssignmentEvaluator represents the compiled form of an Assignment,
+	 * whose operator, assigned Parameter and Parameter type are fixed.
+	 */
+	private class AssignmentEvaluator extends Evaluator {
+		
+		/**
+		 * The operator code.
+		 */
+		private final int operator = operatorCode("equals", "notEquals", 
+				"moreThan", "lessThan");
+		
+		/**
+		 * The assigned Parameter.
+		 */
+		private final Parameter parameter = (Parameter) operand(0);
+		
+		/**
+		 * The type of the assigned Parameter.
+		 */
+		private final String paramType = parameter.getType();
+		
+		/**
+		 * The assigned Expression, which is the Parameter itself for a unit
+		 * increment or decrement.
+		 */
+		private final Expression source = 
+				(expressions.size() > 1 ? operand(1) : parameter);
+		
+		/**
+		 * The way in which the Parameter is bound.  Numeric results of 
+		 * Arithmetic, unit increments and unit decrements are bound unboxed
+		 * to Integer, Long and Double Parameters.  Other values are bound
+		 * as objects, since these may legitimately be null.
+		 */
+		private final int binding = bindingFor(paramType);
+		
+		/**
+		 * Selects the way in which the Parameter is bound.
+		 * @param paramType the type of the Parameter.
+		 * @return BOXED, INT, LONG or DOUBLE.
+		 */
+		private int bindingFor(String paramType) {
+			if (operator == EQUALS && !(source instanceof Arithmetic))
+				return BOXED;
+			else if (paramType.equals("Integer"))
+				return INT;
+			else if (paramType.equals("Long"))
+				return LONG;
+			else if (paramType.equals("Double"))
+				return DOUBLE;
+			else
+				return BOXED;
+		}
+		
+		/**
+		 * Evaluates the compiled Assignment.  Computes the successor or
+		 * predecessor of a numeric value in the same way as the ModelFactory.
+		 * @return the assigned Parameter.
+		 */
+		@Override
+		public Object evaluate() {
+			switch (binding) {
+			case INT:
+				int intValue = source.evaluateInt();
+				if (operator == EQUALS)
+					parameter.assignInt(intValue);
+				else if (operator == LESS_THAN)
+					parameter.assignInt(intValue - 1);
+				else   // MORE_THAN || NOT_EQUALS
+					parameter.assignInt(intValue + 1);
+				return parameter;
+			case LONG:
+				long longValue = source.evaluateLong();
+				if (operator == EQUALS)
+					parameter.assignLong(longValue);
+				else if (operator == LESS_THAN)
+					parameter.assignLong(longValue - 1);
+				else   // MORE_THAN || NOT_EQUALS
+					parameter.assignLong(longValue + 1);
+				return parameter;
+			case DOUBLE:
+				double doubleValue = source.evaluateDouble();
+				if (operator == EQUALS)
+					parameter.assignDouble(doubleValue);
+				else if (operator == LESS_THAN)
+					parameter.assignDouble(
+							factory.getPredecessor(doubleValue));
+				else   // MORE_THAN || NOT_EQUALS
+					parameter.assignDouble(
+							factory.getSuccessor(doubleValue));
+				return parameter;
+			}
+			Object value = source.evaluate();
+			if (operator == EQUALS)
+				parameter.assign(value);
+			else if (operator == LESS_THAN)
+				parameter.assign(factory.getPredecessor(value, paramType));
+			else   // MORE_THAN || NOT_EQUALS
+				parameter.assign(factory.getSuccessor(value, paramType));
+			return parameter;
+		}
+	}
+	
 	/**
 	 * Checks the operator name of this Assignment expression and sets the
 	 * maximum number of operands to two.  The legal operator names include
@@ -145,25 +262,24 @@ public class Assignment extends Function {
 		return (Assignment) super.addExpression(expression);
 	}
 	
+	/**
+	 * Creates the compiled form of this Assignment.
+	 * @return the Evaluator for this Assignment.
+	 */
+	@Override
+	protected Evaluator createEvaluator() {
+		return new AssignmentEvaluator();
+	}
+
 	/**
 	 * Executes this Assignment on its operands.  Expects the first operand
 	 * to be an assignable Parameter.  Performs one of an assignment,  a unit
 	 * increment, or unit decrement operation.  The notEquals operator is 
-	 * treated as a unit increment.
+	 * treated as a unit increment.  Delegates to the compiled form of this
+	 * Assignment, in which the operator was fixed when it was first compiled.
 	 */
 	public Object evaluate() {
-		typeCheck();
-		Parameter parameter = (Parameter) operand(0);
-		String paramType = parameter.getType();
-		Object value = (expressions.size() > 1 ? operand(1).evaluate() :
-			parameter.evaluate());
-		if (name.equals("equals"))
-			parameter.assign(value);
-		else if (name.equals("lessThan"))
-			parameter.assign(factory.getPredecessor(value, paramType));
-		else   // name == "moreThan" || name == "notEquals"
-			parameter.assign(factory.getSuccessor(value, paramType));
-		return parameter;
+		return getEvaluator().evaluate();
 	}
 	
 	/**
@@ -34,6 +34,8 @@
 
 package uk.ac.sheffield.vtts.model;
 
+import java.util.List;
+
 /**
  * Atomic is a degenerate predicate representing an atomic Boolean value.
  * Atomic is a special adapter that allows a Parameter to be treated like a
@@ -115,13 +117,24 @@ public class Atomic extends Predicate {
 		return (Atomic) super.addExpression(expression);
 	}
 	
+	/**
+	 * Returns a copy of this Atomic predicate, wrapping the given operand.
+	 * @param operands the singleton list of the wrapped Parameter.
+	 * @return the copied Atomic predicate.
+	 */
+	@Override
+	protected Atomic copy(List<Expression> operands) {
+		return new Atomic((Parameter) operands.get(0));
+	}
+	
 	/**
 	 * Negates this Atomic predicate.  If this Atomic predicate wraps a
 	 * Constant, returns an Atomic predicate wrapping the complementary
 	 * Constant.  Otherwise, constructs a Proposition negating the value
 	 * of this Atomic predicate (which wraps a variable kind of Parameter).
 	 */
-	public Predicate negate() {
+	@Override
+	protected Predicate complement() {
 		if (operand(0) instanceof Constant) {
 			if (operand(0).evaluate().equals(true))
 				return new Atomic(false);
@@ -129,7 +142,7 @@ public class Atomic extends Predicate {
 				return new Atomic(true);
 		}
 		else
-			return super.negate();
+			return super.complement();
 	}
 	
 	/**
@@ -154,14 +167,28 @@ public class Atomic extends Predicate {
 			return false;
 	}
 	
+	/**
+	 * Creates the compiled form of this Atomic predicate, which evaluates
+	 * the wrapped Parameter.
+	 * @return the Evaluator for this Atomic predicate.
+	 */
+	@Override
+	protected Evaluator createEvaluator() {
+		final Expression parameter = operand(0);
+		return new Evaluator() {
+			public Object evaluate() {
+				return parameter.evaluate();
+			}
+		};
+	}
+	
 	/**
 	 * Evaluates this Atomic predicate.  Evaluates the wrapped Parameter, 
 	 * which has a Boolean value.
 	 */
 	@Override
 	public Boolean evaluate() {
-		typeCheck();
-		return (Boolean) operand(0).evaluate();
+		return (Boolean) getEvaluator().evaluate();
 	}
 
 	/**
@@ -174,7 +201,7 @@ public class Atomic extends Predicate {
 	 * @return true, if this Atomic predicate subsumes the other predicate.
 	 */
 	@Override
-	public boolean subsumes(Predicate other) {
+	protected boolean decideSubsumes(Predicate other) {
 		if (isTrueConstant())
 			return true;
 		else if (name.equals(other.getName()))  // Identical parameter names.
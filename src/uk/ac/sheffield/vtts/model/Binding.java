@@ -113,6 +113,18 @@ public class Binding extends Element {
 		return this;
 	}
 	
+	/**
+	 * Compiles the Assignments of this Binding.  Called once, after the
+	 * Assignments have resolved their Parameter references, to fix the
+	 * operator and operand types of each Assignment in advance.
+	 * @return this Binding.
+	 */
+	public Binding compile() {
+		for (Assignment assignment : assignments.values()) {
+			assignment.compile();
+		}
+		return this;
+	}
 	
 	/**
 	 * Executes all of the Assignments associated with this Binding.
@@ -0,0 +1,460 @@
+/**
+ * Broker@Cloud Verification and Testing Tool Suite.
+ * Copyright (C) 2015 Anthony J H Simons and Raluca Lefticaru, 
+ * University of Sheffield, UK.  All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This file is "foreground software", developed as an output of 
+ * the European Union collaborative research project, "Broker@Cloud: 
+ * enabling continuous quality assurance and optimization in future 
+ * enterprise cloud service brokers", FP7-ICT-2011-8 no. 318392, and
+ * is licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or 
+ * implied.  See the License for the specific language governing 
+ * permissions and limitations under the License.
+ * 
+ * The freedoms granted by the License to incorporate, redistribute,
+ * modify or extend the software apply only to "foreground software"
+ * contributed by the Broker@Cloud project; and not to any proprietary 
+ * software, or "background software" incorporated from other sources, 
+ * which may be offered under different terms of usage.
+ * 
+ * Please contact the Department of Computer Science, University of
+ * Sheffield, Regent Court, 211 Portobello, Sheffield S1 4DP, UK or
+ * visit www.sheffield.ac.uk/dcs if you need additional information 
+ * or have any questions.
+ */
+
+
+package uk.ac.sheffield.vtts.model;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * BoundedProduct represents the product of a finite Language and Ln*, the
+ * bounded Language of all Sequences up to length n, chosen from an Alphabet.
+ * Rather than storing |A|^n Sequences, a BoundedProduct enumerates them on
+ * demand, in exactly the order in which an explicit product of Languages 
+ * would have stored them:  for each prefix Sequence in turn, all suffixes 
+ * from L0, then from L1, and so on up to Ln, each in alphabetical order.
+ * A BoundedProduct whose only prefix is the empty Sequence is Ln* itself.
+ * <p>
+ * Like any Language, a BoundedProduct is a set, so it omits any Sequence
+ * that is equal to one enumerated earlier.  This happens when one prefix 
+ * extended by some suffix equals an earlier prefix extended by another 
+ * suffix.  Such duplicates are detected by comparing each prefix with the
+ * earlier prefixes, rather than by remembering every enumerated Sequence;
+ * and the size of a BoundedProduct is computed arithmetically, by counting
+ * the duplicates of each prefix without enumerating them.  A BoundedProduct
+ * is immutable; no further Sequences may be added to it.
+ * 
+ * @author Anthony J H Simons
+ * @version Broker@Cloud 1.0
+ */
+public class BoundedProduct extends Language {
+	
+	/**
+	 * The prefix Sequences, in order.
+	 */
+	private List<Sequence> prefixes;
+	
+	/**
+	 * The Alphabet of the suffixes, which indexes their Events.
+	 */
+	private Alphabet alphabet;
+	
+	/**
+	 * The maximum length of the suffix Sequences.
+	 */
+	private int length;
+	
+	/**
+	 * The maximum length of any suffix that duplicates an earlier Sequence,
+	 * for each prefix; or -1, if there is no such bound.  A suffix up to
+	 * this length duplicates an earlier prefix, which is itself a prefix of
+	 * this prefix, extended by some longer suffix.
+	 */
+	private int[] limits;
+	
+	/**
+	 * The leading suffixes that duplicate an earlier Sequence, for each 
+	 * prefix.  Any suffix starting with one of these, as Alphabet indices,
+	 * duplicates an earlier prefix, which is an extension of this prefix,
+	 * extended by some shorter suffix.
+	 */
+	private List<List<int[]>> leaders;
+	
+	/**
+	 * The view of this BoundedProduct as a set of Sequences.
+	 */
+	private Set<Sequence> sequences;
+	
+	/**
+	 * SequenceView represents the Sequences of this BoundedProduct as an
+	 * unmodifiable set, whose iterator enumerates the Sequences on demand.
+	 */
+	private class SequenceView extends AbstractSet<Sequence> {
+		
+		/**
+		 * Returns an iterator over the Sequences of this BoundedProduct.
+		 * @return a new iterator.
+		 */
+		@Override
+		public Iterator<Sequence> iterator() {
+			return new SequenceIterator();
+		}
+		
+		/**
+		 * Returns the number of Sequences in this BoundedProduct.
+		 * @return the size of this BoundedProduct.
+		 */
+		@Override
+		public int size() {
+			return BoundedProduct.this.size();
+		}
+	}
+	
+	/**
+	 * SequenceIterator enumerates the Sequences of this BoundedProduct.  It
+	 * treats each suffix as a counter of Alphabet indices, and increments 
+	 * the counter to obtain the next suffix of the same length.  Suffixes 
+	 * that would duplicate an earlier Sequence are skipped.
+	 */
+	private class SequenceIterator implements Iterator<Sequence> {
+		
+		/**
+		 * The index of the current prefix.
+		 */
+		private int prefix = 0;
+		
+		/**
+		 * The current suffix, as Alphabet indices; or null, if the first
+		 * suffix of the current prefix has not yet been chosen.
+		 */
+		private int[] suffix = null;
+		
+		/**
+		 * The next Sequence to return; or null, if not yet computed.
+		 */
+		private Sequence next = null;
+		
+		/**
+		 * Advances the current prefix and suffix to the next candidate.
+		 * @return true, if there is a next candidate.
+		 */
+		private boolean advance() {
+			if (prefix >= prefixes.size())
+				return false;
+			if (suffix == null) {
+				suffix = new int[0];
+				return prefix < prefixes.size();
+			}
+			for (int index = suffix.length - 1; index >= 0; --index) {
+				if (++suffix[index] < alphabet.size())
+					return true;
+				suffix[index] = 0;
+			}
+			if (suffix.length < length && ! alphabet.isEmpty())
+				suffix = new int[suffix.length + 1];
+			else {
+				suffix = new int[0];
+				++prefix;
+			}
+			return prefix < prefixes.size();
+		}
+		
+		/**
+		 * Reports whether there is another Sequence.  Computes the next
+		 * Sequence, if this was not already done.
+		 * @return true, if there is another Sequence.
+		 */
+		@Override
+		public boolean hasNext() {
+			while (next == null && advance()) {
+				if (! isDuplicate(prefix, suffix)) {
+					Sequence base = prefixes.get(prefix);
+					next = new Sequence(base);
+					for (int index : suffix) {
+						next.addEvent(alphabet.getEvent(index));
+					}
+					next.setPath(base.getPath() + suffix.length);
+				}
+			}
+			return next != null;
+		}
+		
+		/**
+		 * Returns the next Sequence.
+		 * @return the next Sequence.
+		 * @throws NoSuchElementException if there are no more Sequences.
+		 */
+		@Override
+		public Sequence next() {
+			if (! hasNext())
+				throw new NoSuchElementException();
+			Sequence result = next;
+			next = null;
+			return result;
+		}
+		
+		/**
+		 * Unsupported, since a BoundedProduct is immutable.
+		 * @throws UnsupportedOperationException always.
+		 */
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	/**
+	 * Creates the product of a finite Language and the bounded Language Ln*,
+	 * chosen from an Alphabet.  The finite Language supplies the prefixes,
+	 * which are copied, so that later changes to that Language have no 
+	 * effect on this BoundedProduct.
+	 * @param language the Language of prefixes.
+	 * @param alphabet the Alphabet of the suffixes.
+	 * @param length the maximum length of the suffixes.
+	 */
+	public BoundedProduct(Language language, Alphabet alphabet, int length) {
+		prefixes = new ArrayList<Sequence>(language.getSequences());
+		this.alphabet = alphabet;
+		this.length = Math.max(length, 0);
+		sequences = new SequenceView();
+		limits = new int[prefixes.size()];
+		leaders = new ArrayList<List<int[]>>(prefixes.size());
+		for (int index = 0; index < prefixes.size(); ++index) {
+			findOverlaps(index);
+		}
+	}
+	
+	/**
+	 * Finds where the Sequences of one prefix overlap those of earlier 
+	 * prefixes.  An earlier prefix that is a prefix of this one, whose
+	 * remaining Events are all in the Alphabet, duplicates every suffix up
+	 * to some length.  An earlier prefix that extends this one by Events
+	 * in the Alphabet duplicates every suffix that starts with these Events.
+	 * Leading suffixes that start with another leading suffix are omitted.
+	 * @param index the index of the prefix.
+	 */
+	private void findOverlaps(int index) {
+		List<Event> current = prefixes.get(index).getEvents();
+		int limit = -1;
+		List<int[]> found = new ArrayList<int[]>();
+		for (int other = 0; other < index; ++other) {
+			List<Event> earlier = prefixes.get(other).getEvents();
+			if (earlier.size() <= current.size()) {
+				int[] extra = indexOf(current, earlier);
+				if (extra != null) 
+					limit = Math.max(limit, length - extra.length);
+			}
+			else {
+				int[] extra = indexOf(earlier, current);
+				if (extra != null && extra.length <= length)
+					found.add(extra);
+			}
+		}
+		limits[index] = limit;
+		List<int[]> minimal = new ArrayList<int[]>();
+		for (int[] leader : found) {
+			boolean covered = false;
+			for (int[] other : found) {
+				if (other.length < leader.length && startsWith(leader, other))
+					covered = true;
+			}
+			if (! covered)
+				minimal.add(leader);
+		}
+		leaders.add(minimal);
+	}
+	
+	/**
+	 * Computes the Events by which a longer list of Events extends a shorter
+	 * list, as Alphabet indices.
+	 * @param longer the longer list of Events.
+	 * @param shorter the shorter list of Events.
+	 * @return the Alphabet indices of the extra Events; or null, if the 
+	 * shorter list is not a prefix of the longer list, or if any extra 
+	 * Event is not in the Alphabet.
+	 */
+	private int[] indexOf(List<Event> longer, List<Event> shorter) {
+		if (! longer.subList(0, shorter.size()).equals(shorter))
+			return null;
+		int[] result = new int[longer.size() - shorter.size()];
+		for (int index = 0; index < result.length; ++index) {
+			result[index] = alphabet.indexOf(longer.get(shorter.size() + index));
+			if (result[index] < 0)
+				return null;
+		}
+		return result;
+	}
+	
+	/**
+	 * Reports whether a suffix starts with a given leading suffix.
+	 * @param suffix the suffix, as Alphabet indices.
+	 * @param leader the leading suffix, as Alphabet indices.
+	 * @return true, if the suffix starts with the leading suffix.
+	 */
+	private boolean startsWith(int[] suffix, int[] leader) {
+		if (leader.length > suffix.length)
+			return false;
+		for (int index = 0; index < leader.length; ++index) {
+			if (suffix[index] != leader[index])
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the prefix Sequences of this BoundedProduct, in order.
+	 * @return the list of prefixes.
+	 */
+	protected List<Sequence> getPrefixes() {
+		return prefixes;
+	}
+	
+	/**
+	 * Returns the Alphabet that indexes the Events of the suffixes.
+	 * @return the Alphabet.
+	 */
+	protected Alphabet getAlphabet() {
+		return alphabet;
+	}
+	
+	/**
+	 * Returns the maximum length of the suffixes.
+	 * @return the maximum length.
+	 */
+	protected int getLength() {
+		return length;
+	}
+	
+	/**
+	 * Reports whether a prefix extended by a suffix duplicates a Sequence
+	 * that was enumerated for some earlier prefix.
+	 * @param prefix the index of the prefix.
+	 * @param suffix the suffix, as Alphabet indices.
+	 * @return true, if the Sequence is a duplicate.
+	 */
+	protected boolean isDuplicate(int prefix, int[] suffix) {
+		if (suffix.length <= limits[prefix])
+			return true;
+		for (int[] leader : leaders.get(prefix)) {
+			if (startsWith(suffix, leader))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Counts the suffixes of length 0..n, chosen from the Alphabet.
+	 * @param n the maximum length of the suffixes.
+	 * @return the number of suffixes, which is zero if n is negative.
+	 */
+	private long countUpTo(int n) {
+		long result = 0;
+		long power = 1;
+		for (int index = 0; index <= n; ++index) {
+			result += power;
+			power *= alphabet.size();
+		}
+		return result;
+	}
+	
+	/**
+	 * Counts the Sequences of this BoundedProduct that extend a prefix by a
+	 * given suffix, or by any longer suffix starting with it.  Computed 
+	 * arithmetically, by counting all such suffixes up to the maximum 
+	 * length, less those that duplicate Sequences of earlier prefixes.
+	 * This counts the subtree of Sequences below a given Sequence, without
+	 * enumerating them.
+	 * @param prefix the index of the prefix.
+	 * @param suffix the leading suffix, as Alphabet indices.
+	 * @return the number of Sequences starting with the prefix and suffix.
+	 */
+	protected long countExtensions(int prefix, int[] suffix) {
+		int limit = limits[prefix] - suffix.length;
+		int remainder = length - suffix.length;
+		long result = countUpTo(remainder) - countUpTo(limit);
+		for (int[] leader : leaders.get(prefix)) {
+			if (startsWith(suffix, leader))
+				return 0;	// Every extension is a duplicate
+			if (startsWith(leader, suffix)) {
+				// Leading suffixes no longer than the limit are not counted
+				int extra = leader.length - suffix.length;
+				result -= countUpTo(remainder - extra) - 
+						countUpTo(limit - extra);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the size of this BoundedProduct.  Computed arithmetically, by
+	 * counting for each prefix all suffixes up to the maximum length, less 
+	 * those suffixes that duplicate Sequences of earlier prefixes.  The
+	 * result is clipped to Integer.MAX_VALUE, if it is larger.
+	 * @return the number of Sequences in this BoundedProduct.
+	 */
+	@Override
+	public int size() {
+		long result = 0;
+		int[] empty = new int[0];
+		for (int index = 0; index < prefixes.size(); ++index) {
+			result += countExtensions(index, empty);
+		}
+		return (int) Math.min(result, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Returns the Sequences of this BoundedProduct, as an unmodifiable set.
+	 * The Sequences are enumerated on demand, each time the set is iterated,
+	 * and are not stored.
+	 * @return the set of Sequences.
+	 */
+	@Override
+	public Set<Sequence> getSequences() {
+		return sequences;
+	}
+	
+	/**
+	 * Unsupported, since a BoundedProduct is immutable.
+	 * @param sequence the Sequence to add.
+	 * @return never returns.
+	 * @throws SemanticError always.
+	 */
+	@Override
+	public Language addSequence(Sequence sequence) {
+		semanticError("cannot be extended, since it is a bounded product.");
+		return this;
+	}
+	
+	/**
+	 * Creates the product of another Language and this BoundedProduct.  The
+	 * result is a BoundedProduct, whose prefixes are the product of the 
+	 * other Language and the prefixes of this BoundedProduct.
+	 * @param language the other Language.
+	 * @return the BoundedProduct of the other Language and this one.
+	 */
+	protected BoundedProduct prefixWith(Language language) {
+		Language prefixLanguage = new Language();
+		for (Sequence prefix : prefixes) {
+			prefixLanguage.addSequence(prefix);
+		}
+		return new BoundedProduct(language.product(prefixLanguage), 
+				alphabet, length);
+	}
+
+}
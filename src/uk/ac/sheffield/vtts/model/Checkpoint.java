@@ -0,0 +1,327 @@
+/**
+ * Broker@Cloud Verification and Testing Tool Suite.
+ * Copyright (C) 2015 Anthony J H Simons and Raluca Lefticaru, 
+ * University of Sheffield, UK.  All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This file is "foreground software", developed as an output of 
+ * the European Union collaborative research project, "Broker@Cloud: 
+ * enabling continuous quality assurance and optimization in future 
+ * enterprise cloud service brokers", FP7-ICT-2011-8 no. 318392, and
+ * is licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or 
+ * implied.  See the License for the specific language governing 
+ * permissions and limitations under the License.
+ * 
+ * The freedoms granted by the License to incorporate, redistribute,
+ * modify or extend the software apply only to "foreground software"
+ * contributed by the Broker@Cloud project; and not to any proprietary 
+ * software, or "background software" incorporated from other sources, 
+ * which may be offered under different terms of usage.
+ * 
+ * Please contact the Department of Computer Science, University of
+ * Sheffield, Regent Court, 211 Portobello, Sheffield S1 4DP, UK or
+ * visit www.sheffield.ac.uk/dcs if you need additional information 
+ * or have any questions.
+ */
+
+
+package uk.ac.sheffield.vtts.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checkpoint represents a snapshot of the simulated state of a Service.  A
+ * Checkpoint records the current State of a Machine, together with the
+ * bound status and bound value of every assignable Parameter in a Protocol,
+ * whether Variables in the Memory, or Inputs, Outputs and Failures in each
+ * Operation.  Restoring a Checkpoint returns the Machine and Protocol to the
+ * recorded point in the simulation, without resetting them and replaying 
+ * the Sequence of Events that reached this point.  This allows a search to
+ * branch from any point that it has already simulated.
+ * <p>
+ * Checkpoints taken from the same simulation share a single, fixed table of
+ * the Protocol's Parameters, so that capturing or restoring a Checkpoint is
+ * a cheap copy of values to or from arrays.  Bound values are shared, not
+ * copied, since all simulated values are treated as immutable:  functional
+ * Expressions always return new values, rather than modifying old ones.
+ * Numeric values that a Parameter holds unboxed are recorded unboxed, in
+ * primitive arrays, so that capturing a Checkpoint never boxes a value.
+ * <p>
+ * Checkpoints of the same simulation may be compared for equality, which
+ * holds if they record the same State and the same Parameter bindings.  A
+ * state-space search may therefore use a set of Checkpoints to remember 
+ * the configurations that it has already visited.
+ * 
+ * @author Anthony J H Simons
+ * @version Broker@Cloud 1.0
+ */
+public class Checkpoint extends Element {
+	
+	/**
+	 * The Machine whose current State is recorded.
+	 */
+	private Machine machine;
+	
+	/**
+	 * The table of assignable Parameters whose bindings are recorded.  This
+	 * table is shared by every Checkpoint taken from the same simulation.
+	 */
+	private Parameter[] parameters;
+	
+	/**
+	 * The recorded current State of the Machine.
+	 */
+	private State state;
+	
+	/**
+	 * The recorded bound status of each Parameter.
+	 */
+	private boolean[] bound;
+	
+	/**
+	 * The recorded bound value of each Parameter held as an object, or null.
+	 */
+	private Object[] values;
+	
+	/**
+	 * The recorded kind of primitive slot holding the bound value of each
+	 * Parameter; or null, if no Parameter held its value in a slot.
+	 */
+	private byte[] slots;
+	
+	/**
+	 * The recorded bits of the primitive slot of each Parameter; or null, 
+	 * if no Parameter held its value in a slot.
+	 */
+	private long[] bits;
+	
+	/**
+	 * The cached hash code of this Checkpoint, computed when first needed.
+	 */
+	private int hash = 0;
+
+	/**
+	 * Creates a Checkpoint for the simulation of a Machine and a Protocol.
+	 * Collects the table of assignable Parameters from the Protocol, then
+	 * records the current State of the Machine and the bindings of these
+	 * Parameters.  The Protocol may be null, if only the Machine is being 
+	 * simulated.
+	 * @param machine the simulated Machine.
+	 * @param protocol the simulated Protocol, or null.
+	 */
+	public Checkpoint(Machine machine, Protocol protocol) {
+		this.machine = machine;
+		List<Parameter> table = new ArrayList<Parameter>();
+		if (protocol != null) {
+			for (Parameter parameter : protocol.getMemory().getParameters()) {
+				if (parameter.isAssignable())
+					table.add(parameter);
+			}
+			for (Operation operation : protocol.getOperations()) {
+				table.addAll(operation.getParameters());
+			}
+		}
+		parameters = table.toArray(new Parameter[table.size()]);
+		record();
+	}
+	
+	/**
+	 * Creates a Checkpoint for the same simulation as another Checkpoint.
+	 * Shares the table of Parameters of the other Checkpoint, then records
+	 * the current State of the Machine and the bindings of the Parameters.
+	 * @param other the other Checkpoint.
+	 */
+	protected Checkpoint(Checkpoint other) {
+		machine = other.machine;
+		parameters = other.parameters;
+		record();
+	}
+	
+	/**
+	 * Records the current State of the Machine and the bindings of every
+	 * Parameter in the table of Parameters.  A value held in a primitive
+	 * slot is recorded as the bits of the slot; the primitive arrays are 
+	 * only created if some Parameter holds such a value.
+	 */
+	private void record() {
+		state = machine.getCurrentState();
+		bound = new boolean[parameters.length];
+		values = new Object[parameters.length];
+		for (int i = 0; i < parameters.length; ++i) {
+			Parameter parameter = parameters[i];
+			bound[i] = parameter.bound;
+			int slot = parameter.slotKind();
+			if (slot == Parameter.NONE)
+				values[i] = parameter.value;
+			else {
+				if (slots == null) {
+					slots = new byte[parameters.length];
+					bits = new long[parameters.length];
+				}
+				slots[i] = (byte) slot;
+				bits[i] = parameter.slotBits();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the recorded kind of primitive slot of the i'th Parameter.
+	 * @param i the index of the Parameter.
+	 * @return INT, LONG or DOUBLE, or NONE if the value is an object.
+	 */
+	private int slot(int i) {
+		return slots == null ? Parameter.NONE : slots[i];
+	}
+	
+	/**
+	 * Returns the recorded bound value of the i'th Parameter as an object,
+	 * boxing a value that was recorded from a primitive slot.
+	 * @param i the index of the Parameter.
+	 * @return the recorded value, or null.
+	 */
+	private Object value(int i) {
+		switch (slot(i)) {
+		case Parameter.INT:
+			return (int) bits[i];
+		case Parameter.LONG:
+			return bits[i];
+		case Parameter.DOUBLE:
+			return Double.longBitsToDouble(bits[i]);
+		default:
+			return values[i];
+		}
+	}
+	
+	/**
+	 * Reports whether this Checkpoint records the same bound values as 
+	 * another Checkpoint of the same simulation.  Values recorded from the
+	 * same kind of slot are compared without boxing; a value recorded from
+	 * a slot is equal to the same value recorded as an object.
+	 * @param other the other Checkpoint.
+	 * @return true, if every recorded value is equal.
+	 */
+	private boolean sameValues(Checkpoint other) {
+		for (int i = 0; i < parameters.length; ++i) {
+			int slot = slot(i);
+			if (slot != other.slot(i)) {
+				if (! safeEquals(value(i), other.value(i)))
+					return false;
+			}
+			else if (slot == Parameter.NONE) {
+				if (! safeEquals(values[i], other.values[i]))
+					return false;
+			}
+			else if (bits[i] != other.bits[i])
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns a hash code for the recorded bound values.  Each value from
+	 * a slot is hashed like its boxed form, such that the result is the 
+	 * same as for an array of the boxed values.
+	 * @return the hash code for the recorded values.
+	 */
+	private int valuesHashCode() {
+		int result = 1;
+		for (int i = 0; i < parameters.length; ++i) {
+			int slot = slot(i);
+			if (slot == Parameter.NONE)
+				result = result * 31 + safeHashCode(values[i]);
+			else if (slot == Parameter.INT)
+				result = result * 31 + (int) bits[i];
+			else  // LONG or DOUBLE, hashed like Long or Double
+				result = result * 31 + (int) (bits[i] ^ (bits[i] >>> 32));
+		}
+		return result;
+	}
+	
+	/**
+	 * Reports whether this Checkpoint is equal to another object.  True, if
+	 * the other object is a Checkpoint of the same simulation that records
+	 * the same State and the same bound status and value of every Parameter.
+	 * @param other the other object.
+	 * @return true, if both Checkpoints record the same configuration.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (this == other)
+			return true;
+		else if (other instanceof Checkpoint) {
+			Checkpoint checkpoint = (Checkpoint) other;
+			return state == checkpoint.state && 
+					parameters == checkpoint.parameters &&
+					hashCode() == checkpoint.hashCode() &&
+					Arrays.equals(bound, checkpoint.bound) &&
+					sameValues(checkpoint);
+		}
+		else
+			return false;
+	}
+	
+	/**
+	 * Returns a quasi-unique hash code for this Checkpoint.  The hash code
+	 * is computed from the recorded State and Parameter bindings, and is
+	 * cached, since a Checkpoint never changes after it is recorded.
+	 * @return the hash code for this Checkpoint.
+	 */
+	@Override
+	public int hashCode() {
+		if (hash == 0) {
+			int result = safeHashCode(state);
+			result = result * 31 + Arrays.hashCode(bound);
+			result = result * 31 + valuesHashCode();
+			hash = (result == 0 ? 1 : result);
+		}
+		return hash;
+	}
+	
+	/**
+	 * Captures a new Checkpoint of the same simulation.  Records the point
+	 * that the simulation has reached now, reusing the table of Parameters
+	 * of this Checkpoint.  This is cheaper than creating a new Checkpoint 
+	 * from the Machine and Protocol.
+	 * @return the new Checkpoint.
+	 */
+	public Checkpoint capture() {
+		return new Checkpoint(this);
+	}
+	
+	/**
+	 * Restores the simulation to this Checkpoint.  Sets the current State
+	 * of the Machine and the bindings of every Parameter to the recorded
+	 * values.  A Checkpoint may be restored any number of times.
+	 * @return this Checkpoint.
+	 */
+	public Checkpoint restore() {
+		machine.setCurrentState(state);
+		for (int i = 0; i < parameters.length; ++i) {
+			int slot = slot(i);
+			if (slot == Parameter.NONE)
+				parameters[i].restore(bound[i], values[i]);
+			else
+				parameters[i].restore(bound[i], slot, bits[i]);
+		}
+		return this;
+	}
+	
+	/**
+	 * Returns the recorded current State of the Machine.
+	 * @return the recorded State.
+	 */
+	public State getState() {
+		return state;
+	}
+
+}
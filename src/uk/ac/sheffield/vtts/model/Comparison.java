@@ -37,6 +37,9 @@ package uk.ac.sheffield.vtts.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import uk.ac.sheffield.vtts.ground.TypeDescriptor;
+import uk.ac.sheffield.vtts.ground.TypeDescriptor.Kind;
+
 
 /**
  * Comparison represents an inequality expression, comparing two operands.
@@ -55,6 +58,141 @@ public class Comparison extends Predicate {
 	 */
 	private String valueType = null;
 	
+	/**
+	 * The memoised reversal of this Comparison, if it is canonical.
+	 */
+	private Predicate reversal = null;
+	
+	/**
+	 * The operator codes of a Comparison, in the order of the legal operator
+	 * names.  Used for dispatching by the compiled Evaluator.
+	 */
+	private static final int EQUALS = 0, NOT_EQUALS = 1, LESS_THAN = 2,
+			MORE_THAN = 3, NOT_LESS_THAN = 4, NOT_MORE_THAN = 5;
+	
+	/**
+	 * The value types that are ordered without boxing, by the compiled
+	 * Evaluator.
+	 */
+	private static final int OTHER = 0, INTEGER = 1, LONG = 2, DOUBLE = 3;
+	
+	/**
+	 * ComparisonEvaluator represents the compiled form of a Comparison, whose
+	 * operator and value type are fixed.  Since every ordered value type is
+	 * Comparable with itself, the ordering is dispatched only once, when it 
+	 * is decided whether the value type is ordered.
+	 */
+	private class ComparisonEvaluator extends Evaluator {
+		
+		/**
+		 * The operator code.
+		 */
+		private final int operator = operatorCode("equals", "notEquals", 
+				"lessThan", "moreThan", "notLessThan", "notMoreThan");
+		
+		/**
+		 * The first operand.
+		 */
+		private final Expression first = operand(0);
+		
+		/**
+		 * The second operand.
+		 */
+		private final Expression second = operand(1);
+		
+		/**
+		 * The parsed value type, or null, if there are no operands.
+		 */
+		private final TypeDescriptor descriptor = (valueType == null ? 
+				null : factory.getDescriptor(valueType));
+		
+		/**
+		 * Flag set to true if the value type is strictly ordered.
+		 */
+		private final boolean ordered = 
+				descriptor != null && descriptor.isOrdered();
+		
+		/**
+		 * The numeric value type, INTEGER, LONG or DOUBLE, whose values may
+		 * be ordered without boxing; otherwise OTHER.
+		 */
+		private final int numeric = (descriptor == null ? OTHER :
+				descriptor.getKind() == Kind.INTEGER ? INTEGER :
+					descriptor.getKind() == Kind.LONG ? LONG : 
+						descriptor.getKind() == Kind.DOUBLE ? DOUBLE : OTHER);
+		
+		/**
+		 * Evaluates the compiled Comparison.
+		 * @return true if the predicate holds between the operands.
+		 */
+		@Override
+		public Boolean evaluate() {
+			if (numeric != OTHER && operator >= LESS_THAN) {
+				int order = compareNumbers();
+				switch (operator) {
+				case LESS_THAN:
+					return order < 0;
+				case MORE_THAN:
+					return order > 0;
+				case NOT_LESS_THAN:
+					return order >= 0;
+				default:  // NOT_MORE_THAN
+					return order <= 0;
+				}
+			}
+			Object value0 = first.evaluate();
+			Object value1 = second.evaluate();
+			switch (operator) {
+			case EQUALS:
+				return value0.equals(value1);
+			case NOT_EQUALS:
+				return ! value0.equals(value1);
+			case LESS_THAN:
+				return lessThan(value0, value1);
+			case MORE_THAN:
+				return lessThan(value1, value0);
+			case NOT_LESS_THAN:
+				return value0.equals(value1) || lessThan(value1, value0);
+			default:  // NOT_MORE_THAN
+				return value0.equals(value1) || lessThan(value0, value1);
+			}
+		}
+		
+		/**
+		 * Reports whether the first value is less than the second value,
+		 * according to their natural ordering.
+		 * @param first the first value.
+		 * @param second the second value.
+		 * @return true, if the first value is less than the second value.
+		 */
+		@SuppressWarnings("unchecked")
+		private boolean lessThan(Object first, Object second) {
+			if (! ordered)
+				semanticError("values are of an unordered type: '" + 
+						valueType + "'.");
+			return ((Comparable<Object>) first).compareTo(second) < 0;
+		}
+		
+		/**
+		 * Compares the unboxed values of the operands, according to their
+		 * natural ordering, which for Doubles is the ordering of compareTo.
+		 * @return a negative, zero or positive comparison result.
+		 */
+		private int compareNumbers() {
+			switch (numeric) {
+			case INTEGER:
+				return Integer.compare(first.evaluateInt(), 
+						second.evaluateInt());
+			case LONG:
+				return Long.compare(first.evaluateLong(), 
+						second.evaluateLong());
+			default:  // DOUBLE
+				return Double.compare(first.evaluateDouble(), 
+						second.evaluateDouble());
+			}
+		}
+	}
+	
 	/**
 	 * Checks the name of a Comparison predicate and sets the expected
 	 * number of operands.  All Comparisons expect two operands.
@@ -110,7 +248,8 @@ public class Comparison extends Predicate {
 	 * @param other the other Predicate.
 	 * @return true if this Comparison subsumes the other Predicate.
 	 */
-	public boolean subsumes(Predicate other) {
+	@Override
+	protected boolean decideSubsumes(Predicate other) {
 		if (other instanceof Comparison) {
 			Comparison comparison = (Comparison) other;
 			return subsumesComparison(comparison) || 
@@ -167,11 +306,26 @@ public class Comparison extends Predicate {
 			return true;
 	}
 	
+	/**
+	 * Returns a copy of this Comparison, with the given operands.
+	 * @param operands the operands of the copy.
+	 * @return the copied Comparison.
+	 */
+	@Override
+	protected Comparison copy(List<Expression> operands) {
+		Comparison result = new Comparison(name);
+		for (Expression operand : operands) {
+			result.addExpression(operand);
+		}
+		return result;
+	}
+	
 	/**
 	 * Returns the complement of this Comparison.  Negates the inequality
 	 * relationship, but keeps the same operands.
 	 */
-	public Predicate negate() {
+	@Override
+	protected Predicate complement() {
 		Predicate result = new Comparison(getNegatedName());
 		for (Expression operand : getExpressions()) {
 			result.addExpression(operand);
@@ -206,14 +360,20 @@ public class Comparison extends Predicate {
 
 	/**
 	 * Returns the symmetric reversal of this Comparison.  Reverses the 
-	 * inequality relationship and reverses the order of operands.
+	 * inequality relationship and reverses the order of operands.  If this
+	 * Comparison is canonical, the reversal is interned and memoised.
 	 * @return a symmetric Comparison expressing the same logical 
 	 * relationship, but with the order of operands reversed.
 	 */
 	public Predicate reverse() {
+		if (reversal != null)
+			return reversal;
 		Predicate result = new Comparison(getReversedName());
 		result.addExpression(operand(1)).addExpression(operand(0));
-		return result;
+		if (table() == null)
+			return result;
+		reversal = table().intern(result);
+		return reversal;
 	}
 	
 	/**
@@ -278,27 +438,22 @@ public class Comparison extends Predicate {
 	}
 
 	/**
-	 * Executes this Comparison predicate on its operands.  Checks the 
-	 * consistency of the operand types and then branches according to 
-	 * the name of this Comparison predicate.
+	 * Creates the compiled form of this Comparison predicate.
+	 * @return the Evaluator for this Comparison.
+	 */
+	@Override
+	protected Evaluator createEvaluator() {
+		return new ComparisonEvaluator();
+	}
+
+	/**
+	 * Executes this Comparison predicate on its operands.  Delegates to the
+	 * compiled form of this Comparison, in which the operand valueType and
+	 * the operator were fixed when this Comparison was first compiled.
 	 * @return true if the predicate holds between the operands.
 	 */
 	public Boolean evaluate() throws SemanticError {
-		typeCheck();  // Caches the valueType.
-		Object value0 = operand(0).evaluate();
-		Object value1 = operand(1).evaluate();
-		if (name.equals("equals"))
-			return equals(value0, value1);
-		else if (name.equals("notEquals"))
-			return notEquals(value0, value1);
-		else if (name.equals("lessThan"))
-			return lessThan(value0, value1);
-		else if (name.equals("moreThan"))
-			return moreThan(value0, value1);
-		else if (name.equals("notLessThan"))
-			return notLessThan(value0, value1);
-		else // if (name.equals("notMoreThan"))
-			return notMoreThan(value0, value1);
+		return (Boolean) getEvaluator().evaluate();
 	}
 
 	/**
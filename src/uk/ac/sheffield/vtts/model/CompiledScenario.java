@@ -0,0 +1,105 @@
+/**
+ * Broker@Cloud Verification and Testing Tool Suite.
+ * Copyright (C) 2015 Anthony J H Simons and Raluca Lefticaru, 
+ * University of Sheffield, UK.  All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This file is "foreground software", developed as an output of 
+ * the European Union collaborative research project, "Broker@Cloud: 
+ * enabling continuous quality assurance and optimization in future 
+ * enterprise cloud service brokers", FP7-ICT-2011-8 no. 318392, and
+ * is licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or 
+ * implied.  See the License for the specific language governing 
+ * permissions and limitations under the License.
+ * 
+ * The freedoms granted by the License to incorporate, redistribute,
+ * modify or extend the software apply only to "foreground software"
+ * contributed by the Broker@Cloud project; and not to any proprietary 
+ * software, or "background software" incorporated from other sources, 
+ * which may be offered under different terms of usage.
+ * 
+ * Please contact the Department of Computer Science, University of
+ * Sheffield, Regent Court, 211 Portobello, Sheffield S1 4DP, UK or
+ * visit www.sheffield.ac.uk/dcs if you need additional information 
+ * or have any questions.
+ */
+
+package uk.ac.sheffield.vtts.model;
+
+/**
+ * CompiledScenario is the base class of the bytecode form of a Scenario.
+ * Subclasses are generated at runtime by the ScenarioCompiler, and compile
+ * the initial Binding, guard Condition and final Effect of one Scenario to
+ * straight-line JVM code.  This class supplies the protocol for enabling
+ * and executing the Scenario, which mirrors the interpreted protocol in 
+ * Scenario, including the failsafe treatment of guards with undefined 
+ * expressions.
+ * 
+ * @author Anthony J H Simons
+ * @version Broker@Cloud 1.0
+ */
+public abstract class CompiledScenario {
+	
+	/**
+	 * Creates a CompiledScenario.  Called by generated subclasses.
+	 */
+	protected CompiledScenario() {
+	}
+	
+	/**
+	 * Executes the compiled Assignments of the initial Binding, if any.
+	 */
+	public abstract void bind();
+	
+	/**
+	 * Evaluates the compiled Predicate of the guard Condition, if any.
+	 * @return true, if the guard is satisfied, or there is no guard.
+	 */
+	public abstract boolean guard();
+	
+	/**
+	 * Executes the compiled Assignments of the final Effect, if any.
+	 */
+	public abstract void effect();
+	
+	/**
+	 * Reports whether the compiled Scenario is enabled in the current Memory
+	 * state.  Binds any Inputs, then tests the guard.  A guard that refers
+	 * to an undefined expression is reported and treated as unsatisfied.
+	 * @return true, if the compiled Scenario is enabled.
+	 */
+	public boolean isEnabled() {
+		bind();
+		// FAILSAFE EVALUATION MODE - UNSATISFIABLE GUARDS WITH NULL EXPRS
+		try {
+			return guard();
+		}
+		catch (NullPointerException ex) {
+			System.out.println("WARNING: Condition contains undefined expression.");
+			return false;
+		}
+	}
+	
+	/**
+	 * Executes the compiled Scenario, if it is enabled.  Checks whether the
+	 * Scenario is enabled, and if so, executes the final Effect.
+	 * @return true, if the compiled Scenario was executed.
+	 */
+	public boolean execute() {
+		if (isEnabled()) {
+			effect();
+			return true;
+		}
+		else
+			return false;
+	}
+
+}
@@ -61,6 +61,12 @@ public class Condition extends Element {
 	 */
 	private Predicate predicate;
 	
+	/**
+	 * The canonical form of the guard Predicate, in the PredicateTable of
+	 * the last canonical constraint that was checked, or null.
+	 */
+	private Predicate canonical = null;
+	
 	/**
 	 * Creates a default Condition.
 	 */
@@ -74,6 +80,7 @@ public class Condition extends Element {
 	 */
 	public Condition addPredicate(Predicate predicate) {
 		this.predicate = predicate;
+		canonical = null;
 		return this;
 	}
 			
@@ -113,13 +120,21 @@ public class Condition extends Element {
 	 * Determines whether this Condition would be satisfied by some actual 
 	 * constraint.  The actual constraint must be defined in terms of the
 	 * same Parameters as this Condition's guard.  Returns true, if the
-	 * guard subsumes the actual constraint.
+	 * guard subsumes the actual constraint.  If the actual constraint is
+	 * canonical, the guard is first interned in the same PredicateTable, 
+	 * such that the derived forms of the guard are memoised across many 
+	 * actual constraints.
 	 * @param actual a Predicate representing an actual constraint.
 	 * @return true if this Condition's formal Predicate subsumes the actual
 	 * Predicate.
 	 */
 	public boolean accepts(Predicate actual) {
-		return predicate.subsumes(actual);
+		PredicateTable table = actual.table();
+		if (table == null)
+			return predicate.subsumes(actual);
+		if (canonical == null || canonical.table() != table)
+			canonical = table.intern(predicate);
+		return canonical.subsumes(actual);
 	}
 	
 	/**
@@ -132,6 +147,23 @@ public class Condition extends Element {
 		return this;
 	}
 	
+	/**
+	 * Compiles the Predicate of this Condition.  Called once, after the
+	 * Predicate has resolved its Parameter references.  A Predicate with
+	 * undefined expressions is left uncompiled, to be reported as a warning
+	 * when this Condition is evaluated.
+	 * @return this Condition.
+	 */
+	public Condition compile() {
+		try {
+			getPredicate().compile();
+		}
+		catch (NullPointerException ex) {
+			// Failsafe evaluation mode will report this later
+		}
+		return this;
+	}
+	
 	/**
 	 * Evaluates this guard Condition, returning true or false.  Evaluates
 	 * the Predicate stored in this Condition.  The Predicate may be any kind
@@ -34,8 +34,12 @@
 
 package uk.ac.sheffield.vtts.model;
 
+import java.util.Collection;
 import java.util.Collections;
-
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
 /**
@@ -47,12 +51,25 @@ import java.util.Collections;
  * XML content string and is converted to a strongly-typed bound value when 
  * the Constant is first evaluated.  Empty content is always interpreted as
  * a default bound value, according to the type of the Constant.  A Constant
- * is therefore always bound.
+ * is therefore always bound.  A Constant whose value is a collection may be
+ * frozen when first tested for Membership, making its value immutable and
+ * indexing its elements and keys for fast Membership tests.
  * 
  * @author Anthony J H Simons
  * @version Broker@Cloud 1.0
  */
 public class Constant extends Parameter {
+	
+	/**
+	 * The hashed index of the elements of a frozen List or Set value, or of
+	 * the entries of a frozen Map value; otherwise null.
+	 */
+	private Set<Object> elements;
+	
+	/**
+	 * The hashed index of the keys of a frozen Map value; otherwise null.
+	 */
+	private Set<Object> keys;
 
 	/**
 	 * Creates a default Constant parameter.
@@ -108,6 +125,64 @@ public class Constant extends Parameter {
 	public void rebind(Object value) {
 	}
 	
+	/**
+	 * Freezes the value of this Constant, if this is a collection.  Creates
+	 * the value from the content, then replaces this by an unmodifiable 
+	 * view, since a Constant value must never change.  Builds a hashed 
+	 * index of the elements of a List or Set, or of the entries and keys of
+	 * a Map, so that Membership tests on a frozen Constant do not scan the
+	 * collection.  Constants of other types are not affected.  Triggered 
+	 * once, when the element or key index of this Constant is first needed.
+	 * @return this Constant.
+	 */
+	@SuppressWarnings("unchecked")
+	protected Constant freeze() {
+		if (elements != null || type == null)
+			return this;
+		switch (factory.getDescriptor(type).getKind()) {
+		case LIST:
+			List<Object> list = (List<Object>) evaluate();
+			elements = new HashSet<Object>(list);
+			value = Collections.unmodifiableList(list);
+			break;
+		case SET:
+			Set<Object> set = (Set<Object>) evaluate();
+			elements = new HashSet<Object>(set);
+			value = Collections.unmodifiableSet(set);
+			break;
+		case MAP:
+			Map<Object, Object> map = (Map<Object, Object>) evaluate();
+			elements = new HashSet<Object>(map.entrySet());
+			keys = new HashSet<Object>(map.keySet());
+			value = Collections.unmodifiableMap(map);
+			break;
+		default:
+			break;
+		}
+		return this;
+	}
+	
+	/**
+	 * Returns the hashed index of the elements of this Constant, freezing
+	 * this Constant first, if necessary.  The index holds the elements of
+	 * a List or Set, or the entries of a Map.
+	 * @return the element index, or null, if the value is not a collection.
+	 */
+	protected Collection<?> elementIndex() {
+		freeze();
+		return elements;
+	}
+	
+	/**
+	 * Returns the hashed index of the keys of this Constant, freezing this
+	 * Constant first, if necessary.
+	 * @return the key index, or null, if the value is not a Map.
+	 */
+	protected Collection<?> keyIndex() {
+		freeze();
+		return keys;
+	}
+	
 	/**
 	 * Reports whether this Constant is the bottom element of its type.
 	 * This is true for the null Character, the empty String, Set, List
@@ -143,4 +218,28 @@ public class Constant extends Parameter {
 		semanticError("cannot be re-assigned a new value.");
 	}
 	
+	/**
+	 * Reports an attempt to assign an int value to this Constant as an error.
+	 */
+	@Override
+	public void assignInt(int value) {
+		semanticError("cannot be re-assigned a new value.");
+	}
+	
+	/**
+	 * Reports an attempt to assign a long value to this Constant as an error.
+	 */
+	@Override
+	public void assignLong(long value) {
+		semanticError("cannot be re-assigned a new value.");
+	}
+	
+	/**
+	 * Reports an attempt to assign a double value to this Constant as an error.
+	 */
+	@Override
+	public void assignDouble(double value) {
+		semanticError("cannot be re-assigned a new value.");
+	}
+	
 }
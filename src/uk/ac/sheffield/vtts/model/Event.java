@@ -47,6 +47,47 @@ package uk.ac.sheffield.vtts.model;
  */
 public class Event extends Named {
 	
+	/**
+	 * SplitName is an immutable record of an Event's name, split into its
+	 * request-name and response-name parts.  Since all of its fields are
+	 * final, a SplitName may be shared safely between threads, even though
+	 * it is published through an unsynchronised field.
+	 */
+	private static class SplitName {
+		
+		/**
+		 * The name that was split.
+		 */
+		private final String name;
+		
+		/**
+		 * The request-name part of the name.
+		 */
+		private final String request;
+		
+		/**
+		 * The response-name part of the name.
+		 */
+		private final String response;
+		
+		/**
+		 * Splits a name into its request-name and response-name parts.
+		 * @param name the name, in the format "request/response".
+		 */
+		private SplitName(String name) {
+			String[] parts = name.split("/");
+			this.name = name;
+			this.request = parts[0];
+			this.response = parts[1];
+		}
+	}
+	
+	/**
+	 * The cached split of this Event's name, or null until the name is 
+	 * first split.
+	 */
+	private SplitName splitName;
+	
 	/**
 	 * Validates the name of an Event.  The name of an Event should be in the
 	 * format: "request/response".
@@ -74,12 +115,31 @@ public class Event extends Named {
 		validate(name);
 	}
 	
+	/**
+	 * Splits this Event's name into its request-name and response-name, if
+	 * this was not already done for the current name.  The parts are cached,
+	 * since they are requested whenever the Event is simulated.  The name of
+	 * a TestStep may change after it is created, in which case the new name
+	 * is split again.  Events are shared between the threads that generate
+	 * tests, so the cache is read once and replaced as a whole, such that a
+	 * thread never sees the parts of one name together with another name.
+	 * @return the split of the current name.
+	 */
+	private SplitName split() {
+		SplitName result = splitName;
+		if (result == null || result.name != name) {
+			result = new SplitName(name);
+			splitName = result;
+		}
+		return result;
+	}
+	
 	/**
 	 * The request-name part of this Event's name.
 	 * @return the request-name.
 	 */
 	public String requestName() {
-		return name.split("/")[0];
+		return split().request;
 	}
 		
 	/**
@@ -87,7 +147,7 @@ public class Event extends Named {
 	 * @return the response-name.
 	 */
 	public String responseName() {
-		return name.split("/")[1];
+		return split().response;
 	}
 	
 }
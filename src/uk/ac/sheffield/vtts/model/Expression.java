@@ -181,12 +181,7 @@ public abstract class Expression extends Named {
 	 * @return true, if this Expression has a strictly ordered type.
 	 */
 	public boolean isOrdered() {
-		String orderedTypes = 
-				"String,Integer,Double,Long,Float,Short,Byte,Character";
-		if (orderedTypes.contains(getType()))
-			return true;
-		else
-			return false;
+		return factory.getDescriptor(getType()).isOrdered();
 	}
 	
 	/**
@@ -222,6 +217,33 @@ public abstract class Expression extends Named {
 	 */
 	public abstract Object evaluate();
 	
+	/**
+	 * Evaluates this Expression to an int value.  By default, unboxes the
+	 * Integer result of evaluate().  Redefined in Parameter and Function, 
+	 * so that Integer arithmetic may be evaluated without boxing.
+	 * @return the int value of this Expression.
+	 */
+	public int evaluateInt() {
+		return (Integer) evaluate();
+	}
+	
+	/**
+	 * Evaluates this Expression to a long value.  By default, unboxes the
+	 * Long result of evaluate().
+	 * @return the long value of this Expression.
+	 */
+	public long evaluateLong() {
+		return (Long) evaluate();
+	}
+	
+	/**
+	 * Evaluates this Expression to a double value.  By default, unboxes the
+	 * Double result of evaluate().
+	 * @return the double value of this Expression.
+	 */
+	public double evaluateDouble() {
+		return (Double) evaluate();
+	}
 	
 	/**
 	 * Reports whether this Expression is bound.  This Expression is either
@@ -273,5 +295,17 @@ public abstract class Expression extends Named {
 	 * @return this Expression.
 	 */
 	public abstract Expression resolve(Scope scope);
+	
+	/**
+	 * Compiles this Expression, ready for repeated evaluation.  Compilation
+	 * is performed once, after resolving the Parameter references of this
+	 * Expression, so that the operator and operand types of each Function
+	 * need not be checked again each time the Expression is evaluated.  By
+	 * default, does nothing, since a Parameter needs no compilation.
+	 * @return this Expression.
+	 */
+	public Expression compile() {
+		return this;
+	}
 
 }
@@ -60,6 +60,55 @@ public abstract class Function extends Expression {
 	 */
 	protected List<Expression> expressions;
 	
+	/**
+	 * The compiled form of this Function; a volatile variable.  Built on 
+	 * first evaluation, and null again whenever the operands change.
+	 */
+	private Evaluator evaluator = null;
+	
+	/**
+	 * Evaluator represents the compiled form of a Function.  An Evaluator is
+	 * created when the Function is compiled, after its types were checked,
+	 * and fixes the operator, the operands and, where relevant, the operand
+	 * types of the Function.  Evaluating the Function then dispatches on
+	 * fixed codes, rather than comparing the operator and type names.
+	 */
+	protected static abstract class Evaluator {
+		
+		/**
+		 * Evaluates the compiled Function on its operands.
+		 * @return the Java object denoting the value of the Function.
+		 */
+		public abstract Object evaluate();
+		
+		/**
+		 * Evaluates the compiled Function to an int value.  By default, 
+		 * unboxes the result of evaluate().
+		 * @return the int value of the Function.
+		 */
+		public int evaluateInt() {
+			return (Integer) evaluate();
+		}
+		
+		/**
+		 * Evaluates the compiled Function to a long value.  By default, 
+		 * unboxes the result of evaluate().
+		 * @return the long value of the Function.
+		 */
+		public long evaluateLong() {
+			return (Long) evaluate();
+		}
+		
+		/**
+		 * Evaluates the compiled Function to a double value.  By default, 
+		 * unboxes the result of evaluate().
+		 * @return the double value of the Function.
+		 */
+		public double evaluateDouble() {
+			return (Double) evaluate();
+		}
+	}
+	
 	/**
 	 * Checks the chosen name for this Function and sets the maximum number
 	 * of operands.  This is overridden in each subclass, according to the
@@ -75,6 +124,15 @@ public abstract class Function extends Expression {
 	 */
 	protected abstract void typeCheck() throws SemanticError;
 	
+	/**
+	 * Creates the compiled form of this Function.  This is called after the
+	 * types of this Function were checked, so may rely on any types cached
+	 * by the type check.  This is overridden in each subclass, according to
+	 * the kind of Function.
+	 * @return the Evaluator for this Function.
+	 */
+	protected abstract Evaluator createEvaluator();
+	
 	/**
 	 * Creates a default functional expression.
 	 */
@@ -177,8 +235,10 @@ public abstract class Function extends Expression {
 	 */
 	public Function addExpression(Expression expression) 
 			throws SemanticError {
-		if (maxOperands < 0 || expressions.size() < maxOperands)
+		if (maxOperands < 0 || expressions.size() < maxOperands) {
 			expressions.add(expression);
+			evaluator = null;
+		}
 		else
 			semanticError("cannot exceed " + maxOperands + " operands.");
 		return this;
@@ -202,6 +262,81 @@ public abstract class Function extends Expression {
 		return expressions.get(index);
 	}
 	
+	/**
+	 * Returns the position of the name of this Function in a list of the
+	 * legal operator names.  The position is used as the dispatching code
+	 * for the operator, when this Function is compiled.
+	 * @param names the legal operator names, in order.
+	 * @return the position of this Function's name.
+	 * @throws SemanticError if the name is not in the list.
+	 */
+	protected int operatorCode(String... names) {
+		for (int index = 0; index < names.length; ++index) {
+			if (names[index].equals(name))
+				return index;
+		}
+		semanticError("has an illegal operator name '" + name + "'.");
+		return -1;
+	}
+	
+	/**
+	 * Compiles this Function, ready for repeated evaluation.  Checks the
+	 * types of this Function once, compiles each operand Expression, then
+	 * creates the Evaluator for this Function, to which evaluation will be
+	 * delegated.
+	 * @return this Function.
+	 */
+	@Override
+	public Function compile() {
+		typeCheck();
+		for (Expression operand : getExpressions()) {
+			operand.compile();
+		}
+		evaluator = createEvaluator();
+		return this;
+	}
+	
+	/**
+	 * Returns the compiled form of this Function.  Compiles this Function
+	 * first, if it has not been compiled since its operands last changed.
+	 * @return the Evaluator for this Function.
+	 */
+	protected Evaluator getEvaluator() {
+		if (evaluator == null)
+			compile();
+		return evaluator;
+	}
+	
+	/**
+	 * Evaluates this Function to an int value.  Delegates to the compiled
+	 * form of this Function, which avoids boxing for Integer arithmetic.
+	 * @return the int value of this Function.
+	 */
+	@Override
+	public int evaluateInt() {
+		return getEvaluator().evaluateInt();
+	}
+	
+	/**
+	 * Evaluates this Function to a long value.  Delegates to the compiled
+	 * form of this Function, which avoids boxing for Long arithmetic.
+	 * @return the long value of this Function.
+	 */
+	@Override
+	public long evaluateLong() {
+		return getEvaluator().evaluateLong();
+	}
+	
+	/**
+	 * Evaluates this Function to a double value.  Delegates to the compiled
+	 * form of this Function, which avoids boxing for Double arithmetic.
+	 * @return the double value of this Function.
+	 */
+	@Override
+	public double evaluateDouble() {
+		return getEvaluator().evaluateDouble();
+	}
+	
 	/**
 	 * Reports an attempt to assign to this Function as an error.
 	 */
@@ -256,9 +391,11 @@ public abstract class Function extends Expression {
 	 * declared Parameters in global Memory scope, or local Operation scope.
 	 * This method ensures that all Parameter references actually correspond
 	 * to some declared Parameter.  Substitutes all duplicate copies of such
-	 * Parameters by a reference to the original copy.
+	 * Parameters by a reference to the original copy.  Discards any compiled
+	 * form of this Function, which may refer to the duplicate copies.
 	 */
 	public Function resolve(Scope scope) {
+		evaluator = null;  // Must be compiled again
 		for (int i = 0; i < expressions.size(); ++i) {
 			Expression current = operand(i);
 			if (current instanceof Parameter) {
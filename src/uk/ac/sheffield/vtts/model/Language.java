@@ -91,20 +91,16 @@ public class Language extends Element {
 	/**
 	 * Creates a language containing all sequences up to a given length, 
 	 * chosen from an alphabet.  A factory method, provided for convenience
-	 * to create Ln*, for some finite n.
+	 * to create Ln*, for some finite n.  The result is a BoundedProduct, 
+	 * which enumerates its sequences on demand, rather than storing them.
 	 * @param alphabet the alphabet.
 	 * @param length the maximum sequence length
 	 * @return the language containing all sequences up to this length,
 	 * including the empty sequence.
 	 */
 	public static Language createBoundedStar(Alphabet alphabet, int length) {
-		Language result = new Language().addSequence(new Sequence());
-		Language language = new Language().addSequence(new Sequence());
-		for (int i = length; i > 0; --i) {
-			language = language.product(alphabet);
-			result.addLanguage(language);
-		}
-		return result;	
+		Language empty = new Language().addSequence(new Sequence());
+		return new BoundedProduct(empty, alphabet, length);
 	}
 
 	/**
@@ -186,10 +182,14 @@ public class Language extends Element {
 	 * language.  Creates a new language, in which every sequence from this
 	 * language is extended by every sequence in the other language.  This is
 	 * a pure functional operation that does not modify any of its operands.
+	 * If the other language is a BoundedProduct, such as Ln*, the result is
+	 * also a BoundedProduct, which enumerates its sequences on demand.
 	 * @param other the other language.
 	 * @return the created product language.
 	 */
 	public Language product(Language other) {
+		if (other instanceof BoundedProduct)
+			return ((BoundedProduct) other).prefixWith(this);
 		Language result = new Language();
 		for (Sequence prefix : getSequences()) {
 			for (Sequence extra : other.getSequences()) {
@@ -34,11 +34,12 @@
 
 package uk.ac.sheffield.vtts.model;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 
 /**
@@ -171,7 +172,21 @@ public class Machine extends Annotated {
 			semanticError("has no current State.");
 		return current;
 	}
-	
+
+	/**
+	 * Restores the current State of this Machine to a State that it reached
+	 * earlier in a simulation.  Unlike firing a Transition, this does not
+	 * mark the State as covered, since it was already covered when it was
+	 * first reached.  This is used to resume a simulation from some earlier
+	 * point, without replaying the Sequence that reached it.
+	 * @param state the State to restore.
+	 * @return this Machine.
+	 */
+	protected Machine setCurrentState(State state) {
+		current = state;
+		return this;
+	}
+
 	/**
 	 * Resets this Machine to its initial State.  The current State of this
 	 * Machine is reset to the Machine's initial State.  This method is
@@ -202,6 +217,27 @@ public class Machine extends Annotated {
 		return this;
 	}
 	
+	/**
+	 * Merges the coverage of another Machine into this Machine.  The other
+	 * Machine must be a replica of this Machine, which was simulated in its
+	 * place.  Marks every State and Transition of this Machine as covered,
+	 * whose counterpart with the same name was covered in the replica.
+	 * @param replica the replica of this Machine.
+	 * @return this Machine.
+	 */
+	protected Machine mergeCoverage(Machine replica) {
+		for (State other : replica.getStates()) {
+			State state = getState(other.getName());
+			if (other.isCovered())
+				state.setCovered(true);
+			for (Transition transition : other.getTransitions()) {
+				if (transition.isCovered())
+					state.getTransition(transition.getName()).setCovered(true);
+			}
+		}
+		return this;
+	}
+	
 	/**
 	 * Reports whether this Machine accepts an Event in its current State.
 	 * Reports whether this Machine's current State has an exit Transition 
@@ -223,7 +259,55 @@ public class Machine extends Annotated {
 	 * @return true, if the Event is accepted by this Machine.
 	 */
 	public boolean fireEvent(Event event) {
-		Transition transition = getCurrentState().getEnabled(event);
+		return fireTransition(getCurrentState().getEnabled(event));
+	}
+	
+	/**
+	 * Indexes the Transitions of this Machine by the Events of an Alphabet.
+	 * Indexes the exit Transitions of every State, so that Events may then
+	 * be accepted and fired by their index in the Alphabet.  A Machine should
+	 * be indexed again, if its States or Transitions are changed.
+	 * @param alphabet the Alphabet.
+	 * @return this Machine.
+	 */
+	public Machine index(Alphabet alphabet) {
+		for (State state : states.values()) {
+			state.index(alphabet);
+		}
+		return this;
+	}
+	
+	/**
+	 * Reports whether this Machine accepts an Event in its current State,
+	 * given the index of the Event in the Alphabet by which this Machine
+	 * was last indexed.
+	 * @param event the index of the Event.
+	 * @return true, if the current State has a matching exit Transition.
+	 */
+	public boolean accept(int event) {
+		return current.getEnabled(event) != null;
+	}
+	
+	/**
+	 * Fires an Event in the current State of this Machine, given the index
+	 * of the Event in the Alphabet by which this Machine was last indexed.
+	 * Behaves like fireEvent(Event), but finds the matching Transition 
+	 * directly by index.
+	 * @param event the index of the Event.
+	 * @return true, if the Event fired a Transition.
+	 */
+	public boolean fireEvent(int event) {
+		return fireTransition(getCurrentState().getEnabled(event));
+	}
+	
+	/**
+	 * Fires a Transition from the current State of this Machine, if it is
+	 * not null.  Marks the Transition and its target State as covered, and
+	 * makes the target State the current State.
+	 * @param transition the Transition, or null.
+	 * @return true, if the Transition was fired.
+	 */
+	private boolean fireTransition(Transition transition) {
 		if (transition != null) {
 			transition.setCovered(true);
 			String target = transition.getTarget();
@@ -287,8 +371,10 @@ public class Machine extends Annotated {
 	 * Language containing the shortest Sequences that will reach every State
 	 * in this Machine.  Performs a breadth-first search, starting with the
 	 * empty Sequence, and extending this on each iteration with every Event
-	 * from the Alphabet, until every State has been visited once.  Times out
-	 * if the search eventually fails to reach every State.
+	 * from the Alphabet, until every State has been visited once.  Only the
+	 * Sequences that reach a State not visited before are explored further,
+	 * so the search also ends when every reachable State has been explored.
+	 * Times out if the search eventually fails to reach every State.
 	 * @param alphabet the Alphabet of this Machine.
 	 * @return the state cover Language.
 	 */
@@ -296,22 +382,32 @@ public class Machine extends Annotated {
 		long timeout = System.currentTimeMillis() + TIMEOUT;
 		Language stateCover = new Language();		// the state cover
 		Set<State> toFind = getStates();			// the states to find
-		List<Sequence> paths = new ArrayList<Sequence>(); // paths to explore
-		paths.add(new Sequence());
+		Set<State> visited = new HashSet<State>();	// the states reached
+		Queue<Sequence> paths = new ArrayDeque<Sequence>(); // paths to explore
 		clear();									// reset any tracer marks
-		while (! toFind.isEmpty() && System.currentTimeMillis() < timeout) {
-			Sequence sequence = paths.remove(0);
-			reset();								// checks for initial state
-			for (Event event : sequence.getEvents())
-				fireEvent(event);					// either succeeds or fails
-			if (toFind.remove(getCurrentState())) {
-				sequence.setState(getCurrentState().getName());
-				stateCover.addSequence(sequence);
-			}
-			if (! toFind.isEmpty())
-				for (Event event : alphabet.getEvents()) {
-					paths.add(new Sequence(sequence).addEvent(event));
+		reset();									// checks for initial state
+		index(alphabet);							// fire events by index
+		Sequence empty = new Sequence();
+		visited.add(getCurrentState());
+		toFind.remove(getCurrentState());
+		empty.setState(getCurrentState().getName());
+		stateCover.addSequence(empty);
+		paths.add(empty);
+		while (! toFind.isEmpty() && ! paths.isEmpty() && 
+				System.currentTimeMillis() < timeout) {
+			Sequence sequence = paths.remove();
+			State source = getState(sequence.getState());
+			for (int index = 0; index < alphabet.size(); ++index) {
+				setCurrentState(source);
+				if (fireEvent(index) && visited.add(getCurrentState())) {
+					Event event = alphabet.getEvent(index);
+					Sequence path = new Sequence(sequence).addEvent(event);
+					path.setState(getCurrentState().getName());
+					if (toFind.remove(getCurrentState()))
+						stateCover.addSequence(path);
+					paths.add(path);
 				}
+			}
 		}
 		return stateCover;
 	}
@@ -34,24 +34,27 @@
 
 package uk.ac.sheffield.vtts.model;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import uk.ac.sheffield.vtts.ground.TypeDescriptor;
+import uk.ac.sheffield.vtts.ground.TypeDescriptor.Kind;
+
 
 /**
  * Manipulation represents an expression manipulating a collection of items.
  * The first operand is expected to be some kind of collection, whether a
  * Set, List or Map.  The remaining operands may be an element, an index,
  * a key, or another collection.  All Manipulations are functional, in that
- * they do not modify an operand directly, but return a modified copy.  If
- * a side-effect is intended, the result must be reassigned to the same
- * Parameter that stored the original collection, before the operation.
+ * they do not modify an operand directly, but return a modified version.  
+ * Modified collections are persistent Lists, Sets and Maps, which share 
+ * most of their structure with the original collection, rather than 
+ * copying it.  If a side-effect is intended, the result must be reassigned
+ * to the same Parameter that stored the original collection, before the 
+ * operation.
  * There are nine Manipulation operations, whose names include:  size, 
  * insert, remove, insertAll, removeAll, searchAt, replaceAt, insertAt
  * and removeAt.
@@ -94,6 +97,75 @@ public class Manipulation extends Function {
 	 * The pair type Pair[K, V] of a Map[K, V].
 	 */
 	private String pairType = null;
+	
+	/**
+	 * The operator codes of a Manipulation, in the order of the legal 
+	 * operator names.  Used for dispatching by the compiled Evaluator.
+	 */
+	private static final int SIZE = 0, INSERT = 1, REMOVE = 2, 
+			INSERT_ALL = 3, REMOVE_ALL = 4, SEARCH_AT = 5, REPLACE_AT = 6,
+			INSERT_AT = 7, REMOVE_AT = 8;
+	
+	/**
+	 * ManipulationEvaluator represents the compiled form of a Manipulation,
+	 * whose operator and kind of collection are fixed.
+	 */
+	private class ManipulationEvaluator extends Evaluator {
+		
+		/**
+		 * The operator code.
+		 */
+		private final int operator = operatorCode("size", "insert", "remove",
+				"insertAll", "removeAll", "searchAt", "replaceAt", 
+				"insertAt", "removeAt");
+		
+		/**
+		 * The collection operand.
+		 */
+		private final Expression first = operand(0);
+		
+		/**
+		 * The element, collection or key operand, or null, if absent.
+		 */
+		private final Expression second = 
+				(maxOperands < 2 ? null : operand(1));
+		
+		/**
+		 * The element value operand, or null, if absent.
+		 */
+		private final Expression third = 
+				(maxOperands < 3 ? null : operand(2));
+		
+		/**
+		 * Evaluates the compiled Manipulation.
+		 * @return an integer size, a found element, or a new collection.
+		 */
+		@Override
+		public Object evaluate() {
+			Object value0 = first.evaluate();
+			if (operator == SIZE)
+				return size(value0);
+			Object value1 = second.evaluate();
+			switch (operator) {
+			case INSERT:
+				return insert(value0, value1);
+			case REMOVE:
+				return remove(value0, value1);
+			case INSERT_ALL:
+				return insertAll(value0, value1);
+			case REMOVE_ALL:
+				return removeAll(value0, value1);
+			case SEARCH_AT:
+				return searchAt(value0, value1);
+			case REMOVE_AT:
+				return removeAt(value0, value1);
+			case INSERT_AT:
+				return insertAt(value0, value1, third.evaluate());
+			default:  // REPLACE_AT
+				return replaceAt(value0, value1, third.evaluate());
+			}
+		}
+	}
 		
 	/**
 	 * Checks the name of this Manipulation expression and sets the expected
@@ -133,17 +205,17 @@ public class Manipulation extends Function {
 	 * kind of collection, for dispatching during evaluation.
 	 */
 	protected void typeCheck() {
-		String legalTypes = "List,Set,Map";
 		paramType = operand(0).getType();
+		TypeDescriptor descriptor = factory.getDescriptor(paramType);
 		// Checking operand(0)
-		if (! legalTypes.contains(factory.getBaseType(paramType)))
+		if (! descriptor.isCollection())
 			semanticError("has an illegal collection type '" + 
 					paramType + "' for operand(0).");
-		isMap = paramType.startsWith("Map");
-		isList = paramType.startsWith("List");
-		valueType = factory.getValueType(paramType);
-		keyType = factory.getKeyType(paramType);
-		pairType = factory.getPairType(paramType); // Pair[K, V] or Pair[Integer, V]
+		isMap = descriptor.getKind() == Kind.MAP;
+		isList = descriptor.getKind() == Kind.LIST;
+		valueType = descriptor.getValueType();
+		keyType = descriptor.getKeyType();
+		pairType = descriptor.getPairType(); // Pair[K, V] or Pair[Integer, V]
 		// Checking the result type
 		String resultType = (name.equals("size") ? "Integer" :
 				(name.equals("searchAt") ? valueType : paramType));
@@ -228,44 +300,28 @@ public class Manipulation extends Function {
 		return type;
 	}
 
+	/**
+	 * Creates the compiled form of this Manipulation.
+	 * @return the Evaluator for this Manipulation.
+	 */
+	@Override
+	protected Evaluator createEvaluator() {
+		return new ManipulationEvaluator();
+	}
+
 	/**
 	 * Executes this Manipulation on its operands.  Expects one operand for
 	 * the size() operation, three operands for insertAt(), replaceAt() and
-	 * two operands for all other operations.  Checks the consistency of the 
-	 * operand types and then branches according to the number of operands, 
-	 * and the name of this Manipulation operation.  In keeping with the
-	 * side-effect free specification style, all modifications to an input
-	 * collection return a new output collection in which the changes have
-	 * been made.  All indexing is from 1..n (rather than 0..n-1).
+	 * two operands for all other operations.  Delegates to the compiled form
+	 * of this Manipulation, in which the kind of collection and the operation
+	 * were fixed when it was first compiled.  In keeping with the side-effect
+	 * free specification style, all modifications to an input collection 
+	 * return a new output collection in which the changes have been made.
+	 * All indexing is from 1..n (rather than 0..n-1).
 	 * @return an integer size, a found element, or a new collection.
 	 */
 	public Object evaluate() {
-		typeCheck();
-		Object value0 = operand(0).evaluate();
-		if (maxOperands == 1) {
-			// name == "size"
-			return size(value0);
-		}
-		else {
-			Object value1 = operand(1).evaluate();
-			if (maxOperands == 2) {
-				if (name.equals("searchAt"))
-					return searchAt(value0, value1);
-				else if (name.equals("insert"))
-					return insert(value0, value1);
-				else if (name.equals("remove"))
-					return remove(value0, value1);
-				else // name == "removeAt"
-					return removeAt(value0, value1);
-			}
-			else {
-				Object value2 = operand(2).evaluate();
-				if (name.equals("insertAt"))
-					return insertAt(value0, value1, value2);
-				else // name == "replaceAt"
-					return replaceAt(value0, value1, value2);
-			}
-		}
+		return getEvaluator().evaluate();
 	}
 	
 	/**
@@ -293,24 +349,15 @@ public class Manipulation extends Function {
 	 */
 	protected Object insert(Object collection, Object value) {
 		if (isMap) {
-			Map<?,?> input = (Map<?,?>) collection;
-			Map<Object, Object> output = new HashMap<Object, Object>(input);
 			Entry<?,?> entry = (Entry<?,?>) value;
-			output.put(entry.getKey(), entry.getValue());
-			return output;
-		}
-		else if (isList) {
-			List<?> input = (List<?>) collection;
-			List<Object> output = new ArrayList<Object>(input);
-			output.add(value);
-			return output;
-		}
-		else {
-			Set<?> input = (Set<?>) collection;
-			Set<Object> output = new HashSet<Object>(input);
-			output.add(value);
-			return output;		
+			return PersistentMap.<Object, Object>from((Map<?,?>) collection)
+					.plus(entry.getKey(), entry.getValue());
 		}
+		else if (isList)
+			return PersistentList.<Object>from((List<?>) collection)
+					.plus(value);
+		else
+			return PersistentSet.<Object>from((Set<?>) collection).plus(value);
 	}
 	
 	/**
@@ -324,24 +371,15 @@ public class Manipulation extends Function {
 	 */
 	protected Object remove(Object collection, Object value) {
 		if (isMap) {
-			Map<?,?> input = (Map<?,?>) collection;
-			Map<Object, Object> output = new HashMap<Object, Object>(input);
 			Entry<?,?> entry = (Entry<?,?>) value;
-			output.remove(entry.getKey());
-			return output;
-		}
-		else if (isList) {
-			List<?> input = (List<?>) collection;
-			List<Object> output = new ArrayList<Object>(input);
-			output.remove(value);
-			return output;
-		}
-		else {
-			Set<?> input = (Set<?>) collection;
-			Set<Object> output = new HashSet<Object>(input);
-			output.remove(value);
-			return output;		
+			return PersistentMap.<Object, Object>from((Map<?,?>) collection)
+					.minus(entry.getKey());
 		}
+		else if (isList)
+			return PersistentList.<Object>from((List<?>) collection)
+					.minus(value);
+		else
+			return PersistentSet.<Object>from((Set<?>) collection).minus(value);
 	}
 	
 	/**
@@ -356,24 +394,15 @@ public class Manipulation extends Function {
 	 * @return a new collection containing the pooled elements.
 	 */
 	protected Object insertAll(Object first, Object second) {
-		if (isMap) {
-			Map<?,?> input = (Map<?,?>) first;
-			Map<Object, Object> output = new HashMap<Object, Object>(input);
-			output.putAll((Map<?,?>) second);
-			return output;
-		}
-		else if (isList) {
-			List<?> input = (List<?>) first;
-			List<Object> output = new ArrayList<Object>(input);
-			output.addAll((List<?>) second);
-			return output;
-		}
-		else {
-			Set<?> input = (Set<?>) first;
-			Set<Object> output = new HashSet<Object>(input);
-			output.addAll((Set<?>) second);
-			return output;		
-		}
+		if (isMap)
+			return PersistentMap.<Object, Object>from((Map<?,?>) first)
+					.plusAll((Map<?,?>) second);
+		else if (isList)
+			return PersistentList.<Object>from((List<?>) first)
+					.plusAll((List<?>) second);
+		else
+			return PersistentSet.<Object>from((Set<?>) first)
+					.plusAll((Set<?>) second);
 	}
 	
 	/**
@@ -387,24 +416,15 @@ public class Manipulation extends Function {
 	 * @return a new collection subtracting all of the second from the first.
 	 */
 	protected Object removeAll(Object first, Object second) {
-		if (isMap) {
-			Map<?,?> input = (Map<?,?>) first;
-			Map<Object, Object> output = new HashMap<Object, Object>(input);
-			output.entrySet().removeAll(((Map<?,?>) second).entrySet());
-			return output;
-		}
-		else if (isList) {
-			List<?> input = (List<?>) first;
-			List<Object> output = new ArrayList<Object>(input);
-			output.removeAll((List<?>) second);
-			return output;
-		}
-		else {
-			Set<?> input = (Set<?>) first;
-			Set<Object> output = new HashSet<Object>(input);
-			output.removeAll((Set<?>) second);
-			return output;		
-		}
+		if (isMap)
+			return PersistentMap.<Object, Object>from((Map<?,?>) first)
+					.minusAll((Map<?,?>) second);
+		else if (isList)
+			return PersistentList.<Object>from((List<?>) first)
+					.minusAll((List<?>) second);
+		else
+			return PersistentSet.<Object>from((Set<?>) first)
+					.minusAll((Set<?>) second);
 	}
 	
 	/**
@@ -421,18 +441,12 @@ public class Manipulation extends Function {
 	 * the key.
 	 */
 	protected Object insertAt(Object collection, Object key, Object value) {
-		if (isMap) {
-			Map<?,?> input = (Map<?,?>) collection;
-			Map<Object, Object> output = new HashMap<Object, Object>(input);
-			output.put(key, value);
-			return output;
-		}
-		else if (isList) {
-			List<?> input = (List<?>) collection;
-			List<Object> output = new ArrayList<Object>(input);
-			output.add(((Integer) key) - 1, value);
-			return output;
-		}
+		if (isMap)
+			return PersistentMap.<Object, Object>from((Map<?,?>) collection)
+					.plus(key, value);
+		else if (isList)
+			return PersistentList.<Object>from((List<?>) collection)
+					.plus(((Integer) key) - 1, value);
 		else {
 			semanticError("'insertAt' not defined for 'Set' type.");
 			return null;
@@ -451,18 +465,12 @@ public class Manipulation extends Function {
 	 * the key is absent.
 	 */
 	protected Object removeAt(Object collection, Object key) {
-		if (isMap) {
-			Map<?,?> input = (Map<?,?>) collection;
-			Map<Object, Object> output = new HashMap<Object, Object>(input);
-			output.remove(key);
-			return output;
-		}
-		else if (isList) {
-			List<?> input = (List<?>) collection;
-			List<Object> output = new ArrayList<Object>(input);
-			output.remove(((Integer) key) - 1);
-			return output;
-		}
+		if (isMap)
+			return PersistentMap.<Object, Object>from((Map<?,?>) collection)
+					.minus(key);
+		else if (isList)
+			return PersistentList.<Object>from((List<?>) collection)
+					.minusAt(((Integer) key) - 1);
 		else {
 			semanticError("'removeAt' not defined for 'Set' type.");
 			return null;
@@ -483,18 +491,12 @@ public class Manipulation extends Function {
 	 * the key.
 	 */
 	protected Object replaceAt(Object collection, Object key, Object value) {
-		if (isMap) {
-			Map<?,?> input = (Map<?,?>) collection;
-			Map<Object, Object> output = new HashMap<Object, Object>(input);
-			output.put(key, value);
-			return output;
-		}
-		else if (isList) {
-			List<?> input = (List<?>) collection;
-			List<Object> output = new ArrayList<Object>(input);
-			output.set(((Integer) key) - 1, value);
-			return output;
-		}
+		if (isMap)
+			return PersistentMap.<Object, Object>from((Map<?,?>) collection)
+					.plus(key, value);
+		else if (isList)
+			return PersistentList.<Object>from((List<?>) collection)
+					.with(((Integer) key) - 1, value);
 		else {
 			semanticError("'replaceAt' not defined for 'Set' type.");
 			return null;
@@ -38,6 +38,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import uk.ac.sheffield.vtts.ground.TypeDescriptor;
+import uk.ac.sheffield.vtts.ground.TypeDescriptor.Kind;
+
 
 /**
  * Membership represents a cardinality or membership predicate on a 
@@ -79,6 +82,109 @@ public class Membership extends Predicate {
 	 * The pair type Pair[K, V] of a Map[K, V].
 	 */
 	private String pairType = null;
+	
+	/**
+	 * The operator codes of a Membership predicate, in the order of the 
+	 * legal operator names.  Used for dispatching by the compiled Evaluator.
+	 */
+	private static final int IS_EMPTY = 0, NOT_EMPTY = 1, INCLUDES = 2,
+			EXCLUDES = 3, INCLUDES_ALL = 4, EXCLUDES_ALL = 5, 
+			INCLUDES_KEY = 6, EXCLUDES_KEY = 7;
+	
+	/**
+	 * MembershipEvaluator represents the compiled form of a Membership 
+	 * predicate, whose operator and kind of collection are fixed.
+	 */
+	private class MembershipEvaluator extends Evaluator {
+		
+		/**
+		 * The operator code.
+		 */
+		private final int operator = operatorCode("isEmpty", "notEmpty", 
+				"includes", "excludes", "includesAll", "excludesAll",
+				"includesKey", "excludesKey");
+		
+		/**
+		 * The collection operand.
+		 */
+		private final Expression first = operand(0);
+		
+		/**
+		 * The element, collection or key operand, or null, if absent.
+		 */
+		private final Expression second = 
+				(maxOperands == 1 ? null : operand(1));
+		
+		/**
+		 * The hashed index of the elements, or entries, of the collection,
+		 * if this is a frozen Constant; otherwise null.
+		 */
+		private final Collection<?> elements = (first instanceof Constant ?
+				((Constant) first).elementIndex() : null);
+		
+		/**
+		 * The hashed index of the keys of the Map, if this is a frozen
+		 * Constant; otherwise null.
+		 */
+		private final Collection<?> keys = (first instanceof Constant ?
+				((Constant) first).keyIndex() : null);
+		
+		/**
+		 * Reports whether the collection includes the element.  Uses the
+		 * hashed index of a frozen Constant collection, if this exists.
+		 * @param collection any kind of collection.
+		 * @param value any value of the collection's value-type.
+		 * @return true, if the value is an element of the collection.
+		 */
+		private boolean contains(Object collection, Object value) {
+			if (elements != null)
+				return elements.contains(value);
+			else
+				return includes(collection, value);
+		}
+		
+		/**
+		 * Reports whether the collection includes the key.  Uses the hashed
+		 * index of a frozen Constant Map, if this exists.
+		 * @param collection must be a Map or a List.
+		 * @param key a key of the Map's key-type, or an Integer index.
+		 * @return true, if the key is present in the collection.
+		 */
+		private boolean containsKey(Object collection, Object key) {
+			if (keys != null)
+				return keys.contains(key);
+			else
+				return includesKey(collection, key);
+		}
+		
+		/**
+		 * Evaluates the compiled Membership predicate.
+		 * @return true, if the predicate holds between the operands.
+		 */
+		@Override
+		public Boolean evaluate() {
+			Object value0 = first.evaluate();
+			if (operator == IS_EMPTY)
+				return isEmpty(value0);
+			else if (operator == NOT_EMPTY)
+				return notEmpty(value0);
+			Object value1 = second.evaluate();
+			switch (operator) {
+			case INCLUDES:
+				return contains(value0, value1);
+			case EXCLUDES:
+				return ! contains(value0, value1);
+			case INCLUDES_ALL:
+				return includesAll(value0, value1);
+			case EXCLUDES_ALL:
+				return excludesAll(value0, value1);
+			case INCLUDES_KEY:
+				return containsKey(value0, value1);
+			default:  // EXCLUDES_KEY
+				return ! containsKey(value0, value1);
+			}
+		}
+	}
 		
 	/**
 	 * Checks the name of this Membership predicate and sets the expected
@@ -107,17 +213,17 @@ public class Membership extends Predicate {
 	 * dispatching during evaluation.
 	 */
 	protected void typeCheck() {
-		String legalTypes = "List,Set,Map";
 		if (! getType().equals("Boolean"))
 			semanticError("has an illegal result type '" + type + "'.");
 		paramType = operand(0).getType();
-		if (! legalTypes.contains(factory.getBaseType(paramType)))
+		TypeDescriptor descriptor = factory.getDescriptor(paramType);
+		if (! descriptor.isCollection())
 			semanticError("has an illegal collection type '" + 
 					paramType + "' for operand(0).");
-		isMap = paramType.startsWith("Map");
-		valueType = factory.getValueType(paramType);
-		keyType = factory.getKeyType(paramType);  // K or Integer
-		pairType = factory.getPairType(paramType); // Pair[K, V] or Pair[Integer, V]
+		isMap = descriptor.getKind() == Kind.MAP;
+		valueType = descriptor.getValueType();
+		keyType = descriptor.getKeyType();  // K or Integer
+		pairType = descriptor.getPairType(); // Pair[K, V] or Pair[Integer, V]
 		if (name.endsWith("des")) {
 			// name == "includes" || "excludes"
 			String elemType = (isMap ? pairType : valueType);
@@ -183,7 +289,7 @@ public class Membership extends Predicate {
 	 * @return true if this subsumes the other Predicate.
 	 */
 	@Override
-	public boolean subsumes(Predicate other) {
+	protected boolean decideSubsumes(Predicate other) {
 		if (other instanceof Membership)
 			return subsumesMembership((Membership) other);
 		else if (other instanceof Proposition)
@@ -203,6 +309,20 @@ public class Membership extends Predicate {
 		return equals(other);
 	}
 
+	/**
+	 * Returns a copy of this Membership predicate, with the given operands.
+	 * @param operands the operands of the copy.
+	 * @return the copied Membership predicate.
+	 */
+	@Override
+	protected Membership copy(List<Expression> operands) {
+		Membership result = new Membership(name);
+		for (Expression operand : operands) {
+			result.addExpression(operand);
+		}
+		return result;
+	}
+
 	/**
 	 * Returns the complement of this Membership predicate.  Converts 
 	 * pairwise between the predicates isEmpty/notEmpty, includes/excludes
@@ -212,9 +332,9 @@ public class Membership extends Predicate {
 	 * @return the logical complement of this Membership predicate.
 	 */
 	@Override
-	public Predicate negate() {
+	protected Predicate complement() {
 		if (name.endsWith("All"))
-			return super.negate();
+			return super.complement();
 		else {
 			Membership result = new Membership(getNegatedName());
 			for (Expression operand : expressions) {
@@ -254,35 +374,23 @@ public class Membership extends Predicate {
 	}
 
 	/**
-	 * Executes this Membership predicate on its operands.  Checks the 
-	 * consistency of the operand types and then branches according to the
-	 * number of operands, and the name of this Membership predicate.
+	 * Creates the compiled form of this Membership predicate.
+	 * @return the Evaluator for this Membership predicate.
+	 */
+	@Override
+	protected Evaluator createEvaluator() {
+		return new MembershipEvaluator();
+	}
+
+	/**
+	 * Executes this Membership predicate on its operands.  Delegates to the
+	 * compiled form of this Membership predicate, in which the kind of 
+	 * collection and the operator were fixed when it was first compiled.
+	 * Tests on a frozen Constant collection use its hashed indexes.
 	 * @return true, if the predicate holds between the operands.
 	 */
 	public Boolean evaluate() {
-		typeCheck();
-		Object value0 = operand(0).evaluate();
-		if (maxOperands == 1) {
-			if (name.equals("isEmpty"))
-				return isEmpty(value0);
-			else // name.equals("notEmpty")
-				return notEmpty(value0);
-		}
-		else {  // maxOperands = 2
-			Object value1 = operand(1).evaluate();
-			if (name.equals("includes"))
-				return includes(value0, value1);
-			else if (name.equals("excludes"))
-				return excludes(value0, value1);
-			else if (name.equals("includesAll"))
-				return includesAll(value0, value1);
-			else if (name.equals("excludesAll"))
-				return excludesAll(value0, value1);
-			else if (name.equals("includesKey"))
-				return includesKey(value0, value1);
-			else // name.equals("excludesKey")
-				return excludesKey(value0, value1);
-		}
+		return (Boolean) getEvaluator().evaluate();
 	}
 
 	/**
@@ -63,6 +63,26 @@ public class Operation extends Scope {
 	 * uses of Operation do not require the Scenarios.
 	 */
 	private Map<String, Scenario> scenarios = null;
+	
+	/**
+	 * The frame for which the role index arrays were last computed.
+	 */
+	private Parameter[] layout = null;
+	
+	/**
+	 * The slots of the Inputs in the frame of this Operation.
+	 */
+	private int[] inputSlots;
+	
+	/**
+	 * The slots of the Outputs in the frame of this Operation.
+	 */
+	private int[] outputSlots;
+	
+	/**
+	 * The slots of the Failures in the frame of this Operation.
+	 */
+	private int[] failureSlots;
 		
 	/**
 	 * Creates a default Operation.
@@ -95,12 +115,75 @@ public class Operation extends Scope {
 	 * @return true, if this Operation's result is bound to a Failure.
 	 */
 	public boolean isFailure() {
-		for (Failure failure : getFailures()) {
-			if (failure.isBound())
+		Parameter[] frame = frame();
+		for (int slot : failureSlots()) {
+			if (frame[slot].isBound())
 				return true;
 		}
 		return false;
 	}
+	
+	/**
+	 * Lays out the role index arrays of this Operation.  Records the slots
+	 * in the frame occupied by Inputs, Outputs and Failures, so that these
+	 * may be visited without filtering the Parameters on every step.  Does
+	 * nothing if the frame is unchanged since the last layout.
+	 */
+	private void layout() {
+		Parameter[] frame = frame();
+		if (frame == layout)
+			return;
+		int inputs = 0, outputs = 0, failures = 0;
+		for (Parameter parameter : frame) {
+			if (parameter instanceof Input)
+				++inputs;
+			else if (parameter instanceof Output)
+				++outputs;
+			else if (parameter instanceof Failure)
+				++failures;
+		}
+		inputSlots = new int[inputs];
+		outputSlots = new int[outputs];
+		failureSlots = new int[failures];
+		inputs = outputs = failures = 0;
+		for (int slot = 0; slot < frame.length; ++slot) {
+			Parameter parameter = frame[slot];
+			if (parameter instanceof Input)
+				inputSlots[inputs++] = slot;
+			else if (parameter instanceof Output)
+				outputSlots[outputs++] = slot;
+			else if (parameter instanceof Failure)
+				failureSlots[failures++] = slot;
+		}
+		layout = frame;
+	}
+	
+	/**
+	 * Returns the slots of the Inputs in the frame of this Operation.
+	 * @return the Input slots, in declaration order.
+	 */
+	protected int[] inputSlots() {
+		layout();
+		return inputSlots;
+	}
+	
+	/**
+	 * Returns the slots of the Outputs in the frame of this Operation.
+	 * @return the Output slots, in declaration order.
+	 */
+	protected int[] outputSlots() {
+		layout();
+		return outputSlots;
+	}
+	
+	/**
+	 * Returns the slots of the Failures in the frame of this Operation.
+	 * @return the Failure slots, in declaration order.
+	 */
+	protected int[] failureSlots() {
+		layout();
+		return failureSlots;
+	}
 
 	/**
 	 * Returns the set of Inputs in this Operation.  A convenience, to extract
@@ -108,11 +191,10 @@ public class Operation extends Scope {
 	 * @return the Inputs in this Operation.
 	 */
 	public Set<Input> getInputs() {
+		Parameter[] frame = frame();
 		Set<Input> result = new LinkedHashSet<Input>();
-		for (Parameter parameter : parameters.values()) {
-			if (parameter instanceof Input)
-				result.add((Input) parameter);
-		}
+		for (int slot : inputSlots())
+			result.add((Input) frame[slot]);
 		return result;
 	}
 	
@@ -122,11 +204,10 @@ public class Operation extends Scope {
 	 * @return the Outputs in this Operation.
 	 */
 	public Set<Output> getOutputs() {
+		Parameter[] frame = frame();
 		Set<Output> result = new LinkedHashSet<Output>();
-		for (Parameter parameter : parameters.values()) {
-			if (parameter instanceof Output)
-				result.add((Output) parameter);
-		}
+		for (int slot : outputSlots())
+			result.add((Output) frame[slot]);
 		return result;
 	}
 	
@@ -136,11 +217,10 @@ public class Operation extends Scope {
 	 * @return the Failures of this Operation.
 	 */
 	public Set<Failure> getFailures() {
+		Parameter[] frame = frame();
 		Set<Failure> result = new LinkedHashSet<Failure>();
-		for (Parameter parameter : parameters.values()) {
-			if (parameter instanceof Failure)
-				result.add((Failure) parameter);
-		}
+		for (int slot : failureSlots())
+			result.add((Failure) frame[slot]);
 		return result;
 	}
 	
@@ -148,18 +228,19 @@ public class Operation extends Scope {
 	 * Cause this Operation to resolve its global/local Parameter references.
 	 * Triggered when the Protocol owning this Operation is added to its 
 	 * owning Service.  The Scope argument is the global Memory, which
-	 * contains the global Constants and Variables.  Constructs a new Scope,
-	 * which contains all the global Parameters in the argument, to which are
-	 * added all the local Parameters contained in this Operation.  Delegates
-	 * to each Scenario in turn, passing it the complete table of Parameters.
+	 * contains the global Constants and Variables.  Constructs one new 
+	 * Scope, which contains all the global Parameters in the argument, to
+	 * which are added all the local Parameters contained in this Operation.
+	 * Delegates to each Scenario in turn, passing it this complete table of
+	 * Parameters, which is shared, since resolution does not modify it.
 	 * @param scope a Scope containing global Parameters.
 	 * @return this Operation.
 	 */
 	public Operation resolve(Scope scope) {
+		Scope table = new Scope();
+		table.addScope(scope);
+		table.addScope(this);
 		for (Scenario scenario : getScenarios()) {
-			Scope table = new Scope();
-			table.addScope(scope);
-			table.addScope(this);
 			scenario.resolve(table);
 		}
 		return this;
@@ -255,6 +336,22 @@ public class Operation extends Scope {
 		return scenario.execute();
 	}
 	
+	/**
+	 * Tries to fire an event on this Operation.  Selects the Scenario from 
+	 * this Operation, whose name is equal to the Event's name.  Binds its
+	 * Inputs and tests its guard once, in the current Memory state.  If the
+	 * Scenario is enabled, returns it as a token, whose Effect may then be
+	 * applied by calling commit(), without evaluating the guard again.
+	 * @param event an Event.
+	 * @return the enabled Scenario, or null, if this was not enabled.
+	 */
+	public Scenario tryFire(Event event) {
+		Scenario scenario = getScenario(event.getName());
+		if (scenario == null) 
+			semanticError("has no Scenario named '" + event.getName() + "'.");
+		return scenario.isEnabled() ? scenario : null;
+	}
+	
 	/**
 	 * Checks this Operation for completeness under all memory and input
 	 * conditions.  Seeks to determine whether there is a non-blocking and
@@ -264,6 +361,19 @@ public class Operation extends Scope {
 	 * @return this Operation.
 	 */
 	public Operation checkCompleteness(Notice topInfo) {
+		return checkCompleteness(topInfo, new PredicateTable());
+	}
+	
+	/**
+	 * Checks this Operation for completeness under all memory and input
+	 * conditions, using a given PredicateTable, whose hits and misses may
+	 * then be reported by the caller.  The table must not have been used
+	 * to check any other Operation.
+	 * @param topInfo the Notice to which global warnings are attached.
+	 * @param table the PredicateTable for the partitions of the Operation.
+	 * @return this Operation.
+	 */
+	public Operation checkCompleteness(Notice topInfo, PredicateTable table) {
 		Notice opInfo = new Notice(
 				"Completeness check for operation: " + getName());
 		//DEBUG
@@ -271,11 +381,11 @@ public class Operation extends Scope {
 		addNotice(opInfo);
 		// Check that input bindings are present
 		checkBindings(topInfo, opInfo);
-		// Compute input partitions and evaluate each scenario.
-		boolean blocking = false;
-		boolean nondeterministic = false;
-		Set<Predicate> partitions = getPartitions(opInfo);
-		if (partitions.isEmpty()) {
+		// Enumerate input partitions, evaluating each scenario on each.
+		PartitionCheck check = new PartitionCheck(opInfo, table);
+		boolean blocking = check.blocking;
+		boolean nondeterministic = check.nondeterministic;
+		if (check.parCount == 0) {
 			// No guard conditions, check for one universal scenario.
 			List<Analysis> list = new ArrayList<Analysis>();
 			for (Scenario scenario : getScenarios()) {
@@ -300,46 +410,6 @@ public class Operation extends Scope {
 				nondeterministic = true;
 			}
 		}
-		else {
-			// Some guard conditions, therefore check for each partition.
-			int count = 0;
-			for (Predicate input : partitions) {
-				++count;
-				List<Analysis> list = new ArrayList<Analysis>();
-				for (Scenario scenario : getScenarios()) {
-					Condition condition = scenario.getCondition();
-					//DEBUG
-					//Predicate guard = condition.getPredicate();
-					//System.out.println("Scenario = " +scenario.getName());
-					//System.out.println("   formal: " + guard);
-					//System.out.println("   actual: " + input);
-					if (condition == null || condition.accepts(input)) {
-						//DEBUG
-						//System.out.println("      accepted!");
-						list.add(new Analysis("Scenario " +
-								scenario.getName() + " accepts input " + count));
-					}
-					//DEBUG
-					//else System.out.println("      refused!");
-				}
-				if (list.isEmpty()) {
-					opInfo.addNotice( new Warning(
-							"No scenarios enabled for input " + count));
-					blocking = true;
-				}
-				else if (list.size() == 1) {
-					opInfo.addNotice(list.get(0));
-				}
-				else {
-					Warning warning = new Warning(
-							"Multiple scenarios triggered by input " + count);
-					opInfo.addNotice(warning);
-					for (Analysis analysis : list)
-						warning.addNotice(analysis);
-					nondeterministic = true;
-				}
-			}
-		}
 		if (nondeterministic || blocking) {
 			if (nondeterministic) {
 				topInfo.addNotice(new Warning(
@@ -357,98 +427,224 @@ public class Operation extends Scope {
 	}
 	
 	/**
-	 * Returns the possible symbolic input partitions for this Operation.
-	 * For each Scenario, extracts the atomic predicates over each pair of
-	 * parameters, discovered by refining the Scenario's Condition and its
-	 * complement.  Partitions these predicates into sets, by indexing each
-	 * set according to the pair of parameters governed by each predicate.
-	 * Converts the partitioned sets into all possible combinations, taking
-	 * one predicate from each set.  Converts each combination into a logical
-	 * -AND Proposition governing the Predicates in the combination, and 
-	 * adds this to the resulting set of Predicates.  If an Operation has a
-	 * single Scenario with no Condition, returns an empty set, indicating
-	 * that the Operation accepts universal input.  Otherwise, returns a set
-	 * of predicates, each representing a different partition of the input
-	 * space.
-	 * @param opInfo the Notice reporting on this Operation.
-	 * @return the partitions of this Operation's input space.
+	 * PartitionCheck represents the enumeration of the symbolic input 
+	 * partitions of this Operation, together with the check of each Scenario
+	 * against each valid partition.  For each Scenario, extracts the atomic
+	 * predicates over each pair of parameters, discovered by refining the 
+	 * Scenario's Condition and its complement.  Partitions these predicates
+	 * into groups, indexing each group by the pair of parameters governed
+	 * by each predicate.  Enumerates depth-first all the combinations that
+	 * take one predicate from each group, checking the consistency of each
+	 * partial combination, such that an inconsistent prefix cuts off every
+	 * combination that extends it.  Each complete consistent combination is
+	 * a partition, which is reported and checked against every Scenario as
+	 * soon as it is found, rather than being collected.  A partition with
+	 * more than one predicate is a logical-AND Proposition governing the 
+	 * predicates in the combination.  If an Operation has a single Scenario
+	 * with no Condition, no partition is found, indicating that the 
+	 * Operation accepts universal input.
 	 */
-	protected Set<Predicate> getPartitions(Notice opInfo) {
-		// First stage: calculate all atomic predicates over each pair of 
-		// Parameters and index these in sets, according to the unique pair
-		// of Parameters that each predicate governs.
-		Map<Object, Set<Predicate>> indexedSets = 
-				new LinkedHashMap<Object, Set<Predicate>>();
-		for (Scenario scenario : getScenarios()) {
-			for (Predicate predicate : scenario.getPartitions()) {
-				Object key = predicate.getExpressions();
-				if (!indexedSets.containsKey(key)) {
-					indexedSets.put(key,  new LinkedHashSet<Predicate>());
+	private class PartitionCheck {
+		
+		/**
+		 * The groups of atomic predicates, indexed by their operands.
+		 */
+		private final List<Predicate[]> groups = new ArrayList<Predicate[]>();
+		
+		/**
+		 * The table of canonical predicates, shared by every combination,
+		 * which also caches the subsumption tests of every Scenario.
+		 */
+		private final PredicateTable table;
+		
+		/**
+		 * The current combination of predicates, one from each group so far.
+		 */
+		private final Predicate[] terms;
+		
+		/**
+		 * The Notice listing the valid partitions of the input space.
+		 */
+		private final Notice parInfo = 
+				new Notice("Valid partitions of the input/memory space:");
+		
+		/**
+		 * The Notice listing the invalid partitions of the input space.
+		 */
+		private final Notice rejInfo = 
+				new Notice("Invalid partitions of the input/memory space:");
+		
+		/**
+		 * The outcome of checking the Scenarios against each valid partition.
+		 */
+		private final List<Notice> outcomes = new ArrayList<Notice>();
+		
+		/**
+		 * The number of valid partitions found so far.
+		 */
+		private int parCount = 0;
+		
+		/**
+		 * The number of invalid partitions found so far.
+		 */
+		private int rejCount = 0;
+		
+		/**
+		 * Flag set to true if no Scenario accepts some valid partition.
+		 */
+		private boolean blocking = false;
+		
+		/**
+		 * Flag set to true if many Scenarios accept some valid partition.
+		 */
+		private boolean nondeterministic = false;
+		
+		/**
+		 * Enumerates and checks the input partitions of this Operation.
+		 * Reports the valid and invalid partitions to the Notice for this
+		 * Operation, followed by the outcome of checking each valid one.
+		 * @param opInfo the Notice reporting on this Operation.
+		 * @param table the table of canonical predicates.
+		 */
+		public PartitionCheck(Notice opInfo, PredicateTable table) {
+			this.table = table;
+			// First stage: calculate all atomic predicates over each pair of 
+			// Parameters and index these in sets, according to the unique pair
+			// of Parameters that each predicate governs.
+			Map<Object, Set<Predicate>> indexedSets = 
+					new LinkedHashMap<Object, Set<Predicate>>();
+			for (Scenario scenario : getScenarios()) {
+				for (Predicate partition : scenario.getPartitions()) {
+					Predicate predicate = table.intern(partition);
+					Object key = predicate.getExpressions();
+					if (!indexedSets.containsKey(key)) {
+						indexedSets.put(key,  new LinkedHashSet<Predicate>());
+					}
+					indexedSets.get(key).add(predicate);
 				}
-				indexedSets.get(key).add(predicate);
 			}
+			for (Set<Predicate> partitions : indexedSets.values())
+				groups.add(partitions.toArray(new Predicate[partitions.size()]));
+			terms = new Predicate[groups.size()];
+			// Second stage: grow the tree of atomic predicate combinations,
+			// pruning each inconsistent branch, checking each leaf.
+			if (! groups.isEmpty())
+				enumerate(0);
+			if (parCount > 0)
+				opInfo.addNotice(parInfo);
+			else
+				opInfo.addNotice(new Notice("No partitioning of the input/memory space"));
+			if (rejCount > 0)
+				opInfo.addNotice(rejInfo);
+			for (Notice outcome : outcomes)
+				opInfo.addNotice(outcome);
 		}
-		// Second stage: grow the tree of atomic predicate combinations,
-		// combining every permutation of predicates, indexed by the same set
-		// of operands, with every other such permutation.
-		List<List<Predicate>> oldMatrix = new ArrayList<List<Predicate>>();
-		oldMatrix.add(new ArrayList<Predicate>());  // oldMatrix contains empty list
-		for (Set<Predicate> partitions : indexedSets.values()) {
-			List<List<Predicate>> newMatrix = new ArrayList<List<Predicate>>();
-			for (List<Predicate> oldList : oldMatrix) {
-				for (Predicate predicate : partitions) {
-					List<Predicate> newList = new ArrayList<Predicate>(oldList);
-					newList.add(predicate);
-					newMatrix.add(newList);
-				}
+		
+		/**
+		 * Combines the current terms into a single Predicate.  If there is
+		 * only one term, returns this; otherwise returns the conjunction.
+		 * @param length the number of current terms.
+		 * @return the combined Predicate.
+		 */
+		private Predicate combine(int length) {
+			if (length == 1)
+				return terms[0];
+			Proposition proposition = new Proposition("and");
+			for (int i = 0; i < length; ++i) {
+				proposition.addExpression(terms[i]);
 			}
-			oldMatrix = newMatrix;
+			return proposition;
 		}
-		// Third stage: combine each distinct combination in a conjunction,
-		// if there is more than one predicate in the combination.  If there is
-		// zero or one predicate, do nothing, or add the predicate itself.
-		Set<Predicate> result = new LinkedHashSet<Predicate>();
-		for (List<Predicate> terms : oldMatrix) {
-			if (terms.size() < 2)
-				result.addAll(terms);
+		
+		/**
+		 * Extends the current terms with each predicate from the group at 
+		 * the given depth, interning their combination.  If the extended 
+		 * terms are inconsistent, rejects every combination that extends 
+		 * them; otherwise if they are complete, checks them as a valid 
+		 * partition; otherwise recursively extends them with the next group.
+		 * @param depth the index of the next group.
+		 */
+		private void enumerate(int depth) {
+			for (Predicate predicate : groups.get(depth)) {
+				terms[depth] = predicate;
+				Predicate partial = table.intern(combine(depth + 1));
+				if (! partial.isConsistent())
+					reject(depth + 1);
+				else if (depth + 1 == terms.length)
+					accept(partial);
+				else
+					enumerate(depth + 1);
+			}
+		}
+		
+		/**
+		 * Reports every complete combination extending the current terms as
+		 * an invalid partition, in the order of enumeration.  No further
+		 * consistency checks are needed, since the terms are inconsistent.
+		 * @param depth the number of current terms.
+		 */
+		private void reject(int depth) {
+			if (depth == terms.length) {
+				//DEBUG
+				//System.out.println("not consistent: " + combine(depth));
+				++rejCount;
+				rejInfo.addNotice(new Analysis("invalid " + rejCount +
+						" = " + combine(depth).toString()));
+			}
 			else {
-				Proposition proposition = new Proposition("and");
-				for (Predicate predicate : terms) {
-					proposition.addExpression(predicate);
+				for (Predicate predicate : groups.get(depth)) {
+					terms[depth] = predicate;
+					reject(depth + 1);
 				}
-				result.add(proposition);
 			}
 		}
-		// Fourth stage: filter out any self-inconsistent predicates.
-		Notice parInfo = new Notice("Valid partitions of the input/memory space:");
-		Notice rejInfo = new Notice("Invalid partitions of the input/memory space:");
-		int parCount = 0;
-		int rejCount = 0;
-		Set<Predicate> filtered = new LinkedHashSet<Predicate>();
-		for (Predicate predicate : result) {
-			if (predicate.isConsistent()) {
+		
+		/**
+		 * Reports a valid partition, then checks which Scenarios accept it.
+		 * Reports whether no Scenario, one Scenario, or many Scenarios were
+		 * triggered by this partition of the input space.
+		 * @param input the valid partition.
+		 */
+		private void accept(Predicate input) {
+			//DEBUG
+			//System.out.println("consistent: " + input);
+			int count = ++parCount;
+			parInfo.addNotice(new Analysis("input " + count + 
+					" = " + input.toString()));
+			List<Analysis> list = new ArrayList<Analysis>();
+			for (Scenario scenario : getScenarios()) {
+				Condition condition = scenario.getCondition();
 				//DEBUG
-				//System.out.println("consistent: " + predicate);
-				++parCount;
-				parInfo.addNotice(new Analysis("input " + parCount + 
-						" = " + predicate.toString()));
-				filtered.add(predicate);
+				//Predicate guard = condition.getPredicate();
+				//System.out.println("Scenario = " +scenario.getName());
+				//System.out.println("   formal: " + guard);
+				//System.out.println("   actual: " + input);
+				if (condition == null || condition.accepts(input)) {
+					//DEBUG
+					//System.out.println("      accepted!");
+					list.add(new Analysis("Scenario " +
+							scenario.getName() + " accepts input " + count));
+				}
+				//DEBUG
+				//else System.out.println("      refused!");
+			}
+			if (list.isEmpty()) {
+				outcomes.add( new Warning(
+						"No scenarios enabled for input " + count));
+				blocking = true;
+			}
+			else if (list.size() == 1) {
+				outcomes.add(list.get(0));
 			}
 			else {
-				//DEBUG
-				//System.out.println("not consistent: " + predicate);
-				++rejCount;
-				rejInfo.addNotice(new Analysis("invalid " + rejCount +
-						" = " + predicate.toString()));
+				Warning warning = new Warning(
+						"Multiple scenarios triggered by input " + count);
+				outcomes.add(warning);
+				for (Analysis analysis : list)
+					warning.addNotice(analysis);
+				nondeterministic = true;
 			}
 		}
-		if (parCount > 0)
-			opInfo.addNotice(parInfo);
-		else
-			opInfo.addNotice(new Notice("No partitioning of the input/memory space"));
-		if (rejCount > 0)
-			opInfo.addNotice(rejInfo);
-		return filtered;
 	}
 	
 	/**
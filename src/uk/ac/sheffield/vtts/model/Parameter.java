@@ -52,6 +52,13 @@ package uk.ac.sheffield.vtts.model;
  */
 public abstract class Parameter extends Expression {
 	
+	/**
+	 * The kinds of primitive slot that may hold the bound value, after an
+	 * unboxed numeric assignment.  NONE indicates that the bound value is 
+	 * held only as an object.
+	 */
+	protected static final int NONE = 0, INT = 1, LONG = 2, DOUBLE = 3;
+	
 	/**
 	 * Flag denoting whether this Parameter is currently bound.  Initially
 	 * false for all Parameters, except Constants, which are always bound,
@@ -70,6 +77,23 @@ public abstract class Parameter extends Expression {
 	 */
 	protected String content;
 	
+	/**
+	 * The kind of primitive slot holding the bound value, or NONE; a 
+	 * volatile variable.  When a slot holds the bound value, the cached 
+	 * object value is either null, or the boxed form of the slot value.
+	 */
+	private int slot = NONE;
+	
+	/**
+	 * The bound value, when held in the INT or LONG slot; a volatile variable.
+	 */
+	private long integral;
+	
+	/**
+	 * The bound value, when held in the DOUBLE slot; a volatile variable.
+	 */
+	private double real;
+	
 	/**
 	 * Creates a default parameter.
 	 */
@@ -104,13 +128,82 @@ public abstract class Parameter extends Expression {
 	 * content and caches it.  If no content is specified, performs default
 	 * initialisation to false, zero, null byte, empty String, empty List,
 	 * Set or Map, etc. according to type.  If this Parameter is not bound,
-	 * returns null.
+	 * returns null.  If a numeric value was assigned unboxed, boxes this
+	 * value and caches it.
 	 * @return the bound value of this Parameter.
 	 */
 	@Override
 	public Object evaluate() {
 		if (bound && value == null)
-			value = factory.createObject(content, type);
+			value = (slot == NONE ? factory.createObject(content, type) 
+					: boxSlot());
+		return value;
+	}
+	
+	/**
+	 * Evaluates this Parameter to an int value.  Returns the value of the
+	 * INT slot directly, if this holds the bound value; otherwise unboxes
+	 * the bound value.
+	 * @return the int value of this Parameter.
+	 */
+	@Override
+	public int evaluateInt() {
+		if (slot == INT)
+			return (int) integral;
+		else
+			return super.evaluateInt();
+	}
+	
+	/**
+	 * Evaluates this Parameter to a long value.  Returns the value of the
+	 * LONG slot directly, if this holds the bound value; otherwise unboxes
+	 * the bound value.
+	 * @return the long value of this Parameter.
+	 */
+	@Override
+	public long evaluateLong() {
+		if (slot == LONG)
+			return integral;
+		else
+			return super.evaluateLong();
+	}
+	
+	/**
+	 * Evaluates this Parameter to a double value.  Returns the value of the
+	 * DOUBLE slot directly, if this holds the bound value; otherwise unboxes
+	 * the bound value.
+	 * @return the double value of this Parameter.
+	 */
+	@Override
+	public double evaluateDouble() {
+		if (slot == DOUBLE)
+			return real;
+		else
+			return super.evaluateDouble();
+	}
+	
+	/**
+	 * Returns the boxed form of the value held in the current slot.
+	 * @return an Integer, Long or Double object.
+	 */
+	private Object boxSlot() {
+		if (slot == INT)
+			return (int) integral;
+		else if (slot == LONG)
+			return integral;
+		else  // DOUBLE
+			return real;
+	}
+	
+	/**
+	 * Returns the bound value of this Parameter, if this was assigned or 
+	 * has already been created, without creating it from the content.  A
+	 * numeric value that was assigned unboxed is boxed and cached first.
+	 * @return the assigned value, or null.
+	 */
+	protected Object assignedValue() {
+		if (slot != NONE && value == null)
+			value = boxSlot();
 		return value;
 	}
 	
@@ -155,6 +248,7 @@ public abstract class Parameter extends Expression {
 	public void unbind() {
 		bound = false;
 		value = null;
+		slot = NONE;
 	}
 	
 	/**
@@ -176,6 +270,7 @@ public abstract class Parameter extends Expression {
 	public void rebind(Object value) {
 		bound = true;
 		this.value = value;
+		slot = NONE;
 	}
 	
 	/**
@@ -201,6 +296,99 @@ public abstract class Parameter extends Expression {
 	public void assign(Object value) {
 		bound = true;
 		this.value = value;
+		slot = NONE;
+	}
+	
+	/**
+	 * Restores the bound flag and bound value of this Parameter, which were
+	 * recorded earlier by a Checkpoint.  The restored value is held only as
+	 * an object.
+	 * @param bound the recorded bound flag.
+	 * @param value the recorded value, or null.
+	 */
+	protected void restore(boolean bound, Object value) {
+		this.bound = bound;
+		this.value = value;
+		slot = NONE;
+	}
+	
+	/**
+	 * Restores the bound flag and a bound value held in a primitive slot of
+	 * this Parameter, which were recorded earlier by a Checkpoint.  The 
+	 * restored value is held only in the slot.
+	 * @param bound the recorded bound flag.
+	 * @param slot the recorded kind of slot, INT, LONG or DOUBLE.
+	 * @param bits the recorded bits of the slot, as given by slotBits().
+	 */
+	protected void restore(boolean bound, int slot, long bits) {
+		this.bound = bound;
+		this.value = null;
+		this.slot = slot;
+		if (slot == DOUBLE)
+			real = Double.longBitsToDouble(bits);
+		else
+			integral = bits;
+	}
+	
+	/**
+	 * Returns the kind of primitive slot holding the bound value of this
+	 * Parameter.  Allows a Checkpoint to record the value without boxing.
+	 * @return INT, LONG or DOUBLE, or NONE if the value is an object.
+	 */
+	protected int slotKind() {
+		return slot;
+	}
+	
+	/**
+	 * Returns the bits of the primitive slot holding the bound value of 
+	 * this Parameter.  An int or long value is returned as a long, and a
+	 * double value as its canonical bits, such that equal values have equal
+	 * bits, in the sense of Double.equals().
+	 * @return the bits of the slot.
+	 */
+	protected long slotBits() {
+		if (slot == DOUBLE)
+			return Double.doubleToLongBits(real);
+		else
+			return integral;
+	}
+	
+	/**
+	 * Assigns a new bound int value to this Parameter, without boxing.  The
+	 * value is held in the INT slot, and is only boxed if this Parameter is
+	 * later evaluated as an object.  Overridden in Constant, which may not
+	 * reassign values.
+	 * @param value the int value to assign.
+	 */
+	public void assignInt(int value) {
+		bound = true;
+		this.value = null;
+		slot = INT;
+		integral = value;
+	}
+	
+	/**
+	 * Assigns a new bound long value to this Parameter, without boxing.
+	 * The value is held in the LONG slot.
+	 * @param value the long value to assign.
+	 */
+	public void assignLong(long value) {
+		bound = true;
+		this.value = null;
+		slot = LONG;
+		integral = value;
+	}
+	
+	/**
+	 * Assigns a new bound double value to this Parameter, without boxing.
+	 * The value is held in the DOUBLE slot.
+	 * @param value the double value to assign.
+	 */
+	public void assignDouble(double value) {
+		bound = true;
+		this.value = null;
+		slot = DOUBLE;
+		real = value;
 	}
 
 	/**
@@ -246,8 +434,9 @@ public abstract class Parameter extends Expression {
 			result.setName(name);
 			result.setType(type);
 			result.setBound(bound);
-			if (bound && value != null)
-				result.setContent(value.toString());
+			Object current = assignedValue();
+			if (bound && current != null)
+				result.setContent(current.toString());
 		} 
 		catch (InstantiationException e) {
 			e.printStackTrace();
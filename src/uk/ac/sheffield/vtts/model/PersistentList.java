@@ -0,0 +1,452 @@
+/**
+ * Broker@Cloud Verification and Testing Tool Suite.
+ * Copyright (C) 2015 Anthony J H Simons and Raluca Lefticaru, 
+ * University of Sheffield, UK.  All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This file is "foreground software", developed as an output of 
+ * the European Union collaborative research project, "Broker@Cloud: 
+ * enabling continuous quality assurance and optimization in future 
+ * enterprise cloud service brokers", FP7-ICT-2011-8 no. 318392, and
+ * is licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or 
+ * implied.  See the License for the specific language governing 
+ * permissions and limitations under the License.
+ * 
+ * The freedoms granted by the License to incorporate, redistribute,
+ * modify or extend the software apply only to "foreground software"
+ * contributed by the Broker@Cloud project; and not to any proprietary 
+ * software, or "background software" incorporated from other sources, 
+ * which may be offered under different terms of usage.
+ * 
+ * Please contact the Department of Computer Science, University of
+ * Sheffield, Regent Court, 211 Portobello, Sheffield S1 4DP, UK or
+ * visit www.sheffield.ac.uk/dcs if you need additional information 
+ * or have any questions.
+ */
+
+package uk.ac.sheffield.vtts.model;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * PersistentList is an immutable List, used as the runtime representation
+ * of List values produced by Manipulations.  It is a persistent vector: a
+ * trie of 32-element arrays, whose last, partially filled array is held 
+ * separately as the tail.  Appending, replacing and removing the last 
+ * element return a new PersistentList in O(log n) time, which shares all 
+ * but one path of the trie with the original.  Inserting or removing at an
+ * index re-appends the elements after that index, so costs time in 
+ * proportion to the distance from the end.  The standard mutating methods
+ * of List are unsupported.  A PersistentList is equal to any other List 
+ * with the same elements in the same order, and has the same hash code and
+ * printed form as an ArrayList with the same elements.
+ * 
+ * @author Anthony J H Simons
+ * @version Broker@Cloud 1.0
+ */
+public class PersistentList<E> extends AbstractList<E> 
+	implements RandomAccess {
+	
+	/**
+	 * The number of index bits used at each level of the trie.
+	 */
+	private static final int BITS = 5;
+	
+	/**
+	 * The width of each array in the trie.
+	 */
+	private static final int WIDTH = 1 << BITS;
+	
+	/**
+	 * The mask selecting the index bits for one level of the trie.
+	 */
+	private static final int MASK = WIDTH - 1;
+	
+	/**
+	 * The empty PersistentList.
+	 */
+	private static final PersistentList<Object> EMPTY = 
+			new PersistentList<Object>(0, BITS, new Object[WIDTH], 
+					new Object[0]);
+	
+	/**
+	 * The number of elements in this PersistentList.
+	 */
+	private final int count;
+	
+	/**
+	 * The index bits consumed above the lowest level of the trie.
+	 */
+	private final int shift;
+	
+	/**
+	 * The root array of the trie.
+	 */
+	private final Object[] root;
+	
+	/**
+	 * The last elements, which are not yet stored in the trie.
+	 */
+	private final Object[] tail;
+	
+	/**
+	 * The cached hash code of this PersistentList, or zero.
+	 */
+	private int hash;
+	
+	/**
+	 * Creates a PersistentList.
+	 * @param count the number of elements.
+	 * @param shift the index bits consumed above the lowest level.
+	 * @param root the root array of the trie.
+	 * @param tail the tail array.
+	 */
+	private PersistentList(int count, int shift, Object[] root, 
+			Object[] tail) {
+		this.count = count;
+		this.shift = shift;
+		this.root = root;
+		this.tail = tail;
+	}
+	
+	/**
+	 * Returns the empty PersistentList.
+	 * @return the empty PersistentList.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentList<E> empty() {
+		return (PersistentList<E>) EMPTY;
+	}
+	
+	/**
+	 * Returns a PersistentList with the same elements as another Collection,
+	 * in the same order.  If the other Collection is already a PersistentList,
+	 * returns this directly.
+	 * @param collection the other Collection.
+	 * @return the PersistentList.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentList<E> from(
+			Collection<? extends E> collection) {
+		if (collection instanceof PersistentList)
+			return (PersistentList<E>) collection;
+		else
+			return PersistentList.<E>empty().plusAll(collection);
+	}
+	
+	/**
+	 * Returns the index of the first element stored in the tail.
+	 * @return the tail offset.
+	 */
+	private int tailOffset() {
+		return count < WIDTH ? 0 : ((count - 1) >>> BITS) << BITS;
+	}
+	
+	/**
+	 * Returns the array of the trie, or the tail, holding an index.
+	 * @param index the index.
+	 * @return the array holding the index.
+	 */
+	private Object[] arrayFor(int index) {
+		if (index >= tailOffset())
+			return tail;
+		Object[] node = root;
+		for (int level = shift; level > 0; level -= BITS) {
+			node = (Object[]) node[(index >>> level) & MASK];
+		}
+		return node;
+	}
+	
+	/**
+	 * Checks that an index is within the range of this PersistentList.
+	 * @param index the index.
+	 * @param limit the exclusive upper bound of the range.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	private void checkIndex(int index, int limit) {
+		if (index < 0 || index >= limit)
+			throw new IndexOutOfBoundsException("Index: " + index + 
+					", Size: " + count);
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		checkIndex(index, count);
+		return (E) arrayFor(index)[index & MASK];
+	}
+	
+	@Override
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Returns a PersistentList with an element appended.
+	 * @param element the element.
+	 * @return the new PersistentList.
+	 */
+	public PersistentList<E> plus(E element) {
+		if (count - tailOffset() < WIDTH) {
+			Object[] newTail = new Object[tail.length + 1];
+			System.arraycopy(tail, 0, newTail, 0, tail.length);
+			newTail[tail.length] = element;
+			return new PersistentList<E>(count + 1, shift, root, newTail);
+		}
+		Object[] newRoot;
+		int newShift = shift;
+		if ((count >>> BITS) > (1 << shift)) {
+			newRoot = new Object[WIDTH];
+			newRoot[0] = root;
+			newRoot[1] = newPath(shift, tail);
+			newShift += BITS;
+		}
+		else
+			newRoot = pushTail(shift, root, tail);
+		return new PersistentList<E>(count + 1, newShift, newRoot, 
+				new Object[] { element });
+	}
+	
+	/**
+	 * Returns a PersistentList with every element of another Collection
+	 * appended, in order.
+	 * @param collection the other Collection.
+	 * @return the new PersistentList.
+	 */
+	public PersistentList<E> plusAll(Collection<? extends E> collection) {
+		PersistentList<E> result = this;
+		for (E element : collection) {
+			result = result.plus(element);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns a copy of a path in the trie, with the full tail pushed into
+	 * the trie as the last leaf array.
+	 * @param level the index bits consumed above this level.
+	 * @param parent the array at this level.
+	 * @param leaf the full tail.
+	 * @return the copied array.
+	 */
+	private Object[] pushTail(int level, Object[] parent, Object[] leaf) {
+		int subIndex = ((count - 1) >>> level) & MASK;
+		Object[] result = parent.clone();
+		Object[] child;
+		if (level == BITS)
+			child = leaf;
+		else if (parent[subIndex] != null)
+			child = pushTail(level - BITS, (Object[]) parent[subIndex], leaf);
+		else
+			child = newPath(level - BITS, leaf);
+		result[subIndex] = child;
+		return result;
+	}
+	
+	/**
+	 * Returns a new path down to a leaf array.
+	 * @param level the index bits consumed above this level.
+	 * @param leaf the leaf array.
+	 * @return the array at this level.
+	 */
+	private static Object[] newPath(int level, Object[] leaf) {
+		if (level == 0)
+			return leaf;
+		Object[] result = new Object[WIDTH];
+		result[0] = newPath(level - BITS, leaf);
+		return result;
+	}
+	
+	/**
+	 * Returns a PersistentList with the element at an index replaced.
+	 * @param index the index.
+	 * @param element the new element.
+	 * @return the new PersistentList.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public PersistentList<E> with(int index, E element) {
+		checkIndex(index, count);
+		if (index >= tailOffset()) {
+			Object[] newTail = tail.clone();
+			newTail[index & MASK] = element;
+			return new PersistentList<E>(count, shift, root, newTail);
+		}
+		return new PersistentList<E>(count, shift, 
+				assign(shift, root, index, element), tail);
+	}
+	
+	/**
+	 * Returns a copy of a path in the trie, with one element replaced.
+	 * @param level the index bits consumed above this level.
+	 * @param node the array at this level.
+	 * @param index the index.
+	 * @param element the new element.
+	 * @return the copied array.
+	 */
+	private static Object[] assign(int level, Object[] node, int index, 
+			Object element) {
+		Object[] result = node.clone();
+		if (level == 0)
+			result[index & MASK] = element;
+		else {
+			int subIndex = (index >>> level) & MASK;
+			result[subIndex] = assign(level - BITS, 
+					(Object[]) node[subIndex], index, element);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns a PersistentList without its last element.
+	 * @return the new PersistentList.
+	 */
+	private PersistentList<E> pop() {
+		if (count == 1)
+			return empty();
+		if (count - tailOffset() > 1) {
+			Object[] newTail = new Object[tail.length - 1];
+			System.arraycopy(tail, 0, newTail, 0, newTail.length);
+			return new PersistentList<E>(count - 1, shift, root, newTail);
+		}
+		Object[] newTail = arrayFor(count - 2);
+		Object[] newRoot = popTail(shift, root);
+		int newShift = shift;
+		if (newRoot == null)
+			newRoot = new Object[WIDTH];
+		if (shift > BITS && newRoot[1] == null) {
+			newRoot = (Object[]) newRoot[0];
+			newShift -= BITS;
+		}
+		return new PersistentList<E>(count - 1, newShift, newRoot, newTail);
+	}
+	
+	/**
+	 * Returns a copy of a path in the trie, without its last leaf array.
+	 * @param level the index bits consumed above this level.
+	 * @param node the array at this level.
+	 * @return the copied array, or null if it is now empty.
+	 */
+	private Object[] popTail(int level, Object[] node) {
+		int subIndex = ((count - 2) >>> level) & MASK;
+		if (level > BITS) {
+			Object[] child = popTail(level - BITS, (Object[]) node[subIndex]);
+			if (child == null && subIndex == 0)
+				return null;
+			Object[] result = node.clone();
+			result[subIndex] = child;
+			return result;
+		}
+		else if (subIndex == 0)
+			return null;
+		else {
+			Object[] result = node.clone();
+			result[subIndex] = null;
+			return result;
+		}
+	}
+	
+	/**
+	 * Returns the first elements of this PersistentList, up to a length.
+	 * Either removes elements from the end, or rebuilds the prefix, 
+	 * whichever is shorter.
+	 * @param length the length of the prefix.
+	 * @return the prefix, as a PersistentList.
+	 */
+	private PersistentList<E> prefix(int length) {
+		PersistentList<E> result = this;
+		if (length < count - length) {
+			result = empty();
+			for (int index = 0; index < length; ++index) {
+				result = result.plus(get(index));
+			}
+		}
+		else {
+			while (result.count > length) {
+				result = result.pop();
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns a PersistentList with an element inserted at an index.  The
+	 * element previously at the index, and all following elements, are
+	 * shifted up by one.
+	 * @param index the index.
+	 * @param element the element to insert.
+	 * @return the new PersistentList.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public PersistentList<E> plus(int index, E element) {
+		checkIndex(index, count + 1);
+		PersistentList<E> result = prefix(index).plus(element);
+		for (int next = index; next < count; ++next) {
+			result = result.plus(get(next));
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns a PersistentList without the element at an index.  All the
+	 * following elements are shifted down by one.
+	 * @param index the index.
+	 * @return the new PersistentList.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public PersistentList<E> minusAt(int index) {
+		checkIndex(index, count);
+		PersistentList<E> result = prefix(index);
+		for (int next = index + 1; next < count; ++next) {
+			result = result.plus(get(next));
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns a PersistentList without the first occurrence of an element.
+	 * @param element the element.
+	 * @return the new PersistentList, or this, if the element was absent.
+	 */
+	public PersistentList<E> minus(Object element) {
+		int index = indexOf(element);
+		return index < 0 ? this : minusAt(index);
+	}
+	
+	/**
+	 * Returns a PersistentList without any element that is contained in
+	 * another Collection.
+	 * @param collection the other Collection.
+	 * @return the new PersistentList, or this, if no element was removed.
+	 */
+	public PersistentList<E> minusAll(Collection<?> collection) {
+		PersistentList<E> result = empty();
+		for (E element : this) {
+			if (! collection.contains(element))
+				result = result.plus(element);
+		}
+		return result.count == count ? this : result;
+	}
+	
+	/**
+	 * Returns the hash code of this PersistentList, which is cached, since
+	 * this PersistentList never changes.
+	 * @return the hash code.
+	 */
+	@Override
+	public int hashCode() {
+		if (hash == 0)
+			hash = super.hashCode();
+		return hash;
+	}
+
+}
@@ -0,0 +1,750 @@
+/**
+ * Broker@Cloud Verification and Testing Tool Suite.
+ * Copyright (C) 2015 Anthony J H Simons and Raluca Lefticaru, 
+ * University of Sheffield, UK.  All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This file is "foreground software", developed as an output of 
+ * the European Union collaborative research project, "Broker@Cloud: 
+ * enabling continuous quality assurance and optimization in future 
+ * enterprise cloud service brokers", FP7-ICT-2011-8 no. 318392, and
+ * is licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or 
+ * implied.  See the License for the specific language governing 
+ * permissions and limitations under the License.
+ * 
+ * The freedoms granted by the License to incorporate, redistribute,
+ * modify or extend the software apply only to "foreground software"
+ * contributed by the Broker@Cloud project; and not to any proprietary 
+ * software, or "background software" incorporated from other sources, 
+ * which may be offered under different terms of usage.
+ * 
+ * Please contact the Department of Computer Science, University of
+ * Sheffield, Regent Court, 211 Portobello, Sheffield S1 4DP, UK or
+ * visit www.sheffield.ac.uk/dcs if you need additional information 
+ * or have any questions.
+ */
+
+
+package uk.ac.sheffield.vtts.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * PersistentMap is an immutable Map, used as the runtime representation of
+ * Map values produced by Manipulations.  It is a hash array mapped trie, in
+ * which each level of the trie is indexed by five bits of the key's hash.
+ * Adding or removing a key returns a new PersistentMap in O(log n) time,
+ * which shares all but one path of the trie with the original, so that the
+ * successive values of a Map Variable share most of their structure.  The
+ * standard mutating methods of Map are unsupported.  A PersistentMap is
+ * equal to any other Map with the same entries, and has the same hash code
+ * as a HashMap with the same entries.
+ * <p>
+ * A PersistentMap visits its entries in insertion order, like a 
+ * LinkedHashMap:  a PersistentMap copied from another Map visits the keys
+ * in the order of the other Map; a new key is visited after all existing
+ * keys; and replacing the value of an existing key keeps its position.  The
+ * order is kept in a PersistentList of the entries, shared in the same way
+ * as the trie, in which a removed entry leaves a gap, until the gaps 
+ * outnumber the entries and the PersistentMap is rebuilt without them.
+ * 
+ * @author Anthony J H Simons
+ * @version Broker@Cloud 1.0
+ */
+public class PersistentMap<K, V> extends AbstractMap<K, V> {
+	
+	/**
+	 * The number of hash bits used to index each level of the trie.
+	 */
+	private static final int BITS = 5;
+	
+	/**
+	 * The mask selecting the hash bits for one level of the trie.
+	 */
+	private static final int MASK = (1 << BITS) - 1;
+	
+	/**
+	 * The key stored in place of the null key.
+	 */
+	private static final Object NULL_KEY = new Object();
+	
+	/**
+	 * The result of a failed search.
+	 */
+	private static final Object NOT_FOUND = new Object();
+	
+	/**
+	 * The empty PersistentMap.
+	 */
+	private static final PersistentMap<Object, Object> EMPTY =
+			new PersistentMap<Object, Object>(null, 0, 
+					PersistentList.<Slot>empty());
+	
+	/**
+	 * Slot is an immutable entry of a PersistentMap.  Besides the key and
+	 * value, a Slot records its position in the insertion order.
+	 */
+	private static class Slot extends SimpleImmutableEntry<Object, Object> {
+		
+		/**
+		 * The serial version UID.
+		 */
+		private static final long serialVersionUID = 1L;
+		
+		/**
+		 * The position of this Slot in the insertion order.
+		 */
+		private final int index;
+		
+		/**
+		 * Creates a Slot.
+		 * @param key the key, which may be null.
+		 * @param value the value.
+		 * @param index the position of the Slot in the insertion order.
+		 */
+		private Slot(Object key, Object value, int index) {
+			super(key, value);
+			this.index = index;
+		}
+	}
+	
+	/**
+	 * Node is a node of the trie.  The array of a Node stores alternating
+	 * keys and Slots.  A null key indicates that the following element is
+	 * a sub-Node, rather than a Slot.
+	 */
+	private static abstract class Node {
+		
+		/**
+		 * The alternating keys and Slots, or sub-Nodes, of this Node.
+		 */
+		protected final Object[] array;
+		
+		/**
+		 * Creates a Node with the given keys and Slots.
+		 * @param array the alternating keys and Slots.
+		 */
+		protected Node(Object[] array) {
+			this.array = array;
+		}
+		
+		/**
+		 * Finds the Slot stored against a key.
+		 * @param hash the hash of the key.
+		 * @param shift the hash bits consumed at this level.
+		 * @param key the key.
+		 * @return the Slot, or NOT_FOUND.
+		 */
+		public abstract Object find(int hash, int shift, Object key);
+		
+		/**
+		 * Returns a Node that also stores a Slot against a key.
+		 * @param hash the hash of the key.
+		 * @param shift the hash bits consumed at this level.
+		 * @param key the key.
+		 * @param slot the Slot.
+		 * @return the new Node, or this Node if nothing changed.
+		 */
+		public abstract Node put(int hash, int shift, Object key,
+				Object slot);
+		
+		/**
+		 * Returns a Node that no longer stores a key.
+		 * @param hash the hash of the key.
+		 * @param shift the hash bits consumed at this level.
+		 * @param key the key.
+		 * @return the new Node, null if the Node is now empty, or this Node
+		 * if the key was absent.
+		 */
+		public abstract Node remove(int hash, int shift, Object key);
+	}
+	
+	/**
+	 * BitmapNode is a branching Node of the trie.  Its bitmap records which
+	 * of the 32 possible branches for the next five hash bits are present,
+	 * such that the array stores only the branches that are present.
+	 */
+	private static class BitmapNode extends Node {
+		
+		/**
+		 * The bitmap of present branches.
+		 */
+		private final int bitmap;
+		
+		/**
+		 * Creates a BitmapNode.
+		 * @param bitmap the bitmap of present branches.
+		 * @param array the alternating keys and Slots of the branches.
+		 */
+		private BitmapNode(int bitmap, Object[] array) {
+			super(array);
+			this.bitmap = bitmap;
+		}
+		
+		/**
+		 * Returns the position in the array of the branch for a bit.
+		 * @param bit the bit of the branch.
+		 * @return the position of the key of the branch.
+		 */
+		private int position(int bit) {
+			return 2 * Integer.bitCount(bitmap & (bit - 1));
+		}
+		
+		@Override
+		public Object find(int hash, int shift, Object key) {
+			int bit = 1 << ((hash >>> shift) & MASK);
+			if ((bitmap & bit) == 0)
+				return NOT_FOUND;
+			int pos = position(bit);
+			Object stored = array[pos];
+			if (stored == null)
+				return ((Node) array[pos + 1]).find(hash, shift + BITS, key);
+			else if (key.equals(stored))
+				return array[pos + 1];
+			else
+				return NOT_FOUND;
+		}
+		
+		@Override
+		public Node put(int hash, int shift, Object key, Object slot) {
+			int bit = 1 << ((hash >>> shift) & MASK);
+			int pos = position(bit);
+			if ((bitmap & bit) == 0) {
+				Object[] result = new Object[array.length + 2];
+				System.arraycopy(array, 0, result, 0, pos);
+				result[pos] = key;
+				result[pos + 1] = slot;
+				System.arraycopy(array, pos, result, pos + 2,
+						array.length - pos);
+				return new BitmapNode(bitmap | bit, result);
+			}
+			Object stored = array[pos];
+			Object current = array[pos + 1];
+			if (stored == null) {
+				Node child = ((Node) current).put(hash, shift + BITS,
+						key, slot);
+				return child == current ? this : replace(pos, null, child);
+			}
+			else if (key.equals(stored)) {
+				return slot == current ? this : replace(pos, stored, slot);
+			}
+			else {
+				return replace(pos, null, createNode(shift + BITS,
+						stored, current, hash, key, slot));
+			}
+		}
+		
+		@Override
+		public Node remove(int hash, int shift, Object key) {
+			int bit = 1 << ((hash >>> shift) & MASK);
+			if ((bitmap & bit) == 0)
+				return this;
+			int pos = position(bit);
+			Object stored = array[pos];
+			if (stored == null) {
+				Node child = (Node) array[pos + 1];
+				Node result = child.remove(hash, shift + BITS, key);
+				if (result == child)
+					return this;
+				else if (result == null)
+					return without(bit, pos);
+				else if (result.array.length == 2 && result.array[0] != null)
+					return replace(pos, result.array[0], result.array[1]);
+				else
+					return replace(pos, null, result);
+			}
+			else if (key.equals(stored))
+				return without(bit, pos);
+			else
+				return this;
+		}
+		
+		/**
+		 * Returns a copy of this BitmapNode with one branch replaced.
+		 * @param pos the position of the branch.
+		 * @param key the new key, or null for a sub-Node.
+		 * @param value the new Slot or sub-Node.
+		 * @return the new BitmapNode.
+		 */
+		private BitmapNode replace(int pos, Object key, Object value) {
+			Object[] result = array.clone();
+			result[pos] = key;
+			result[pos + 1] = value;
+			return new BitmapNode(bitmap, result);
+		}
+		
+		/**
+		 * Returns a copy of this BitmapNode without one branch.
+		 * @param bit the bit of the branch.
+		 * @param pos the position of the branch.
+		 * @return the new BitmapNode, or null if this is now empty.
+		 */
+		private BitmapNode without(int bit, int pos) {
+			if (bitmap == bit)
+				return null;
+			Object[] result = new Object[array.length - 2];
+			System.arraycopy(array, 0, result, 0, pos);
+			System.arraycopy(array, pos + 2, result, pos,
+					result.length - pos);
+			return new BitmapNode(bitmap ^ bit, result);
+		}
+	}
+	
+	/**
+	 * CollisionNode is a leaf Node of the trie, which stores the keys whose
+	 * hashes are identical.
+	 */
+	private static class CollisionNode extends Node {
+		
+		/**
+		 * The common hash of the keys.
+		 */
+		private final int hash;
+		
+		/**
+		 * Creates a CollisionNode.
+		 * @param hash the common hash of the keys.
+		 * @param array the alternating keys and Slots.
+		 */
+		private CollisionNode(int hash, Object[] array) {
+			super(array);
+			this.hash = hash;
+		}
+		
+		/**
+		 * Returns the position of a key in the array.
+		 * @param key the key.
+		 * @return the position, or -1 if the key is absent.
+		 */
+		private int position(Object key) {
+			for (int pos = 0; pos < array.length; pos += 2) {
+				if (key.equals(array[pos]))
+					return pos;
+			}
+			return -1;
+		}
+		
+		@Override
+		public Object find(int hash, int shift, Object key) {
+			int pos = position(key);
+			return pos < 0 ? NOT_FOUND : array[pos + 1];
+		}
+		
+		@Override
+		public Node put(int hash, int shift, Object key, Object slot) {
+			if (hash != this.hash) {
+				int bit = 1 << ((this.hash >>> shift) & MASK);
+				return new BitmapNode(bit, new Object[] { null, this })
+					.put(hash, shift, key, slot);
+			}
+			int pos = position(key);
+			Object[] result;
+			if (pos < 0) {
+				result = new Object[array.length + 2];
+				System.arraycopy(array, 0, result, 0, array.length);
+				pos = array.length;
+				result[pos] = key;
+			}
+			else if (array[pos + 1] == slot)
+				return this;
+			else
+				result = array.clone();
+			result[pos + 1] = slot;
+			return new CollisionNode(hash, result);
+		}
+		
+		@Override
+		public Node remove(int hash, int shift, Object key) {
+			int pos = position(key);
+			if (pos < 0)
+				return this;
+			else if (array.length == 2)
+				return null;
+			Object[] result = new Object[array.length - 2];
+			System.arraycopy(array, 0, result, 0, pos);
+			System.arraycopy(array, pos + 2, result, pos,
+					result.length - pos);
+			return new CollisionNode(hash, result);
+		}
+	}
+	
+	/**
+	 * SlotIterator visits the Slots of this PersistentMap in insertion
+	 * order, skipping the gaps left by removed entries.
+	 */
+	private abstract class SlotIterator<T> implements Iterator<T> {
+		
+		/**
+		 * The position of the next Slot to visit, or the length of the 
+		 * order, if none remains.
+		 */
+		private int index = advance(0);
+		
+		/**
+		 * Converts a visited Slot to the visited element.
+		 * @param slot the Slot.
+		 * @return the visited element.
+		 */
+		protected abstract T element(Slot slot);
+		
+		/**
+		 * Returns the position of the first Slot at or after a position.
+		 * @param from the position from which to search.
+		 * @return the position of the Slot, or the length of the order.
+		 */
+		private int advance(int from) {
+			while (from < order.size() && order.get(from) == null)
+				++from;
+			return from;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return index < order.size();
+		}
+		
+		@Override
+		public T next() {
+			if (index == order.size())
+				throw new NoSuchElementException();
+			Slot slot = order.get(index);
+			index = advance(index + 1);
+			return element(slot);
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	/**
+	 * The root Node of the trie, or null if this PersistentMap is empty.
+	 */
+	private final Node root;
+	
+	/**
+	 * The number of entries in this PersistentMap.
+	 */
+	private final int size;
+	
+	/**
+	 * The Slots in insertion order, with null in place of removed Slots.
+	 */
+	private final PersistentList<Slot> order;
+	
+	/**
+	 * The cached hash code of this PersistentMap, or zero.
+	 */
+	private int hash;
+	
+	/**
+	 * Creates a PersistentMap with the given trie.
+	 * @param root the root Node of the trie.
+	 * @param size the number of entries.
+	 * @param order the Slots in insertion order.
+	 */
+	private PersistentMap(Node root, int size, PersistentList<Slot> order) {
+		this.root = root;
+		this.size = size;
+		this.order = order;
+	}
+	
+	/**
+	 * Returns the empty PersistentMap.
+	 * @return the empty PersistentMap.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentMap<K, V> empty() {
+		return (PersistentMap<K, V>) EMPTY;
+	}
+	
+	/**
+	 * Returns a PersistentMap with the same entries as another Map, visited
+	 * in the same order.  If the other Map is already a PersistentMap,
+	 * returns this directly.
+	 * @param map the other Map.
+	 * @return the PersistentMap.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentMap<K, V> from(
+			Map<? extends K, ? extends V> map) {
+		if (map instanceof PersistentMap)
+			return (PersistentMap<K, V>) map;
+		else
+			return PersistentMap.<K, V>empty().plusAll(map);
+	}
+	
+	/**
+	 * Returns the hash of a stored key.  Spreads the higher bits of the
+	 * hash code downwards, since the trie is indexed from the lower bits.
+	 * @param key the stored key.
+	 * @return the hash of the key.
+	 */
+	private static int hashOf(Object key) {
+		if (key == NULL_KEY)
+			return 0;
+		int code = key.hashCode();
+		return code ^ (code >>> 16);
+	}
+	
+	/**
+	 * Creates a sub-Node storing two different keys.
+	 * @param shift the hash bits consumed at the level of the sub-Node.
+	 * @param key1 the first key.
+	 * @param slot1 the first Slot.
+	 * @param hash2 the hash of the second key.
+	 * @param key2 the second key.
+	 * @param slot2 the second Slot.
+	 * @return the sub-Node.
+	 */
+	private static Node createNode(int shift, Object key1, Object slot1,
+			int hash2, Object key2, Object slot2) {
+		int hash1 = hashOf(key1);
+		if (hash1 == hash2)
+			return new CollisionNode(hash1,
+					new Object[] { key1, slot1, key2, slot2 });
+		return new BitmapNode(0, new Object[0])
+			.put(hash1, shift, key1, slot1)
+			.put(hash2, shift, key2, slot2);
+	}
+	
+	/**
+	 * Returns the raw Slot stored against a key.
+	 * @param key the key.
+	 * @return the Slot, or NOT_FOUND.
+	 */
+	private Object find(Object key) {
+		if (root == null)
+			return NOT_FOUND;
+		Object stored = (key == null ? NULL_KEY : key);
+		return root.find(hashOf(stored), 0, stored);
+	}
+	
+	/**
+	 * Returns a PersistentMap that also maps a key to a value.  A new key is
+	 * placed last in the insertion order; an existing key keeps its place.
+	 * @param key the key.
+	 * @param value the value.
+	 * @return the new PersistentMap, or this, if nothing changed.
+	 */
+	private PersistentMap<K, V> store(Object key, Object value) {
+		Object stored = (key == null ? NULL_KEY : key);
+		Object found = find(key);
+		Slot slot;
+		PersistentList<Slot> result;
+		if (found == NOT_FOUND) {
+			slot = new Slot(key, value, order.size());
+			result = order.plus(slot);
+		}
+		else if (((Slot) found).getValue() == value)
+			return this;
+		else {
+			slot = new Slot(key, value, ((Slot) found).index);
+			result = order.with(slot.index, slot);
+		}
+		Node node = (root == null ? new BitmapNode(0, new Object[0]) : root)
+				.put(hashOf(stored), 0, stored, slot);
+		return new PersistentMap<K, V>(node, 
+				found == NOT_FOUND ? size + 1 : size, result);
+	}
+	
+	/**
+	 * Returns a PersistentMap without the entry for a key.  Leaves a gap in
+	 * the insertion order, unless the gaps would then outnumber the entries,
+	 * in which case the entries are stored afresh in a new PersistentMap, 
+	 * in the same order.  Each entry is stored afresh at most once for every
+	 * removal, so removing an entry takes O(log n) amortised time.
+	 * @param key the key.
+	 * @return the new PersistentMap, or this, if the key was absent.
+	 */
+	private PersistentMap<K, V> delete(Object key) {
+		Object found = find(key);
+		if (found == NOT_FOUND)
+			return this;
+		if (size == 1)
+			return empty();
+		Object stored = (key == null ? NULL_KEY : key);
+		PersistentMap<K, V> result = new PersistentMap<K, V>(
+				root.remove(hashOf(stored), 0, stored), size - 1, 
+				order.with(((Slot) found).index, null));
+		if (result.order.size() <= 2 * result.size)
+			return result;
+		PersistentMap<K, V> compact = empty();
+		for (Slot slot : result.order) {
+			if (slot != null)
+				compact = compact.store(slot.getKey(), slot.getValue());
+		}
+		return compact;
+	}
+	
+	/**
+	 * Returns a PersistentMap that also maps a key to a value.  Replaces any
+	 * existing value for the key.
+	 * @param key the key.
+	 * @param value the value.
+	 * @return the new PersistentMap, or this, if nothing changed.
+	 */
+	public PersistentMap<K, V> plus(K key, V value) {
+		return store(key, value);
+	}
+	
+	/**
+	 * Returns a PersistentMap that also contains all the entries of another
+	 * Map, which replace any existing entries with the same keys.  Any new
+	 * keys are placed last, in the order of the other Map.
+	 * @param map the other Map.
+	 * @return the new PersistentMap.
+	 */
+	public PersistentMap<K, V> plusAll(Map<? extends K, ? extends V> map) {
+		PersistentMap<K, V> result = this;
+		for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+			result = result.store(entry.getKey(), entry.getValue());
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns a PersistentMap that also stores a value against every key in
+	 * a Collection.  Used to add elements to a PersistentSet.
+	 * @param keys the Collection of keys.
+	 * @param value the value.
+	 * @return the new PersistentMap.
+	 */
+	PersistentMap<K, V> plusKeys(Collection<? extends K> keys, V value) {
+		PersistentMap<K, V> result = this;
+		for (K key : keys) {
+			result = result.store(key, value);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns a PersistentMap without the entry for a key.
+	 * @param key the key.
+	 * @return the new PersistentMap, or this, if nothing changed.
+	 */
+	public PersistentMap<K, V> minus(Object key) {
+		return delete(key);
+	}
+	
+	/**
+	 * Returns a PersistentMap without those entries that are also entries of
+	 * another Map, having equal keys and equal values.
+	 * @param map the other Map.
+	 * @return the new PersistentMap.
+	 */
+	public PersistentMap<K, V> minusAll(Map<?, ?> map) {
+		PersistentMap<K, V> result = this;
+		for (Entry<?, ?> entry : map.entrySet()) {
+			Object found = result.find(entry.getKey());
+			if (found == NOT_FOUND)
+				continue;
+			Object value = entry.getValue();
+			Object current = ((Slot) found).getValue();
+			if (value == null ? current == null : value.equals(current))
+				result = result.delete(entry.getKey());
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns a PersistentMap without the entry for every key in a
+	 * Collection.  Used to remove elements from a PersistentSet.
+	 * @param keys the Collection of keys.
+	 * @return the new PersistentMap.
+	 */
+	PersistentMap<K, V> minusKeys(Collection<?> keys) {
+		PersistentMap<K, V> result = this;
+		for (Object key : keys) {
+			result = result.delete(key);
+		}
+		return result;
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public boolean containsKey(Object key) {
+		return find(key) != NOT_FOUND;
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		Object slot = find(key);
+		return slot == NOT_FOUND ? null : (V) ((Slot) slot).getValue();
+	}
+	
+	/**
+	 * Returns an Iterator over the keys of this PersistentMap, which does
+	 * not create entries.
+	 * @return an Iterator over the keys.
+	 */
+	protected Iterator<K> keyIterator() {
+		return new SlotIterator<K>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			protected K element(Slot slot) {
+				return (K) slot.getKey();
+			}
+		};
+	}
+	
+	/**
+	 * Returns an immutable Set view of the entries in this PersistentMap.
+	 * @return the Set of entries.
+	 */
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return new AbstractSet<Entry<K, V>>() {
+			@Override
+			public Iterator<Entry<K, V>> iterator() {
+				return new SlotIterator<Entry<K, V>>() {
+					@Override
+					@SuppressWarnings("unchecked")
+					protected Entry<K, V> element(Slot slot) {
+						return (Entry<K, V>) (Entry<?, ?>) slot;
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the hash code of this PersistentMap, which is cached, since
+	 * this PersistentMap never changes.
+	 * @return the hash code.
+	 */
+	@Override
+	public int hashCode() {
+		int result = hash;
+		if (result == 0) {
+			result = super.hashCode();
+			hash = result;
+		}
+		return result;
+	}
+
+}
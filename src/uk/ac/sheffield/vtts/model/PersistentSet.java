@@ -0,0 +1,183 @@
+/**
+ * Broker@Cloud Verification and Testing Tool Suite.
+ * Copyright (C) 2015 Anthony J H Simons and Raluca Lefticaru, 
+ * University of Sheffield, UK.  All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This file is "foreground software", developed as an output of 
+ * the European Union collaborative research project, "Broker@Cloud: 
+ * enabling continuous quality assurance and optimization in future 
+ * enterprise cloud service brokers", FP7-ICT-2011-8 no. 318392, and
+ * is licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or 
+ * implied.  See the License for the specific language governing 
+ * permissions and limitations under the License.
+ * 
+ * The freedoms granted by the License to incorporate, redistribute,
+ * modify or extend the software apply only to "foreground software"
+ * contributed by the Broker@Cloud project; and not to any proprietary 
+ * software, or "background software" incorporated from other sources, 
+ * which may be offered under different terms of usage.
+ * 
+ * Please contact the Department of Computer Science, University of
+ * Sheffield, Regent Court, 211 Portobello, Sheffield S1 4DP, UK or
+ * visit www.sheffield.ac.uk/dcs if you need additional information 
+ * or have any questions.
+ */
+
+package uk.ac.sheffield.vtts.model;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * PersistentSet is an immutable Set, used as the runtime representation of
+ * Set values produced by Manipulations.  It stores its elements as the keys
+ * of a PersistentMap, so that adding or removing an element returns a new
+ * PersistentSet in O(log n) time, which shares most of its structure with
+ * the original.  The standard mutating methods of Set are unsupported.  A
+ * PersistentSet is equal to any other Set with the same elements, and has
+ * the same hash code as a HashSet with the same elements.  Like the keys
+ * of a PersistentMap, the elements are visited in insertion order, like a
+ * LinkedHashSet.
+ * 
+ * @author Anthony J H Simons
+ * @version Broker@Cloud 1.0
+ */
+public class PersistentSet<E> extends AbstractSet<E> {
+	
+	/**
+	 * The empty PersistentSet.
+	 */
+	private static final PersistentSet<Object> EMPTY = 
+			new PersistentSet<Object>(
+					PersistentMap.<Object, Boolean>empty());
+	
+	/**
+	 * The map whose keys are the elements of this PersistentSet.
+	 */
+	private final PersistentMap<E, Boolean> map;
+	
+	/**
+	 * The cached hash code of this PersistentSet, or zero.
+	 */
+	private int hash;
+	
+	/**
+	 * Creates a PersistentSet with the given map.
+	 * @param map the map whose keys are the elements.
+	 */
+	private PersistentSet(PersistentMap<E, Boolean> map) {
+		this.map = map;
+	}
+	
+	/**
+	 * Returns the empty PersistentSet.
+	 * @return the empty PersistentSet.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentSet<E> empty() {
+		return (PersistentSet<E>) EMPTY;
+	}
+	
+	/**
+	 * Returns a PersistentSet with the same elements as another Collection,
+	 * visited in the same order.  If the other Collection is already a
+	 * PersistentSet, returns this directly.
+	 * @param collection the other Collection.
+	 * @return the PersistentSet.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentSet<E> from(
+			Collection<? extends E> collection) {
+		if (collection instanceof PersistentSet)
+			return (PersistentSet<E>) collection;
+		else
+			return PersistentSet.<E>empty().plusAll(collection);
+	}
+	
+	/**
+	 * Returns a new PersistentSet for a map, or this, if the map is the same.
+	 * @param result the map of the new PersistentSet.
+	 * @return the PersistentSet.
+	 */
+	private PersistentSet<E> with(PersistentMap<E, Boolean> result) {
+		return result == map ? this : new PersistentSet<E>(result);
+	}
+	
+	/**
+	 * Returns a PersistentSet that also contains an element.
+	 * @param element the element.
+	 * @return the new PersistentSet, or this, if nothing changed.
+	 */
+	public PersistentSet<E> plus(E element) {
+		return with(map.plus(element, Boolean.TRUE));
+	}
+	
+	/**
+	 * Returns a PersistentSet that also contains every element of another
+	 * Collection.
+	 * @param collection the other Collection.
+	 * @return the new PersistentSet.
+	 */
+	public PersistentSet<E> plusAll(Collection<? extends E> collection) {
+		return with(map.plusKeys(collection, Boolean.TRUE));
+	}
+	
+	/**
+	 * Returns a PersistentSet without an element.
+	 * @param element the element.
+	 * @return the new PersistentSet, or this, if nothing changed.
+	 */
+	public PersistentSet<E> minus(Object element) {
+		return with(map.minus(element));
+	}
+	
+	/**
+	 * Returns a PersistentSet without any element of another Collection.
+	 * @param collection the other Collection.
+	 * @return the new PersistentSet.
+	 */
+	public PersistentSet<E> minusAll(Collection<?> collection) {
+		return with(map.minusKeys(collection));
+	}
+	
+	@Override
+	public int size() {
+		return map.size();
+	}
+	
+	@Override
+	public boolean contains(Object element) {
+		return map.containsKey(element);
+	}
+	
+	@Override
+	public Iterator<E> iterator() {
+		return map.keyIterator();
+	}
+	
+	/**
+	 * Returns the hash code of this PersistentSet, which is cached, since
+	 * this PersistentSet never changes.
+	 * @return the hash code.
+	 */
+	@Override
+	public int hashCode() {
+		int result = hash;
+		if (result == 0) {
+			result = super.hashCode();
+			hash = result;
+		}
+		return result;
+	}
+
+}
@@ -52,6 +52,28 @@ import java.util.List;
  * @version Broker@Cloud 1.0
  */
 public abstract class Predicate extends Function {
+	
+	/**
+	 * The PredicateTable in which this Predicate is a canonical node, or 
+	 * null, if this Predicate is not canonical.
+	 */
+	private PredicateTable table = null;
+	
+	/**
+	 * The cached hash code of this canonical Predicate, or zero, if this
+	 * has not yet been computed.
+	 */
+	private int hash = 0;
+	
+	/**
+	 * The memoised complement of this canonical Predicate.
+	 */
+	private Predicate negation = null;
+	
+	/**
+	 * The memoised normal form of this canonical Predicate.
+	 */
+	private Predicate normal = null;
 
 	/**
 	 * Creates a default Predicate.  Sets the type to "Boolean".
@@ -78,6 +100,93 @@ public abstract class Predicate extends Function {
 		return this;
 	}
 	
+	/**
+	 * Reports whether this Predicate is equal to another object.  A
+	 * canonical Predicate is only equal to another canonical Predicate from
+	 * the same PredicateTable if both are the same node; otherwise, equality
+	 * is structural, as for any Function.
+	 * @param other the other object.
+	 * @return true if both Predicates have the same name and operands.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (this == other)
+			return true;
+		else if (table != null && other instanceof Predicate &&
+				((Predicate) other).table == table)
+			return false;
+		else
+			return super.equals(other);
+	}
+	
+	/**
+	 * Returns a quasi-unique hash code for this Predicate.  The hash code is
+	 * structural, as for any Function, but is cached by a canonical node,
+	 * whose structure may not change.
+	 * @return the hash code for this Predicate.
+	 */
+	@Override
+	public int hashCode() {
+		if (table == null)
+			return super.hashCode();
+		if (hash == 0)
+			hash = super.hashCode();
+		return hash;
+	}
+	
+	/**
+	 * Adds an expression as an operand to this Predicate.  A canonical
+	 * Predicate may not be modified, since it is shared.
+	 * @param expression the operand expression.
+	 * @return this Predicate.
+	 */
+	@Override
+	public Predicate addExpression(Expression expression) {
+		if (table != null)
+			semanticError("is canonical and may not be modified.");
+		return (Predicate) super.addExpression(expression);
+	}
+	
+	/**
+	 * Returns the PredicateTable in which this Predicate is a canonical
+	 * node.
+	 * @return the PredicateTable, or null, if this is not canonical.
+	 */
+	protected PredicateTable table() {
+		return table;
+	}
+	
+	/**
+	 * Makes this Predicate a canonical node of a PredicateTable.  Called
+	 * only by the PredicateTable, on a fresh copy whose operand Predicates
+	 * are already canonical.
+	 * @param table the PredicateTable.
+	 * @return this Predicate.
+	 */
+	protected Predicate adopt(PredicateTable table) {
+		this.table = table;
+		return this;
+	}
+	
+	/**
+	 * Returns a Predicate of the same kind and name as this, with the given
+	 * operands.  Used by a PredicateTable to make canonical copies.
+	 * @param operands the operands of the copy.
+	 * @return the copied Predicate.
+	 */
+	protected abstract Predicate copy(List<Expression> operands);
+	
+	/**
+	 * Returns the canonical form of a Predicate derived from this Predicate.
+	 * If this Predicate is canonical, interns the derived Predicate in the
+	 * same PredicateTable; otherwise returns the derived Predicate.
+	 * @param derived the derived Predicate.
+	 * @return the canonical or the original derived Predicate.
+	 */
+	protected Predicate canonical(Predicate derived) {
+		return table == null ? derived : table.intern(derived);
+	}
+	
 	/**
 	 * Evaluates this Predicate.  The result of evaluating any Predicate is
 	 * always going to be a Boolean, rather than an Object type.  Overrides
@@ -109,25 +218,53 @@ public abstract class Predicate extends Function {
 	}
 
 	/**
-	 * Returns the complement of this Predicate.  By default, returns the
+	 * Returns the complement of this Predicate.  Constructs the complement
+	 * afresh, unless this Predicate is canonical, in which case returns the
+	 * memoised canonical complement.
+	 * @return the complement of this Predicate.
+	 */
+	public Predicate negate() {
+		if (table == null)
+			return complement();
+		if (negation == null)
+			negation = table.intern(complement());
+		return negation;
+	}
+	
+	/**
+	 * Constructs the complement of this Predicate.  By default, returns the
 	 * constructed Proposition not(X) wrapping this Predicate X.  Subclasses
 	 * may have more specific and direct ways of expressing the complement, 
 	 * such as reversing an inequality.
 	 * @return the complement of this Predicate.
 	 */
-	public Predicate negate() {
+	protected Predicate complement() {
 		Predicate result = new Proposition("not");
 		result.addExpression(this);
 		return result;
 	}
 	
 	/**
-	 * Returns this Predicate in normal form.  By default, returns this
+	 * Returns this Predicate in normal form.  Constructs the normal form
+	 * afresh, unless this Predicate is canonical, in which case returns the
+	 * memoised canonical normal form.
+	 * @return the normalised form of this Predicate.
+	 */
+	public Predicate normalise() {
+		if (table == null)
+			return normalForm();
+		if (normal == null)
+			normal = table.intern(normalForm());
+		return normal;
+	}
+	
+	/**
+	 * Constructs this Predicate in normal form.  By default, returns this
 	 * Predicate unchanged.  In the Proposition subclass, simplifies the
 	 * logical operators within a Proposition tree. 
 	 * @return the normalised form of this Predicate.
 	 */
-	public Predicate normalise() {
+	protected Predicate normalForm() {
 		return this;
 	}
 
@@ -144,7 +281,21 @@ public abstract class Predicate extends Function {
 	}
 
 	/**
-	 * Tests whether this Predicate subsumes the other Predicate.  Determines
+	 * Tests whether this Predicate subsumes the other Predicate.  If both
+	 * are canonical nodes of the same PredicateTable, consults the table's
+	 * cache of subsumption results; otherwise decides afresh.
+	 * @param other the other Predicate.
+	 * @return true if this is more general than the other.
+	 */
+	public boolean subsumes(Predicate other) {
+		if (table == null || other.table != table)
+			return decideSubsumes(other);
+		else
+			return table.subsumes(this, other);
+	}
+	
+	/**
+	 * Decides whether this Predicate subsumes the other Predicate.  Determines
 	 * whether this Predicate is more general than the other Predicate, by a
 	 * process of symbolic evaluation.  Each of Comparison, Membership and 
 	 * Proposition uses a different subsumption algorithm.  This is used when
@@ -153,7 +304,7 @@ public abstract class Predicate extends Function {
 	 * @param other the other Predicate.
 	 * @return true if this is more general than the other.
 	 */
-	public abstract boolean subsumes(Predicate other);
+	protected abstract boolean decideSubsumes(Predicate other);
 	
 	/**
 	 * Tests whether this Predicate subsumes the other Proposition.  This is
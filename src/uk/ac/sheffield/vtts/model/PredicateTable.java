@@ -0,0 +1,239 @@
+/**
+ * Broker@Cloud Verification and Testing Tool Suite.
+ * Copyright (C) 2015 Anthony J H Simons and Raluca Lefticaru, 
+ * University of Sheffield, UK.  All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This file is "foreground software", developed as an output of 
+ * the European Union collaborative research project, "Broker@Cloud: 
+ * enabling continuous quality assurance and optimization in future 
+ * enterprise cloud service brokers", FP7-ICT-2011-8 no. 318392, and
+ * is licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or 
+ * implied.  See the License for the specific language governing 
+ * permissions and limitations under the License.
+ * 
+ * The freedoms granted by the License to incorporate, redistribute,
+ * modify or extend the software apply only to "foreground software"
+ * contributed by the Broker@Cloud project; and not to any proprietary 
+ * software, or "background software" incorporated from other sources, 
+ * which may be offered under different terms of usage.
+ * 
+ * Please contact the Department of Computer Science, University of
+ * Sheffield, Regent Court, 211 Portobello, Sheffield S1 4DP, UK or
+ * visit www.sheffield.ac.uk/dcs if you need additional information 
+ * or have any questions.
+ */
+
+
+package uk.ac.sheffield.vtts.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * PredicateTable is a hash-consing factory for Predicates.  It interns each
+ * Predicate as a canonical node, such that structurally equal Predicates of
+ * the same kind are represented by the same node.  The operand Predicates 
+ * of a canonical node are themselves canonical, so a canonical Predicate is
+ * a node in a directed acyclic graph of shared sub-terms.  Other operand
+ * Expressions, such as Parameters, are shared with the interned Predicate.
+ * <p>
+ * A canonical node caches its hash code, and is only equal to another node
+ * from the same table if both are the same node.  A canonical node also
+ * memoises its negation, normal form and (for Comparisons) its reversal, 
+ * each of which is interned in the same table.  Canonical nodes may not be
+ * modified.
+ * <p>
+ * A PredicateTable also caches the results of testing whether one of its
+ * canonical nodes subsumes another, keyed by the identity of both nodes.
+ * The cache is bounded, discarding the least recently used results, and
+ * counts its hits and misses.
+ * <p>
+ * A PredicateTable is not synchronized, and is intended to be confined to
+ * a single analysis, such as checking the completeness of one Operation,
+ * whose Parameters are not shared with any other thread.  A table must not
+ * be shared by different Operations:  a canonical node keeps the operand
+ * Parameters of the first Predicate interned, and Parameters are equal by
+ * name, so an Input of one Operation would stand for the Input of the same
+ * name of another Operation.
+ * 
+ * @author Anthony J H Simons
+ * @version Broker@Cloud 1.0
+ */
+public class PredicateTable {
+	
+	/**
+	 * The maximum number of subsumption results held in the cache.
+	 */
+	public static final int CACHE_LIMIT = 65536;
+	
+	/**
+	 * The canonical nodes, indexed first by kind, then by structure.
+	 */
+	private Map<Class<?>, Map<Predicate, Predicate>> nodes;
+	
+	/**
+	 * The cached subsumption results, in least recently used order.
+	 */
+	private Map<Subsumption, Boolean> cache;
+	
+	/**
+	 * The number of subsumption tests answered from the cache.
+	 */
+	private int hits = 0;
+	
+	/**
+	 * The number of subsumption tests decided afresh.
+	 */
+	private int misses = 0;
+	
+	/**
+	 * Subsumption is the key of a cached subsumption result.  It pairs the
+	 * formal and actual canonical nodes, which are compared by identity.
+	 */
+	private static class Subsumption {
+		
+		/**
+		 * The subsuming node.
+		 */
+		private final Predicate formal;
+		
+		/**
+		 * The subsumed node.
+		 */
+		private final Predicate actual;
+		
+		/**
+		 * Creates the key for a subsumption test.
+		 * @param formal the subsuming node.
+		 * @param actual the subsumed node.
+		 */
+		public Subsumption(Predicate formal, Predicate actual) {
+			this.formal = formal;
+			this.actual = actual;
+		}
+		
+		/**
+		 * Reports whether this key pairs the same nodes as another key.
+		 * @param other the other object.
+		 * @return true if both keys pair identical nodes.
+		 */
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof Subsumption) {
+				Subsumption key = (Subsumption) other;
+				return formal == key.formal && actual == key.actual;
+			}
+			else
+				return false;
+		}
+		
+		/**
+		 * Returns a hash code combining the cached node hash codes.
+		 * @return the hash code for this key.
+		 */
+		@Override
+		public int hashCode() {
+			return formal.hashCode() * 31 + actual.hashCode();
+		}
+	}
+	
+	/**
+	 * Creates an empty PredicateTable.
+	 */
+	public PredicateTable() {
+		nodes = new HashMap<Class<?>, Map<Predicate, Predicate>>();
+		cache = new LinkedHashMap<Subsumption, Boolean>(256, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Subsumption, Boolean> eldest) {
+				return size() > CACHE_LIMIT;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the canonical node for a Predicate.  If the Predicate is 
+	 * already a canonical node in this table, returns it unchanged.  
+	 * Otherwise, interns its operand Predicates, then looks up a node of the
+	 * same kind with the same name and canonical operands.  If none exists,
+	 * a copy of the Predicate is made canonical and stored.  The Predicate
+	 * itself is never modified.
+	 * @param predicate the Predicate to intern.
+	 * @return the canonical node.
+	 */
+	public Predicate intern(Predicate predicate) {
+		if (predicate.table() == this)
+			return predicate;
+		List<Expression> operands = new ArrayList<Expression>();
+		for (Expression operand : predicate.getExpressions()) {
+			if (operand instanceof Predicate)
+				operands.add(intern((Predicate) operand));
+			else
+				operands.add(operand);
+		}
+		Predicate candidate = predicate.copy(operands);
+		Map<Predicate, Predicate> kind = nodes.get(candidate.getClass());
+		if (kind == null) {
+			kind = new HashMap<Predicate, Predicate>();
+			nodes.put(candidate.getClass(), kind);
+		}
+		Predicate node = kind.get(candidate);
+		if (node == null) {
+			node = candidate.adopt(this);
+			kind.put(node, node);
+		}
+		return node;
+	}
+	
+	/**
+	 * Tests whether one canonical node subsumes another.  Returns the cached
+	 * result, if the same nodes were tested before; otherwise decides the
+	 * result and caches it.
+	 * @param formal the subsuming node.
+	 * @param actual the subsumed node.
+	 * @return true if the formal node subsumes the actual node.
+	 */
+	public boolean subsumes(Predicate formal, Predicate actual) {
+		Subsumption key = new Subsumption(formal, actual);
+		Boolean result = cache.get(key);
+		if (result != null) {
+			++hits;
+			return result;
+		}
+		++misses;
+		result = formal.decideSubsumes(actual);
+		cache.put(key, result);
+		return result;
+	}
+	
+	/**
+	 * Returns the number of subsumption tests answered from the cache.
+	 * @return the number of cache hits.
+	 */
+	public int getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Returns the number of subsumption tests decided afresh.
+	 * @return the number of cache misses.
+	 */
+	public int getMisses() {
+		return misses;
+	}
+
+}
@@ -0,0 +1,250 @@
+/**
+ * Broker@Cloud Verification and Testing Tool Suite.
+ * Copyright (C) 2015 Anthony J H Simons and Raluca Lefticaru, 
+ * University of Sheffield, UK.  All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This file is "foreground software", developed as an output of 
+ * the European Union collaborative research project, "Broker@Cloud: 
+ * enabling continuous quality assurance and optimization in future 
+ * enterprise cloud service brokers", FP7-ICT-2011-8 no. 318392, and
+ * is licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or 
+ * implied.  See the License for the specific language governing 
+ * permissions and limitations under the License.
+ * 
+ * The freedoms granted by the License to incorporate, redistribute,
+ * modify or extend the software apply only to "foreground software"
+ * contributed by the Broker@Cloud project; and not to any proprietary 
+ * software, or "background software" incorporated from other sources, 
+ * which may be offered under different terms of usage.
+ * 
+ * Please contact the Department of Computer Science, University of
+ * Sheffield, Regent Court, 211 Portobello, Sheffield S1 4DP, UK or
+ * visit www.sheffield.ac.uk/dcs if you need additional information 
+ * or have any questions.
+ */
+
+
+package uk.ac.sheffield.vtts.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PrefixTree represents a Language as a tree of shared Sequence prefixes.
+ * Each node of a PrefixTree stands for one distinct prefix of the Sequences
+ * in the Language, and each branch extends that prefix by a single Event.
+ * The root node stands for the empty Sequence.  A PrefixTree is used during
+ * test generation, so that each distinct prefix is simulated only once,
+ * after which the simulation is extended by one Event for each branch,
+ * rather than replaying every Sequence from the empty prefix.  Each node
+ * may record the TestStep that was generated by simulating its last Event,
+ * or null, if the Event was infeasible in the simulated context; and the
+ * Checkpoint of the simulation after this TestStep, from which branches may
+ * be simulated on demand, when they are first added.
+ * 
+ * @author Anthony J H Simons
+ * @version Broker@Cloud 1.0
+ */
+public class PrefixTree extends Element {
+	
+	/**
+	 * The Event that extends the parent prefix to reach this node; or null,
+	 * if this is the root node, standing for the empty Sequence.
+	 */
+	private Event event;
+	
+	/**
+	 * The TestStep generated by simulating the Event at this node; or null,
+	 * if the Event was infeasible, or has not yet been simulated.
+	 */
+	private TestStep testStep;
+	
+	/**
+	 * The Checkpoint of the simulation after the TestStep at this node; or
+	 * null, if the simulation cannot be extended from this node.
+	 */
+	private Checkpoint checkpoint;
+	
+	/**
+	 * The branches of this node, indexed by the Event that extends the
+	 * prefix at this node.  This field remains null until the first branch
+	 * is added, since most nodes in a PrefixTree are leaf nodes.
+	 */
+	private Map<Event, PrefixTree> branches = null;
+	
+	/**
+	 * Creates the root node of a PrefixTree, standing for the empty prefix.
+	 */
+	public PrefixTree() {
+	}
+	
+	/**
+	 * Creates a branch node of a PrefixTree, reached by the given Event.
+	 * @param event the Event extending the parent prefix.
+	 */
+	public PrefixTree(Event event) {
+		this.event = event;
+	}
+	
+	/**
+	 * Creates the PrefixTree for a Language.  Adds every Sequence of the
+	 * Language to a new root node, sharing the nodes of common prefixes.
+	 * @param language the Language.
+	 * @return the root node of the PrefixTree.
+	 */
+	public static PrefixTree createPrefixTree(Language language) {
+		PrefixTree result = new PrefixTree();
+		for (Sequence sequence : language.getSequences()) {
+			result.addSequence(sequence);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the Event that extends the parent prefix to reach this node.
+	 * @return the Event, or null if this is the root node.
+	 */
+	public Event getEvent() {
+		return event;
+	}
+	
+	/**
+	 * Adds a Sequence to this PrefixTree.  Follows the existing branches for
+	 * the longest shared prefix of the Sequence, then creates a new branch
+	 * for each remaining Event of the Sequence.
+	 * @param sequence the Sequence to add.
+	 * @return this PrefixTree.
+	 */
+	public PrefixTree addSequence(Sequence sequence) {
+		PrefixTree node = this;
+		for (Event event : sequence.getEvents()) {
+			node = node.addBranch(event);
+		}
+		return this;
+	}
+	
+	/**
+	 * Adds a branch to this node for the given Event, if none exists yet.
+	 * @param event the Event extending the prefix at this node.
+	 * @return the branch node reached by the Event.
+	 */
+	public PrefixTree addBranch(Event event) {
+		if (branches == null)
+			branches = new LinkedHashMap<Event, PrefixTree>();
+		PrefixTree branch = branches.get(event);
+		if (branch == null) {
+			branch = new PrefixTree(event);
+			branches.put(event, branch);
+		}
+		return branch;
+	}
+	
+	/**
+	 * Removes the branch of this node for the given Event, releasing the
+	 * subtree below it.  The TestStep and Checkpoint of this node are kept,
+	 * so that the branch may be simulated again on demand.
+	 * @param event the Event extending the prefix at this node.
+	 * @return this PrefixTree.
+	 */
+	public PrefixTree removeBranch(Event event) {
+		if (branches != null) {
+			branches.remove(event);
+			if (branches.isEmpty())
+				branches = null;
+		}
+		return this;
+	}
+	
+	/**
+	 * Returns the branch of this node reached by the given Event.
+	 * @param event the Event extending the prefix at this node.
+	 * @return the branch node, or null if no such branch exists.
+	 */
+	public PrefixTree getBranch(Event event) {
+		if (branches == null)
+			return null;
+		else
+			return branches.get(event);
+	}
+	
+	/**
+	 * Returns the branches of this node, in the order they were added.
+	 * @return the collection of branch nodes, which may be empty.
+	 */
+	public Collection<PrefixTree> getBranches() {
+		if (branches == null)
+			return Collections.emptySet();
+		else
+			return branches.values();
+	}
+	
+	/**
+	 * Reports whether this node is a leaf, having no branches.
+	 * @return true, if this node has no branches.
+	 */
+	public boolean isLeaf() {
+		return branches == null;
+	}
+	
+	/**
+	 * Returns the size of this PrefixTree.  Counts this node and all of the
+	 * nodes in its branches, recursively.
+	 * @return the number of distinct prefixes, including the empty prefix.
+	 */
+	public int size() {
+		int count = 1;
+		for (PrefixTree branch : getBranches()) {
+			count += branch.size();
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the TestStep generated by simulating the Event at this node.
+	 * @return the TestStep, or null if the Event was infeasible.
+	 */
+	public TestStep getTestStep() {
+		return testStep;
+	}
+	
+	/**
+	 * Sets the TestStep generated by simulating the Event at this node.
+	 * @param testStep the TestStep, or null if the Event was infeasible.
+	 * @return this PrefixTree.
+	 */
+	public PrefixTree setTestStep(TestStep testStep) {
+		this.testStep = testStep;
+		return this;
+	}
+	
+	/**
+	 * Returns the Checkpoint of the simulation after the TestStep at this
+	 * node, from which the simulation may be extended to further branches.
+	 * @return the Checkpoint, or null if this node cannot be extended.
+	 */
+	public Checkpoint getCheckpoint() {
+		return checkpoint;
+	}
+	
+	/**
+	 * Sets the Checkpoint of the simulation after the TestStep at this node.
+	 * @param checkpoint the Checkpoint, or null.
+	 * @return this PrefixTree.
+	 */
+	public PrefixTree setCheckpoint(Checkpoint checkpoint) {
+		this.checkpoint = checkpoint;
+		return this;
+	}
+
+}
@@ -37,6 +37,9 @@ package uk.ac.sheffield.vtts.model;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.Map.Entry;
 
+import uk.ac.sheffield.vtts.ground.TypeDescriptor;
+import uk.ac.sheffield.vtts.ground.TypeDescriptor.Kind;
+
 /**
  * Projection represents a function creating, or projecting from, a tuple.
  * There are three projection operators, whose names are:  pair, first and 
@@ -64,6 +67,52 @@ public class Projection extends Function {
 	 */
 	private String valueType;
 	
+	/**
+	 * The operator codes of a Projection, in the order of the legal operator
+	 * names.  Used for dispatching by the compiled Evaluator.
+	 */
+	private static final int PAIR = 0, FIRST = 1, SECOND = 2;
+	
+	/**
+	 * ProjectionEvaluator represents the compiled form of a Projection, whose
+	 * operator is fixed.
+	 */
+	private class ProjectionEvaluator extends Evaluator {
+		
+		/**
+		 * The operator code.
+		 */
+		private final int operator = operatorCode("pair", "first", "second");
+		
+		/**
+		 * The first operand.
+		 */
+		private final Expression first = operand(0);
+		
+		/**
+		 * The second operand of a pair construction, or null.
+		 */
+		private final Expression second = 
+				(operator == PAIR ? operand(1) : null);
+		
+		/**
+		 * Evaluates the compiled Projection.
+		 * @return a new pair, or one projection of a pair.
+		 */
+		@Override
+		public Object evaluate() {
+			Object value0 = first.evaluate();
+			switch (operator) {
+			case PAIR:
+				return pair(value0, second.evaluate());
+			case FIRST:
+				return first(value0);
+			default:  // SECOND
+				return second(value0);
+			}
+		}
+	}
+	
 	/**
 	 * Checks the name of this Projection expression and sets the number
 	 * of operands to one for a projection and two for a pair construction.
@@ -94,10 +143,11 @@ public class Projection extends Function {
 			pairType = getType();
 		else
 			pairType = operand(0).getType();
-		keyType = factory.getKeyType(pairType);
-		valueType = factory.getValueType(pairType);
-		if (! factory.getBaseType(pairType).equals("Pair"))
+		TypeDescriptor descriptor = factory.getDescriptor(pairType);
+		if (descriptor.getKind() != Kind.PAIR)
 			semanticError("has an illegal pair-type '" + pairType + "'.");
+		keyType = descriptor.getKeyType();
+		valueType = descriptor.getValueType();
 		if (name.equals("pair")) {
 			String op0Type = operand(0).getType();
 			if (! op0Type.equals(keyType))
@@ -174,21 +224,22 @@ public class Projection extends Function {
 	}
 
 	/**
-	 * Evaluates this Projection expression.  Dispatches internally on the
-	 * name of the operator to one of the pair-operations.
+	 * Creates the compiled form of this Projection expression.
+	 * @return the Evaluator for this Projection.
+	 */
+	@Override
+	protected Evaluator createEvaluator() {
+		return new ProjectionEvaluator();
+	}
+
+	/**
+	 * Evaluates this Projection expression.  Delegates to the compiled form
+	 * of this Projection, in which the operator was fixed when it was first
+	 * compiled.
 	 */
 	@Override
 	public Object evaluate() {
-		typeCheck();
-		Object value0 = operand(0).evaluate();
-		if (name.equals("pair")) {
-			Object value1 = operand(1).evaluate();
-			return pair(value0, value1);
-		}
-		else if (name.equals("first"))
-			return first(value0);
-		else
-			return second(value0);
+		return getEvaluator().evaluate();
 	}
 	
 	/**
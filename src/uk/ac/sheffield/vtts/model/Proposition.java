@@ -35,8 +35,11 @@
 package uk.ac.sheffield.vtts.model;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
 /**
@@ -54,6 +57,64 @@ import java.util.List;
  */
 public class Proposition extends Predicate {
 	
+	/**
+	 * The operator codes of a Proposition, in the order of the legal operator
+	 * names.  Used for dispatching by the compiled Evaluator.
+	 */
+	private static final int NOT = 0, OR = 1, AND = 2, IMPLIES = 3, 
+			EQUALS = 4;
+	
+	/**
+	 * PropositionEvaluator represents the compiled form of a Proposition,
+	 * whose operator and operand Predicates are fixed.
+	 */
+	private class PropositionEvaluator extends Evaluator {
+		
+		/**
+		 * The operator code.
+		 */
+		private final int operator = 
+				operatorCode("not", "or", "and", "implies", "equals");
+		
+		/**
+		 * The operands, as Predicates.
+		 */
+		private final Predicate[] predicates = 
+				getPredicates().toArray(new Predicate[0]);
+		
+		/**
+		 * Evaluates the compiled Proposition.  Evaluates the operands of
+		 * AND, OR lazily.
+		 * @return true or false.
+		 */
+		@Override
+		public Boolean evaluate() {
+			switch (operator) {
+			case NOT:
+				return ! predicates[0].evaluate();
+			case AND:
+				for (Predicate predicate : predicates) {
+					if (! predicate.evaluate())
+						return false;
+				}
+				return true;
+			case OR:
+				for (Predicate predicate : predicates) {
+					if (predicate.evaluate())
+						return true;
+				}
+				return false;
+			default:
+				boolean val0 = predicates[0].evaluate();
+				boolean val1 = predicates[1].evaluate();
+				if (operator == EQUALS)
+					return val0 == val1;
+				else  // IMPLIES
+					return !val0 || val1;
+			}
+		}
+	}
+	
 	/**
 	 * Validates the name of a logical Proposition and sets the expected
 	 * number of operands.  All Boolean operators expect two operands,
@@ -102,9 +163,24 @@ public class Proposition extends Predicate {
 		super(name);
 	}
 	
+	/**
+	 * Returns a copy of this Proposition, with the given operands.
+	 * @param operands the operands of the copy.
+	 * @return the copied Proposition.
+	 */
+	@Override
+	protected Proposition copy(List<Expression> operands) {
+		Proposition result = new Proposition(name);
+		for (Expression operand : operands) {
+			result.addExpression(operand);
+		}
+		return result;
+	}
+	
 	/**
 	 * Returns one of the operand Predicates at an index.  Converts the
 	 * Expression to a Predicate, to enable recursive Predicate processing.
+	 * If this Proposition is canonical, so is the wrapped Parameter.
 	 * @param index the index.
 	 * @return the indexed operand, as a Predicate.
 	 */
@@ -113,7 +189,7 @@ public class Proposition extends Predicate {
 		if (expr instanceof Predicate)
 			return (Predicate) expr;
 		else if (expr instanceof Parameter)
-			return new Atomic((Parameter) expr);
+			return canonical(new Atomic((Parameter) expr));
 		else {
 			semanticError("has an illegal operand: " + expr);
 			return null;
@@ -125,8 +201,9 @@ public class Proposition extends Predicate {
 	 * Converts the Expression operands of this Proposition into a list of
 	 * Predicates.  Each operand is either already some kind of Predicate,
 	 * or it is some kind of Parameter, in which case it is wrapped as an
-	 * Atomic predicate.  This method is used when treating Boolean-valued
-	 * expressions uniformly as predicates.
+	 * Atomic predicate, which is canonical if this Proposition is canonical.
+	 * This method is used when treating Boolean-valued expressions uniformly
+	 * as predicates.
 	 * @return the list of operands as a list of Predicates.
 	 */
 	public List<Predicate> getPredicates() {
@@ -135,19 +212,30 @@ public class Proposition extends Predicate {
 			if (expr instanceof Predicate)
 				result.add((Predicate) expr);
 			else if (expr instanceof Parameter)
-				result.add(new Atomic((Parameter) expr));
+				result.add(canonical(new Atomic((Parameter) expr)));
 			else
 				semanticError("contains a non-predicate: " + expr);
 		}
 		return result;
 	}
 	
+	/**
+	 * Returns this Proposition in normal form, as a term dominated by AND,
+	 * OR or NOT.  The normal form is memoised if this is canonical.
+	 * @return the normalised form of this Proposition.
+	 */
+	@Override
+	public Proposition normalise() {
+		return (Proposition) super.normalise();
+	}
+	
 	/**
 	 * Converts this Proposition into a term dominated by AND, OR or NOT.
 	 * Eliminates the operators "implies" and "equals" by logical conversion.
 	 * @return the normalised form of this Proposition.
 	 */
-	public Proposition normalise() {
+	@Override
+	protected Proposition normalForm() {
 		if (name.equals("implies")) {
 			Proposition result = new Proposition("or");
 			result.addExpression(operand(0).negate().normalise());
@@ -203,11 +291,11 @@ public class Proposition extends Predicate {
 	 * Checks the consistency of a set of conjuncts.  Determines whether it
 	 * is possible to bind the ground variables in a set of conjuncts to any
 	 * values, for which the conjuncts are simultaneously satisfiable.  Does
-	 * this by computing all permutations of the conjuncts, then attempting
-	 * to bind the ground variables in each permutation, until at least one 
-	 * permutation succeeds in being bound, and is also satisfiable.  If no
-	 * permutations can be satisfied, returns false.  If binding fails for
-	 * any reason, returns true (the fail-safe assumption).
+	 * this by a backtracking search, which binds the conjuncts in different
+	 * orders, until some order succeeds in binding every conjunct, such that
+	 * all of them are satisfied.  If no order can be satisfied, returns 
+	 * false.  If binding fails for any reason, returns true (the fail-safe
+	 * assumption).  Finally unbinds all the conjuncts.
 	 * @param predicates the list of conjuncts.
 	 * @return true, if the conjuncts are simultaneously satisfiable.
 	 */
@@ -215,74 +303,283 @@ public class Proposition extends Predicate {
 		//DEBUG
 		//System.out.println("Inside satisfyAll(predicates) ...");
 		//System.out.println("   with: " + this);
-		List<List<Predicate>> permutations = permute(predicates);
-		for (List<Predicate> arrangement : permutations) {
-			boolean succeed = true;  // until proven false
-			for (Predicate predicate : arrangement) {
-				try {
-					//DEBUG
-					//System.out.println("      binding: " + predicate);
-					predicate.rebind();  			// try to rebind
-					succeed = predicate.evaluate(); // try to evaluate
-					//DEBUG
-					//System.out.print(succeed?"      succeeded":"      failed");
-					//for (Expression expr : predicate.getExpressions()) {
-					//	System.out.print(", " + expr.evaluate());
-					//}
-					//System.out.println();
-				}
-				catch (NullPointerException ex) {
-					// FAILSAFE - handle null returns from map lookups.
-					break;  // assume pred consistent, in the worst-case.
+		Solver solver = new Solver(predicates);
+		boolean succeed = solver.solve();
+		for (Predicate predicate : predicates) {
+			predicate.unbind();  // CLEANUP - unbind all parameters.
+		}
+		//DEBUG
+		//System.out.println(succeed ? "   consistent!" : "   not consistent!");
+		return succeed;
+	}
+	
+	/**
+	 * Solver represents the backtracking search for an order of binding a
+	 * set of conjuncts, in which every conjunct is satisfied.  Each conjunct
+	 * is bound heuristically by rebind(), which may bind its unbound operands
+	 * differently, depending on the operands bound by earlier conjuncts.  
+	 * Rather than trying every permutation of the conjuncts, the Solver:
+	 * <ul>
+	 * <li>splits the conjuncts into independent groups, which share no 
+	 * assignable Parameters, and solves each group separately;</li>
+	 * <li>propagates bindings forward, by testing at once every conjunct
+	 * whose operands are already bound, since no later binding can change
+	 * its outcome;</li>
+	 * <li>prunes every order that extends a failed partial assignment;</li>
+	 * <li>tries first the conjuncts with the fewest unbound operands.</li>
+	 * </ul>
+	 * Any NullPointerException raised while binding or evaluating a conjunct
+	 * is treated as success, the fail-safe assumption.
+	 */
+	private static class Solver {
+		
+		/**
+		 * The conjuncts to satisfy.
+		 */
+		private final Predicate[] conjuncts;
+		
+		/**
+		 * The distinct assignable Parameters appearing in each conjunct.
+		 */
+		private final Parameter[][] operands;
+		
+		/**
+		 * The distinct assignable Parameters appearing in any conjunct.
+		 */
+		private final Parameter[] parameters;
+		
+		/**
+		 * Flags marking the conjuncts that are satisfied in the current 
+		 * partial assignment.
+		 */
+		private final boolean[] done;
+		
+		/**
+		 * Flag set to true if binding raised the fail-safe assumption.
+		 */
+		private boolean failsafe = false;
+		
+		/**
+		 * Creates a Solver for a list of conjuncts.  Collects the assignable
+		 * Parameters appearing in each conjunct.
+		 * @param predicates the list of conjuncts.
+		 */
+		public Solver(List<Predicate> predicates) {
+			conjuncts = predicates.toArray(new Predicate[predicates.size()]);
+			operands = new Parameter[conjuncts.length][];
+			done = new boolean[conjuncts.length];
+			Set<Parameter> all = new LinkedHashSet<Parameter>();
+			for (int i = 0; i < conjuncts.length; ++i) {
+				Set<Parameter> found = new LinkedHashSet<Parameter>();
+				collect(conjuncts[i], found);
+				operands[i] = found.toArray(new Parameter[found.size()]);
+				all.addAll(found);
+			}
+			parameters = all.toArray(new Parameter[all.size()]);
+		}
+		
+		/**
+		 * Collects the assignable Parameters appearing in an Expression.
+		 * @param expression the Expression.
+		 * @param found the set of Parameters found so far.
+		 */
+		private void collect(Expression expression, Set<Parameter> found) {
+			if (expression instanceof Parameter) {
+				Parameter parameter = (Parameter) expression;
+				if (parameter.isAssignable())
+					found.add(parameter);
+			}
+			else if (expression instanceof Function) {
+				for (Expression operand : 
+						((Function) expression).getExpressions())
+					collect(operand, found);
+			}
+		}
+		
+		/**
+		 * Decides whether the conjuncts are simultaneously satisfiable.  
+		 * Starting with all the conjuncts unbound, partitions the conjuncts
+		 * into groups linked by shared Parameters, then searches for an 
+		 * order that satisfies each group.  Every group must be satisfied,
+		 * unless some group raises the fail-safe assumption.
+		 * @return true, if the conjuncts are simultaneously satisfiable.
+		 */
+		public boolean solve() {
+			for (Predicate conjunct : conjuncts)
+				conjunct.unbind();
+			boolean succeed = true;
+			for (int[] group : groups()) {
+				if (! search(group, group.length))
+					succeed = false;  // Continue, in case of fail-safe.
+				if (failsafe)
+					return true;
+			}
+			return succeed;
+		}
+		
+		/**
+		 * Partitions the conjuncts into independent groups.  Conjuncts that
+		 * share an assignable Parameter belong to the same group.  Groups
+		 * are returned in the order of their first conjunct.
+		 * @return the groups, as arrays of conjunct indices.
+		 */
+		private List<int[]> groups() {
+			int[] leader = new int[conjuncts.length];
+			Map<Parameter, Integer> owner = new HashMap<Parameter, Integer>();
+			for (int i = 0; i < conjuncts.length; ++i) {
+				leader[i] = i;
+				for (Parameter parameter : operands[i]) {
+					Integer other = owner.get(parameter);
+					if (other == null)
+						owner.put(parameter, i);
+					else {
+						int root = find(leader, other);
+						int self = find(leader, i);
+						leader[Math.max(root, self)] = Math.min(root, self);
+					}
 				}
-				if (! succeed) {
-					break;  // Forget rest of preds; this pred = false.
+			}
+			List<int[]> result = new ArrayList<int[]>();
+			for (int i = 0; i < conjuncts.length; ++i) {
+				if (find(leader, i) == i) {
+					int size = 0;
+					for (int j = i; j < conjuncts.length; ++j)
+						if (find(leader, j) == i)
+							++size;
+					int[] group = new int[size];
+					size = 0;
+					for (int j = i; j < conjuncts.length; ++j)
+						if (find(leader, j) == i)
+							group[size++] = j;
+					result.add(group);
 				}
 			}
-			for (Predicate predicate : arrangement) {
-				predicate.unbind();  // CLEANUP - unbind all parameters.
+			return result;
+		}
+		
+		/**
+		 * Finds the leading conjunct of the group containing a conjunct.
+		 * @param leader the table of leading conjuncts.
+		 * @param index the index of the conjunct.
+		 * @return the index of the leading conjunct.
+		 */
+		private int find(int[] leader, int index) {
+			while (leader[index] != index)
+				index = leader[index] = leader[leader[index]];
+			return index;
+		}
+		
+		/**
+		 * Attempts to satisfy a conjunct.  Rebinds its unbound operands, then
+		 * evaluates it.  An undefined expression raises the fail-safe 
+		 * assumption, which is reported as success.
+		 * @param index the index of the conjunct.
+		 * @return true, if the conjunct was satisfied.
+		 */
+		private boolean attempt(int index) {
+			try {
+				conjuncts[index].rebind();
+				return conjuncts[index].evaluate();
 			}
-			if (succeed) {
-				//DEBUG
-				//System.out.println("   consistent!");
-				return true;  // Forget rest of perms; this perm = true.
+			catch (NullPointerException ex) {
+				// FAILSAFE - handle null returns from map lookups.
+				failsafe = true;
+				return true;  // assume pred consistent, in the worst-case.
 			}
 		}
-		//DEBUG
-		//System.out.println("   not consistent!");
-		return false;  // Bound every perm; none were satisfiable.
-	}
-					
-	/**
-	 * Computes all permutations of a list of Predicates.  The output is a
-	 * list of lists, in which the Predicates from the input list are arranged
-	 * in all possible orders.  This is used when attempting to bind a set of
-	 * Predicates, in which the order of binding may result in different value
-	 * assignments.  Notionally, at least one order of binding should succeed,
-	 * if the Predicates are simultaneously satisfiable.
-	 * @param input a list of Predicates.
-	 * @return all permutations of this list.
-	 */
-	private List<List<Predicate>> permute(List<Predicate> input) {
-		List<List<Predicate>> output = new ArrayList<List<Predicate>>();
-		if (input.isEmpty()) {
-			output.add(Collections.<Predicate> emptyList());
-			return output;
+		
+		/**
+		 * Counts the unbound operands of a conjunct.
+		 * @param index the index of the conjunct.
+		 * @return the number of unbound assignable Parameters.
+		 */
+		private int unbound(int index) {
+			int count = 0;
+			for (Parameter parameter : operands[index])
+				if (! parameter.isBound())
+					++count;
+			return count;
 		}
-		else {
-			for (Predicate predicate : input) {
-				List<Predicate> rest = new ArrayList<Predicate>(input);
-				rest.remove(predicate);
-				for (List<Predicate> oldList : permute(rest)) {
-					List<Predicate> newList = new ArrayList<Predicate>(oldList);
-					newList.add(predicate);
-					output.add(newList);
+		
+		/**
+		 * Searches for an order that satisfies the rest of a group.  First
+		 * tests every remaining conjunct whose operands are all bound, and 
+		 * fails if any is unsatisfied.  Then tries to satisfy each other 
+		 * remaining conjunct next, fewest unbound operands first, searching
+		 * recursively from each successful partial assignment, and restoring
+		 * the bindings before trying the next.
+		 * @param group the indices of the conjuncts in the group.
+		 * @param remaining the number of unsatisfied conjuncts in the group.
+		 * @return true, if the rest of the group could be satisfied.
+		 */
+		private boolean search(int[] group, int remaining) {
+			int[] settled = new int[remaining];
+			int count = 0;
+			boolean succeed = true;
+			for (int index : group) {
+				if (! done[index] && unbound(index) == 0) {
+					settled[count++] = index;
+					done[index] = true;
+					if (! attempt(index)) {
+						succeed = false;
+						break;
+					}
 				}
 			}
+			remaining -= count;
+			if (succeed && remaining > 0 && ! failsafe)
+				succeed = branch(group, remaining);
+			for (int i = 0; i < count; ++i)
+				done[settled[i]] = false;
+			return succeed || failsafe;
+		}
+		
+		/**
+		 * Tries to satisfy each unsatisfied conjunct of a group next, then 
+		 * searches recursively.  Saves the bindings of all Parameters first,
+		 * so that they may be restored after each unsuccessful branch.
+		 * @param group the indices of the conjuncts in the group.
+		 * @param remaining the number of unsatisfied conjuncts in the group.
+		 * @return true, if the rest of the group could be satisfied.
+		 */
+		private boolean branch(int[] group, int remaining) {
+			boolean[] bound = new boolean[parameters.length];
+			Object[] values = new Object[parameters.length];
+			for (int i = 0; i < parameters.length; ++i) {
+				bound[i] = parameters[i].bound;
+				values[i] = parameters[i].assignedValue();
+			}
+			int[] order = new int[remaining];
+			int[] weight = new int[remaining];
+			int size = 0;
+			for (int index : group) {
+				if (! done[index]) {
+					// Insertion sort, fewest unbound operands first
+					int cost = unbound(index);
+					int at = size++;
+					while (at > 0 && weight[at - 1] > cost) {
+						order[at] = order[at - 1];
+						weight[at] = weight[at - 1];
+						--at;
+					}
+					order[at] = index;
+					weight[at] = cost;
+				}
+			}
+			for (int index : order) {
+				done[index] = true;
+				boolean succeed = attempt(index) && 
+						(failsafe || search(group, remaining - 1));
+				done[index] = false;
+				if (succeed)
+					return true;
+				for (int i = 0; i < parameters.length; ++i)
+					parameters[i].restore(bound[i], values[i]);
+			}
+			return false;
 		}
-		return output;
 	}
-	
+					
 	/**
 	 * Tests whether this Proposition subsumes another Predicate.  Checks 
 	 * whether this Proposition is in normal form, dominated by AND, OR, or
@@ -298,7 +595,8 @@ public class Proposition extends Predicate {
 	 * regression.
 	 * @return true, if this Proposition subsumes the other Predicate.
 	 */
-	public boolean subsumes(Predicate other) {
+	@Override
+	protected boolean decideSubsumes(Predicate other) {
 		String thisName = getName();
 		if (thisName.equals("equals") || thisName.equals("implies"))
 			return normalise().subsumes(other);
@@ -429,7 +727,8 @@ public class Proposition extends Predicate {
 	 * NOT(Y)), AND(Y, NOT(X))).
 	 * @return the negation, or complement of this logical Proposition.
 	 */
-	public Predicate negate() {
+	@Override
+	protected Predicate complement() {
 		String thisName = getName();
 		if (thisName.equals("equals") || thisName.equals("implies"))
 			return normalise().negate();
@@ -476,39 +775,24 @@ public class Proposition extends Predicate {
 		return result;
 	}
 
+	/**
+	 * Creates the compiled form of this Proposition.
+	 * @return the Evaluator for this Proposition.
+	 */
+	@Override
+	protected Evaluator createEvaluator() {
+		return new PropositionEvaluator();
+	}
+
 	/**
 	 * Executes this Proposition on its operands.  Expects one operand for a
 	 * negation, two operands for implies or equals, and two or more operands
-	 * otherwise (for and, or).  Branches according to the name of the
-	 * operation, and evaluates operands AND, OR lazily.
+	 * otherwise (for and, or).  Delegates to the compiled form of this 
+	 * Proposition, in which the operation was fixed when it was first
+	 * compiled, and which evaluates operands AND, OR lazily.
 	 */
 	public Boolean evaluate() {
-		typeCheck();
-		if (name.equals("not")) {
-			return ! operand(0).evaluate();
-		}
-		else if (name.equals("and")) {
-			for (Predicate predicate : getPredicates()) {
-				if (! predicate.evaluate())
-					return false;
-			}
-			return true;
-		}
-		else if (name.equals("or")) {
-			for (Predicate predicate : getPredicates()) {
-				if (predicate.evaluate())
-					return true;
-			}
-			return false;
-		}
-		else {
-			boolean val0 = operand(0).evaluate();
-			boolean val1 = operand(1).evaluate();
-			if (name.equals("equals"))
-				return val0 == val1;
-			else  // name.equals("implies")
-				return !val0 || val1;
-		}
+		return (Boolean) getEvaluator().evaluate();
 	}
 
 	/**
@@ -34,10 +34,19 @@
 
 package uk.ac.sheffield.vtts.model;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Protocol is a model of the abstract behaviour of a software service.
@@ -122,7 +131,9 @@ public class Protocol extends Annotated {
 	 * of the global and local Parameters (Input, Output, or Variable) that
 	 * are referenced within each Scenario, such that all references point
 	 * to declared Parameters, whether global Variables in Memory, or local
-	 * Inputs and Outputs declared in the Operation.
+	 * Inputs and Outputs declared in the Operation.  The expressions in each
+	 * Scenario are not compiled here, but on their first evaluation, so that
+	 * any type errors are still reported when an expression is evaluated.
 	 * @param operation the Operation to add.
 	 * @return this Protocol.
 	 */
@@ -236,6 +247,24 @@ public class Protocol extends Annotated {
 		return operation.fireEvent(event);
 	}
 	
+	/**
+	 * Tries to fire an event on this Protocol.  Selects the Operation named
+	 * by the supplied Event's request-name, and tries to fire the event on
+	 * that Operation.  This tests the corresponding Scenario only once, in
+	 * the current Memory state.  If the Scenario is enabled, returns it as
+	 * a token, such that calling commit() on the token completes the firing
+	 * of the Event.  This is equivalent to accept(event), followed by 
+	 * fireEvent(event), but evaluates the Binding and guard only once.
+	 * @param event an Event.
+	 * @return the enabled Scenario, or null, if the Event was refused.
+	 */
+	public Scenario tryFire(Event event) {
+		Operation operation = operations.get(event.requestName());
+		if (operation == null) 
+			semanticError("has no Operation named '" + event.requestName() + "'.");
+		return operation.tryFire(event);
+	}
+	
 	/**
 	 * Verifies this Protocol for formal consistency and completeness.
 	 * Checks for correspondence between the Scenarios in the Protocol and 
@@ -247,6 +276,26 @@ public class Protocol extends Annotated {
 	 * @return the annotated Protocol.
 	 */
 	public Protocol verifyProtocol(Machine machine) {
+		return verifyProtocol(machine, new ArrayList<Protocol>());
+	}
+	
+	/**
+	 * Verifies this Protocol for formal consistency and completeness, using
+	 * replicas of this Protocol to check the Operations concurrently.  Has
+	 * the same effect as verifyProtocol(machine), producing the same report.
+	 * If no replicas are supplied, checks each Operation in turn; otherwise
+	 * checks the Operations concurrently, using one thread per replica. 
+	 * <p>
+	 * Each Operation is checked with its own PredicateTable, which caches
+	 * the subsumption tests between its partitions.  The report ends with
+	 * the hits and misses of these caches, summed in the declared order of
+	 * the Operations, so these counts are also the same, however many 
+	 * replicas are used.
+	 * @param machine the associated Machine, for comparison.
+	 * @param replicas independent replicas of this Protocol.
+	 * @return the annotated Protocol.
+	 */
+	protected Protocol verifyProtocol(Machine machine, List<Protocol> replicas) {
 		String name = getName() == null ? "unnamed" : getName();
 		Notice topInfo = 
 				new Notice("Verification report for protocol: " + name);
@@ -255,12 +304,151 @@ public class Protocol extends Annotated {
 		Alphabet events = machine.getAlphabet();
 		checkDifference(topInfo, events.subtract(actions));
 		getMemory().checkCompleteness(topInfo);
-		for (Operation operation : getOperations()) {
-			operation.checkCompleteness(topInfo);
+		if (replicas.isEmpty()) {
+			int hits = 0;
+			int misses = 0;
+			for (Operation operation : getOperations()) {
+				PredicateTable table = new PredicateTable();
+				operation.checkCompleteness(topInfo, table);
+				hits += table.getHits();
+				misses += table.getMisses();
+			}
+			checkSubsumptions(topInfo, hits, misses);
 		}
+		else
+			checkConcurrently(topInfo, replicas);
 		return this;
 	}
 	
+	/**
+	 * Reports the total hits and misses of the subsumption caches used to
+	 * check the Operations of this Protocol, if any tests were made.
+	 * @param topInfo the top-level Notice.
+	 * @param hits the number of subsumption tests answered from a cache.
+	 * @param misses the number of subsumption tests decided afresh.
+	 */
+	private void checkSubsumptions(Notice topInfo, int hits, int misses) {
+		if (hits + misses > 0)
+			topInfo.addNotice(new Analysis("Subsumption cache: " + 
+					hits + " hits, " + misses + " misses"));
+	}
+	
+	/**
+	 * OperationCheck represents the task of checking one Operation of this
+	 * Protocol for completeness, using a replica of this Protocol.  The task
+	 * borrows an idle replica, checks the replica's copy of the Operation,
+	 * in isolation from all other tasks, then returns the replica.  It holds
+	 * the Notices reported by the check, and the PredicateTable used by the
+	 * check, until these can be attached to this Protocol in the declared
+	 * order of the Operations.
+	 */
+	private static class OperationCheck implements Callable<OperationCheck> {
+		
+		/**
+		 * The name of the Operation to check.
+		 */
+		private final String name;
+		
+		/**
+		 * The queue of idle replicas of this Protocol.
+		 */
+		private final BlockingQueue<Protocol> idle;
+		
+		/**
+		 * The PredicateTable used to check the Operation.
+		 */
+		private final PredicateTable table = new PredicateTable();
+		
+		/**
+		 * The holder for the Notices reported to the top-level Notice.
+		 */
+		private final Notice topInfo = new Notice();
+		
+		/**
+		 * The Notice attached to the checked copy of the Operation.
+		 */
+		private Notice opInfo = null;
+		
+		/**
+		 * Creates a task to check the named Operation.
+		 * @param name the name of the Operation.
+		 * @param idle the queue of idle replicas of this Protocol.
+		 */
+		public OperationCheck(String name, BlockingQueue<Protocol> idle) {
+			this.name = name;
+			this.idle = idle;
+		}
+		
+		/**
+		 * Checks the replica's copy of the Operation for completeness.
+		 * @return this OperationCheck, holding the reported Notices.
+		 * @throws InterruptedException if interrupted waiting for a replica.
+		 */
+		@Override
+		public OperationCheck call() throws InterruptedException {
+			Protocol replica = idle.take();
+			try {
+				Operation operation = replica.getOperation(name);
+				operation.checkCompleteness(topInfo, table);
+				opInfo = operation.getNotice();
+				return this;
+			}
+			finally {
+				idle.add(replica);
+			}
+		}
+	}
+	
+	/**
+	 * Checks the Operations of this Protocol for completeness concurrently.
+	 * Submits one OperationCheck for each Operation, then collects their
+	 * results in the declared order of the Operations, attaching to each
+	 * Operation the Notice reported for its copy, and adding to the top-level
+	 * Notice any further Notices reported by the check.  Sums the hits and
+	 * misses of the PredicateTable of each check in the same order.  Rethrows
+	 * any SemanticError raised during the check.
+	 * @param topInfo the top-level Notice.
+	 * @param replicas independent replicas of this Protocol.
+	 */
+	private void checkConcurrently(Notice topInfo, List<Protocol> replicas) {
+		BlockingQueue<Protocol> idle = 
+				new ArrayBlockingQueue<Protocol>(replicas.size(), false, replicas);
+		ExecutorService executor = Executors.newFixedThreadPool(replicas.size());
+		List<Future<OperationCheck>> pending = 
+				new ArrayList<Future<OperationCheck>>();
+		for (Operation operation : getOperations()) {
+			pending.add(executor.submit(
+					new OperationCheck(operation.getName(), idle)));
+		}
+		try {
+			int hits = 0;
+			int misses = 0;
+			for (Future<OperationCheck> future : pending) {
+				OperationCheck check = future.get();
+				getOperation(check.name).addNotice(check.opInfo);
+				if (check.topInfo.getNotices() != null) {
+					for (Notice notice : check.topInfo.getNotices())
+						topInfo.addNotice(notice);
+				}
+				hits += check.table.getHits();
+				misses += check.table.getMisses();
+			}
+			checkSubsumptions(topInfo, hits, misses);
+		}
+		catch (InterruptedException ex) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			semanticError("was interrupted while verifying operations.");
+		}
+		catch (ExecutionException ex) {
+			executor.shutdownNow();
+			if (ex.getCause() instanceof Error)
+				throw (Error) ex.getCause();
+			semanticError("failed to verify operations: " + ex.getCause());
+		}
+		executor.shutdown();
+	}
+	
 	/**
 	 * Checks the difference between the Machine alphabet and the Protocol 
 	 * alphabet.  If the Machine alphabet contains more events, creates a
@@ -62,6 +62,18 @@ public class Scenario extends Event {
 	 */
 	private Effect effect;
 	
+	/**
+	 * The bytecode form of this Scenario; a volatile variable.  Null, unless
+	 * compiled by the optional ScenarioCompiler backend.
+	 */
+	private CompiledScenario compiled = null;
+	
+	/**
+	 * Flag set to true once this Scenario has been compiled, since it last
+	 * resolved its Parameter references; a volatile variable.
+	 */
+	private boolean ready = false;
+	
 	/**
 	 * Creates a default Scenario.
 	 */
@@ -155,6 +167,8 @@ public class Scenario extends Event {
 	 * @return this Scenario.
 	 */
 	public Scenario resolve(Scope scope) {
+		compiled = null;  // Must be compiled again
+		ready = false;
 		if (binding != null)
 			binding.resolve(scope);
 		if (condition != null) 
@@ -164,15 +178,54 @@ public class Scenario extends Event {
 		return this;
 	}
 	
+	/**
+	 * Compiles this Scenario, after it has resolved its Parameter references.
+	 * Delegates to the initial Binding, guard Condition and final Effect, 
+	 * where present, which compile their expressions into pre-dispatched
+	 * evaluators, such that type checking is performed only once.  If the
+	 * bytecode backend is enabled, also compiles this Scenario to a JVM
+	 * class, which is then used in preference to the interpreter.
+	 * @return this Scenario.
+	 */
+	public Scenario compile() {
+		ready = true;
+		if (binding != null)
+			binding.compile();
+		if (condition != null) 
+			condition.compile();
+		if (effect != null)
+			effect.compile();
+		if (ScenarioCompiler.isEnabled())
+			compiled = ScenarioCompiler.compile(this);
+		return this;
+	}
+	
+	/**
+	 * Returns the bytecode form of this Scenario.  If the bytecode backend
+	 * is enabled, compiles this Scenario when it is first used, such that
+	 * any type errors are reported when it is first evaluated.  Otherwise,
+	 * each expression is compiled on its own first evaluation.
+	 * @return the bytecode form, or null, if this Scenario is interpreted.
+	 */
+	private CompiledScenario getCompiled() {
+		if (! ready && ScenarioCompiler.isEnabled())
+			compile();
+		return compiled;
+	}
+	
 	/**
 	 * Reports whether this Scenario is enabled in the current Memory state.
 	 * If a Binding is provided, binds any Inputs.  If a Condition is 
 	 * provided, tests the guard Condition, which may refer to Inputs and 
 	 * Variables from the Memory.  If the guard Condition is satisfied,
-	 * returns true.
+	 * returns true.  Delegates to the bytecode form of this Scenario, if
+	 * this was compiled.
 	 * @return true, if this Scenario is enabled.
 	 */
 	public boolean isEnabled() {
+		CompiledScenario bytecode = getCompiled();
+		if (bytecode != null)
+			return bytecode.isEnabled();
 		if (binding != null)
 			binding.execute();
 		if (condition != null) {
@@ -182,6 +235,25 @@ public class Scenario extends Event {
 			return true;  // by default
 	}
 	
+	/**
+	 * Commits this Scenario, after it was found to be enabled.  Executes the
+	 * Effect, if one is provided, without binding the Inputs or testing the
+	 * guard Condition again.  The Scenario returned by a successful tryFire()
+	 * on its Operation, or Protocol, serves as a token for this commitment.
+	 * Delegates to the bytecode form of this Scenario, if this was compiled.
+	 * @return this Scenario.
+	 */
+	public Scenario commit() {
+		//DEBUG
+		//System.out.println("Executing scenario: " + name);
+		CompiledScenario bytecode = getCompiled();
+		if (bytecode != null)
+			bytecode.effect();
+		else if (effect != null)  // Could be a Scenario with no effect
+			effect.execute();
+		return this;
+	}
+	
 	/**
 	 * Conditionally executes this Scenario.  If a Binding is provided, binds
 	 * any Inputs.  If a Condition is provided, tests the guard Condition,
@@ -191,10 +263,7 @@ public class Scenario extends Event {
 	 */
 	public boolean execute() {
 		if (isEnabled()) {
-			//DEBUG
-			//System.out.println("Executing scenario: " + name);
-			if (effect != null)  // Could be a Scenario with no effect
-				effect.execute();
+			commit();
 			return true;
 		}
 		else
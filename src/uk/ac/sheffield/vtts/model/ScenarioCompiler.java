@@ -0,0 +1,633 @@
+/**
+ * Broker@Cloud Verification and Testing Tool Suite.
+ * Copyright (C) 2015 Anthony J H Simons and Raluca Lefticaru, 
+ * University of Sheffield, UK.  All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This file is "foreground software", developed as an output of 
+ * the European Union collaborative research project, "Broker@Cloud: 
+ * enabling continuous quality assurance and optimization in future 
+ * enterprise cloud service brokers", FP7-ICT-2011-8 no. 318392, and
+ * is licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or 
+ * implied.  See the License for the specific language governing 
+ * permissions and limitations under the License.
+ * 
+ * The freedoms granted by the License to incorporate, redistribute,
+ * modify or extend the software apply only to "foreground software"
+ * contributed by the Broker@Cloud project; and not to any proprietary 
+ * software, or "background software" incorporated from other sources, 
+ * which may be offered under different terms of usage.
+ * 
+ * Please contact the Department of Computer Science, University of
+ * Sheffield, Regent Court, 211 Portobello, Sheffield S1 4DP, UK or
+ * visit www.sheffield.ac.uk/dcs if you need additional information 
+ * or have any questions.
+ */
+
+package uk.ac.sheffield.vtts.model;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * ScenarioCompiler is an optional backend that compiles a Scenario to a
+ * JVM class.  The generated class is a subclass of CompiledScenario, whose
+ * methods execute the initial Binding, evaluate the guard Condition and 
+ * execute the final Effect of the Scenario as straight-line bytecode.  The
+ * backend is enabled by setting the system property "vtts.bytecode" to
+ * true; otherwise, Scenarios are evaluated by the tree interpreter.
+ * <p>
+ * Arithmetic over Integer, Long, Float and Double values, ordered 
+ * Comparisons over Integer and Long values, equality Comparisons over any
+ * values, Propositions and simple Assignments are compiled inline, keeping
+ * intermediate values unboxed on the operand stack; the generated methods
+ * use no local variables.  Each Parameter or Expression is loaded from the
+ * table of nodes held by the generated class, and numeric Parameters are
+ * read and written by calling their unboxed int, long and double accessor
+ * methods.  Any other Expression is compiled as a call to its own 
+ * evaluate() method, such that the tree interpreter remains the fallback
+ * for every construct that is not compiled inline.  The compiled code 
+ * evaluates operands in the same order as the interpreter, and raises the
+ * same exceptions.  The program BenchmarkScenarios, in the separate bench
+ * source directory, compares the speed of this backend with the tree
+ * interpreter.
+ * 
+ * @author Anthony J H Simons
+ * @version Broker@Cloud 1.0
+ */
+public class ScenarioCompiler implements Opcodes {
+	
+	/**
+	 * Flag indicating whether the bytecode backend is enabled.  Volatile,
+	 * since it may be set while other threads are evaluating Scenarios.
+	 */
+	private static volatile boolean enabled = 
+			Boolean.getBoolean("vtts.bytecode");
+	
+	/**
+	 * The number of classes generated so far, used to name each class.
+	 */
+	private static int count = 0;
+	
+	/**
+	 * The value sorts of compiled Expressions.  OBJECT denotes a boxed value
+	 * and the others denote unboxed values of the corresponding JVM type.
+	 */
+	private static final int OBJECT = 0, INT = 1, LONG = 2, FLOAT = 3, 
+			DOUBLE = 4, BOOLEAN = 5;
+	
+	/**
+	 * The internal names of the box classes, indexed by value sort.
+	 */
+	private static final String[] boxes = { "java/lang/Object", 
+		"java/lang/Integer", "java/lang/Long", "java/lang/Float", 
+		"java/lang/Double", "java/lang/Boolean" };
+	
+	/**
+	 * The names of the unboxing methods, indexed by value sort.
+	 */
+	private static final String[] unboxers = { null, "intValue", 
+		"longValue", "floatValue", "doubleValue", "booleanValue" };
+	
+	/**
+	 * The JVM type descriptors, indexed by value sort.
+	 */
+	private static final String[] descriptors = { "Ljava/lang/Object;", 
+		"I", "J", "F", "D", "Z" };
+	
+	/**
+	 * The suffixes of the unboxed evaluation and assignment methods of an
+	 * Expression or Parameter, indexed by value sort, or null if none.
+	 */
+	private static final String[] suffixes = { null, "Int", "Long", null, 
+		"Double", null };
+	
+	/**
+	 * The internal name of the Expression class.
+	 */
+	private static final String EXPRESSION = 
+			"uk/ac/sheffield/vtts/model/Expression";
+	
+	/**
+	 * The internal name of the CompiledScenario class.
+	 */
+	private static final String COMPILED = 
+			"uk/ac/sheffield/vtts/model/CompiledScenario";
+	
+	/**
+	 * The internal name of the Parameter class.
+	 */
+	private static final String PARAMETER = 
+			"uk/ac/sheffield/vtts/model/Parameter";
+	
+	/**
+	 * Loader is a class loader that defines a single generated class.  Each
+	 * generated class has its own Loader, so that it may be unloaded when
+	 * its Scenario is discarded.
+	 */
+	private static class Loader extends ClassLoader {
+		
+		/**
+		 * Creates a Loader, delegating to the loader of the model classes.
+		 */
+		private Loader() {
+			super(ScenarioCompiler.class.getClassLoader());
+		}
+		
+		/**
+		 * Defines a generated class.
+		 * @param name the binary name of the class.
+		 * @param code the bytecode of the class.
+		 * @return the defined class.
+		 */
+		private Class<?> define(String name, byte[] code) {
+			return defineClass(name, code, 0, code.length);
+		}
+	}
+	
+	/**
+	 * The Expressions referenced by the generated code, by index.
+	 */
+	private List<Expression> nodes;
+	
+	/**
+	 * The index of each referenced Expression, by identity.
+	 */
+	private Map<Expression, Integer> indexes;
+	
+	/**
+	 * The internal name of the class being generated.
+	 */
+	private String className;
+	
+	/**
+	 * The visitor of the method being generated.
+	 */
+	private MethodVisitor method;
+	
+	/**
+	 * Creates a ScenarioCompiler for one generated class.
+	 * @param className the internal name of the generated class.
+	 */
+	private ScenarioCompiler(String className) {
+		this.className = className;
+		nodes = new ArrayList<Expression>();
+		indexes = new IdentityHashMap<Expression, Integer>();
+	}
+	
+	/**
+	 * Reports whether the bytecode backend is enabled.
+	 * @return true, if Scenarios should be compiled to bytecode.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Sets whether the bytecode backend is enabled.  Affects only those
+	 * Scenarios first evaluated after this setting, since a Scenario keeps
+	 * its bytecode once compiled.
+	 * @param value true or false.
+	 */
+	public static void setEnabled(boolean value) {
+		enabled = value;
+	}
+	
+	/**
+	 * Compiles a Scenario to bytecode.  Expects the Scenario to have resolved
+	 * its Parameter references and compiled its expressions.  Generates and
+	 * loads a subclass of CompiledScenario, whose instance refers to the
+	 * Parameters and uncompiled Expressions of the Scenario.  If the 
+	 * Scenario cannot be compiled for any reason, returns null, such that
+	 * the Scenario is interpreted instead.
+	 * @param scenario the Scenario to compile.
+	 * @return the CompiledScenario, or null.
+	 */
+	public static CompiledScenario compile(Scenario scenario) {
+		String className;
+		synchronized (ScenarioCompiler.class) {
+			className = COMPILED + "$" + (++count);
+		}
+		try {
+			ScenarioCompiler compiler = new ScenarioCompiler(className);
+			byte[] code = compiler.generate(scenario);
+			Class<?> generated = new Loader().define(
+					className.replace('/', '.'), code);
+			Expression[] table = 
+					compiler.nodes.toArray(new Expression[0]);
+			return (CompiledScenario) generated.getConstructor(
+					Expression[].class).newInstance((Object) table);
+		}
+		catch (Exception | LinkageError | SemanticError ex) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Generates the class for a Scenario.
+	 * @param scenario the Scenario.
+	 * @return the bytecode of the generated class.
+	 */
+	private byte[] generate(Scenario scenario) {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(V1_5, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, 
+				null, COMPILED, null);
+		writer.visitField(ACC_PRIVATE + ACC_FINAL, "nodes", 
+				"[L" + EXPRESSION + ";", null, null).visitEnd();
+		
+		method = writer.visitMethod(ACC_PUBLIC, "<init>", 
+				"([L" + EXPRESSION + ";)V", null, null);
+		method.visitCode();
+		method.visitVarInsn(ALOAD, 0);
+		method.visitMethodInsn(INVOKESPECIAL, COMPILED, "<init>", "()V");
+		method.visitVarInsn(ALOAD, 0);
+		method.visitVarInsn(ALOAD, 1);
+		method.visitFieldInsn(PUTFIELD, className, "nodes", 
+				"[L" + EXPRESSION + ";");
+		method.visitInsn(RETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+		
+		beginMethod(writer, "bind", "()V");
+		if (scenario.getBinding() != null)
+			generateBinding(scenario.getBinding());
+		method.visitInsn(RETURN);
+		endMethod();
+		
+		beginMethod(writer, "guard", "()Z");
+		if (scenario.getCondition() != null)
+			generateBoolean(scenario.getCondition().getPredicate());
+		else
+			method.visitInsn(ICONST_1);
+		method.visitInsn(IRETURN);
+		endMethod();
+		
+		beginMethod(writer, "effect", "()V");
+		if (scenario.getEffect() != null)
+			generateBinding(scenario.getEffect());
+		method.visitInsn(RETURN);
+		endMethod();
+		
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+	
+	/**
+	 * Begins the generation of a public instance method.
+	 * @param writer the ClassWriter.
+	 * @param name the name of the method.
+	 * @param descriptor the descriptor of the method.
+	 */
+	private void beginMethod(ClassWriter writer, String name, 
+			String descriptor) {
+		method = writer.visitMethod(ACC_PUBLIC, name, descriptor, null, null);
+		method.visitCode();
+	}
+	
+	/**
+	 * Ends the generation of the current method.
+	 */
+	private void endMethod() {
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+	}
+	
+	/**
+	 * Generates code to execute each Assignment of a Binding, in order.  An
+	 * Assignment of an Expression to a Parameter is compiled inline, such
+	 * that an Integer, Long or Double result of Arithmetic is assigned to the
+	 * Parameter unboxed, as in the interpreter; other Assignments (unit 
+	 * increments and decrements) are evaluated.
+	 * @param binding the Binding or Effect.
+	 */
+	private void generateBinding(Binding binding) {
+		for (Assignment assignment : binding.assignments.values()) {
+			List<Expression> operands = assignment.getExpressions();
+			if (assignment.getName().equals("equals") && 
+					operands.size() > 1) {
+				Expression source = operands.get(1);
+				int sort = sortOf(source);
+				generateNode(operands.get(0));
+				if (suffixes[sort] != null) {
+					method.visitTypeInsn(CHECKCAST, PARAMETER);
+					generateValue(source, sort);
+					method.visitMethodInsn(INVOKEVIRTUAL, PARAMETER, 
+							"assign" + suffixes[sort], 
+							"(" + descriptors[sort] + ")V");
+				}
+				else {
+					generateObject(source);
+					method.visitMethodInsn(INVOKEVIRTUAL, EXPRESSION, 
+							"assign", "(Ljava/lang/Object;)V");
+				}
+			}
+			else {
+				generateEvaluate(assignment);
+				method.visitInsn(POP);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the sort of value that an Expression yields when compiled
+	 * inline.  Returns OBJECT if the Expression is not compiled inline.
+	 * @param expression the Expression.
+	 * @return the value sort.
+	 */
+	private int sortOf(Expression expression) {
+		if (expression instanceof Arithmetic) {
+			String type = expression.getType();
+			if (type.equals("Integer"))
+				return INT;
+			else if (type.equals("Long"))
+				return LONG;
+			else if (type.equals("Float"))
+				return FLOAT;
+			else if (type.equals("Double"))
+				return DOUBLE;
+		}
+		else if (expression instanceof Comparison) {
+			String name = expression.getName();
+			if (name.equals("equals") || name.equals("notEquals"))
+				return BOOLEAN;
+			String type = ((Function) expression).operand(0).getType();
+			if (type.equals("Integer") || type.equals("Long"))
+				return BOOLEAN;
+		}
+		else if (expression instanceof Proposition || 
+				expression instanceof Atomic)
+			return BOOLEAN;
+		return OBJECT;
+	}
+	
+	/**
+	 * Generates code to push a reference to an Expression.
+	 * @param expression the Expression.
+	 */
+	private void generateNode(Expression expression) {
+		Integer index = indexes.get(expression);
+		if (index == null) {
+			index = nodes.size();
+			nodes.add(expression);
+			indexes.put(expression, index);
+		}
+		method.visitVarInsn(ALOAD, 0);
+		method.visitFieldInsn(GETFIELD, className, "nodes", 
+				"[L" + EXPRESSION + ";");
+		generateInt(index);
+		method.visitInsn(AALOAD);
+	}
+	
+	/**
+	 * Generates code to evaluate an Expression by calling its evaluate()
+	 * method, pushing the boxed result.
+	 * @param expression the Expression.
+	 */
+	private void generateEvaluate(Expression expression) {
+		generateNode(expression);
+		method.visitMethodInsn(INVOKEVIRTUAL, EXPRESSION, "evaluate", 
+				"()Ljava/lang/Object;");
+	}
+	
+	/**
+	 * Generates code to push an int constant.
+	 * @param value the int value.
+	 */
+	private void generateInt(int value) {
+		if (value <= 5)
+			method.visitInsn(ICONST_0 + value);
+		else if (value <= Byte.MAX_VALUE)
+			method.visitIntInsn(BIPUSH, value);
+		else if (value <= Short.MAX_VALUE)
+			method.visitIntInsn(SIPUSH, value);
+		else
+			method.visitLdcInsn(value);
+	}
+	
+	/**
+	 * Generates code to evaluate an Expression, pushing the boxed result.
+	 * @param expression the Expression.
+	 */
+	private void generateObject(Expression expression) {
+		int sort = sortOf(expression);
+		if (sort == OBJECT)
+			generateEvaluate(expression);
+		else {
+			generateValue(expression, sort);
+			method.visitMethodInsn(INVOKESTATIC, boxes[sort], "valueOf", 
+					"(" + descriptors[sort] + ")L" + boxes[sort] + ";");
+		}
+	}
+	
+	/**
+	 * Generates code to evaluate an Expression to an unboxed value of the
+	 * given sort.  An Expression not compiled inline is evaluated by its
+	 * unboxed evaluation method, if the sort has one; otherwise its result
+	 * is cast and unboxed, as in the interpreter.
+	 * @param expression the Expression.
+	 * @param sort the expected value sort.
+	 */
+	private void generateUnboxed(Expression expression, int sort) {
+		if (sortOf(expression) == sort)
+			generateValue(expression, sort);
+		else if (suffixes[sort] != null) {
+			generateNode(expression);
+			method.visitMethodInsn(INVOKEVIRTUAL, EXPRESSION, 
+					"evaluate" + suffixes[sort], "()" + descriptors[sort]);
+		}
+		else {
+			generateObject(expression);
+			generateUnbox(sort);
+		}
+	}
+	
+	/**
+	 * Generates code to cast and unbox the boxed value on the stack.
+	 * @param sort the value sort.
+	 */
+	private void generateUnbox(int sort) {
+		method.visitTypeInsn(CHECKCAST, boxes[sort]);
+		method.visitMethodInsn(INVOKEVIRTUAL, boxes[sort], unboxers[sort], 
+				"()" + descriptors[sort]);
+	}
+	
+	/**
+	 * Generates code to evaluate a Predicate to an unboxed boolean.
+	 * @param predicate the Predicate.
+	 */
+	private void generateBoolean(Expression predicate) {
+		generateUnboxed(predicate, BOOLEAN);
+	}
+	
+	/**
+	 * Generates code to evaluate two operands to unboxed values of the given
+	 * sort, in order.  Each operand is unboxed when it is evaluated, just as
+	 * in the interpreter.
+	 * @param first the first operand.
+	 * @param second the second operand.
+	 * @param sort the value sort.
+	 */
+	private void generateOperands(Expression first, Expression second, 
+			int sort) {
+		generateUnboxed(first, sort);
+		generateUnboxed(second, sort);
+	}
+	
+	/**
+	 * Generates code to evaluate an inline-compiled Expression, pushing its
+	 * unboxed value.
+	 * @param expression the Expression.
+	 * @param sort the value sort of the Expression.
+	 */
+	private void generateValue(Expression expression, int sort) {
+		if (expression instanceof Arithmetic)
+			generateArithmetic((Arithmetic) expression, sort);
+		else if (expression instanceof Comparison)
+			generateComparison((Comparison) expression);
+		else if (expression instanceof Proposition)
+			generateProposition((Proposition) expression);
+		else {  // Atomic
+			generateObject(((Atomic) expression).operand(0));
+			generateUnbox(BOOLEAN);
+		}
+	}
+	
+	/**
+	 * Generates code for an Arithmetic expression.  The JVM arithmetic
+	 * instructions for each sort are at fixed offsets from the int form.
+	 * @param arithmetic the Arithmetic expression.
+	 * @param sort the value sort of the Arithmetic expression.
+	 */
+	private void generateArithmetic(Arithmetic arithmetic, int sort) {
+		String name = arithmetic.getName();
+		int offset = sort - INT;
+		if (name.equals("negate")) {
+			generateUnboxed(arithmetic.operand(0), sort);
+			method.visitInsn(INEG + offset);
+			return;
+		}
+		generateOperands(arithmetic.operand(0), arithmetic.operand(1), sort);
+		if (name.equals("plus"))
+			method.visitInsn(IADD + offset);
+		else if (name.equals("minus"))
+			method.visitInsn(ISUB + offset);
+		else if (name.equals("times"))
+			method.visitInsn(IMUL + offset);
+		else if (name.equals("divide"))
+			method.visitInsn(IDIV + offset);
+		else  // modulo
+			method.visitInsn(IREM + offset);
+	}
+	
+	/**
+	 * Generates code for a Comparison.  Equality is compiled as a call to
+	 * equals() on the boxed values; the ordered comparisons are compiled as
+	 * comparisons of unboxed Integer or Long values.
+	 * @param comparison the Comparison.
+	 */
+	private void generateComparison(Comparison comparison) {
+		String name = comparison.getName();
+		Expression first = comparison.operand(0);
+		Expression second = comparison.operand(1);
+		if (name.equals("equals") || name.equals("notEquals")) {
+			generateObject(first);
+			generateObject(second);
+			method.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", 
+					"equals", "(Ljava/lang/Object;)Z");
+			if (name.equals("notEquals")) {
+				method.visitInsn(ICONST_1);
+				method.visitInsn(IXOR);
+			}
+			return;
+		}
+		int jump;
+		if (name.equals("lessThan"))
+			jump = IF_ICMPLT;
+		else if (name.equals("moreThan"))
+			jump = IF_ICMPGT;
+		else if (name.equals("notLessThan"))
+			jump = IF_ICMPGE;
+		else  // notMoreThan
+			jump = IF_ICMPLE;
+		if (first.getType().equals("Long")) {
+			generateOperands(first, second, LONG);
+			method.visitInsn(LCMP);
+			jump += IFLT - IF_ICMPLT;   // Compare the result with zero
+		}
+		else
+			generateOperands(first, second, INT);
+		generateTruth(jump);
+	}
+	
+	/**
+	 * Generates code that pushes true if the jump is taken, else false.
+	 * @param jump the conditional jump opcode.
+	 */
+	private void generateTruth(int jump) {
+		Label yes = new Label();
+		Label end = new Label();
+		method.visitJumpInsn(jump, yes);
+		method.visitInsn(ICONST_0);
+		method.visitJumpInsn(GOTO, end);
+		method.visitLabel(yes);
+		method.visitInsn(ICONST_1);
+		method.visitLabel(end);
+	}
+	
+	/**
+	 * Generates code for a Proposition.  Conjunction and disjunction are
+	 * evaluated lazily; equivalence and implication evaluate both operands.
+	 * @param proposition the Proposition.
+	 */
+	private void generateProposition(Proposition proposition) {
+		String name = proposition.getName();
+		List<Predicate> predicates = proposition.getPredicates();
+		if (name.equals("not")) {
+			generateBoolean(predicates.get(0));
+			method.visitInsn(ICONST_1);
+			method.visitInsn(IXOR);
+		}
+		else if (name.equals("and") || name.equals("or")) {
+			boolean and = name.equals("and");
+			Label exit = new Label();
+			Label end = new Label();
+			for (Predicate predicate : predicates) {
+				generateBoolean(predicate);
+				method.visitJumpInsn(and ? IFEQ : IFNE, exit);
+			}
+			method.visitInsn(and ? ICONST_1 : ICONST_0);
+			method.visitJumpInsn(GOTO, end);
+			method.visitLabel(exit);
+			method.visitInsn(and ? ICONST_0 : ICONST_1);
+			method.visitLabel(end);
+		}
+		else {
+			generateBoolean(predicates.get(0));
+			generateBoolean(predicates.get(1));
+			if (name.equals("equals"))
+				generateTruth(IF_ICMPEQ);
+			else {  // implies
+				method.visitInsn(SWAP);
+				method.visitInsn(ICONST_1);
+				method.visitInsn(IXOR);
+				method.visitInsn(IOR);
+			}
+		}
+	}
+
+}
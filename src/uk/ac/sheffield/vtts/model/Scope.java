@@ -59,6 +59,13 @@ public class Scope extends Annotated {
 	 * Variable, an Input or an Output.
 	 */
 	protected Map<String, Parameter> parameters;
+	
+	/**
+	 * The frame of Parameters in this Scope, in declaration order, such that
+	 * each Parameter occupies a fixed slot.  Created on demand, and discarded
+	 * whenever a Parameter is added.
+	 */
+	private Parameter[] frame = null;
 
 	/**
 	 * Creates an unnamed Scope.
@@ -102,9 +109,23 @@ public class Scope extends Annotated {
 	 */
 	public Scope addParameter(Parameter parameter) {
 		parameters.put(parameter.getName(), parameter);
+		frame = null;  // Must be laid out again
 		return this;
 	}
 	
+	/**
+	 * Returns the frame of Parameters in this Scope.  Each Parameter has a
+	 * fixed slot in the frame, given by its declaration order.  The frame is
+	 * laid out once and shared, so must not be modified by the caller.
+	 * @return the array of Parameters in this Scope.
+	 */
+	protected Parameter[] frame() {
+		if (frame == null)
+			frame = parameters.values().toArray(
+					new Parameter[parameters.size()]);
+		return frame;
+	}
+	
 	/**
 	 * Adds the contents of another Scope to this Scope.  This is used when
 	 * building a Scope table of all the global Memory Parameters and local
@@ -114,7 +135,7 @@ public class Scope extends Annotated {
 	 * @return this Scope.
 	 */
 	public Scope addScope(Scope scope) {
-		for (Parameter parameter : scope.getParameters())
+		for (Parameter parameter : scope.frame())
 			addParameter(parameter);
 		return this;
 	}
@@ -126,7 +147,7 @@ public class Scope extends Annotated {
 	 * @return this Scope.
 	 */
 	public Scope unbind() {
-		for (Parameter param : parameters.values()) {
+		for (Parameter param : frame()) {
 			param.unbind();
 		}
 		return this;
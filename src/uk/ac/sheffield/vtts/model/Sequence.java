@@ -34,7 +34,8 @@
 
 package uk.ac.sheffield.vtts.model;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -44,16 +45,74 @@ import java.util.List;
  * behaviour in a finite state Machine.  A collection of Sequences forms a 
  * Language.  A Sequence is equal to another Sequence if it consists of
  * the same ordered list of Events.
+ * <p>
+ * The Events are stored as a chain of immutable links, each holding one
+ * Event and referring back to the link for the previous Event.  A copy of
+ * a Sequence shares the chain of the original, and adding an Event adds a
+ * single link, so extending a copy by one Event takes constant time, even
+ * though both Sequences then share the same prefix.  Each link holds the
+ * hash code of the prefix ending at that link, computed from that of the
+ * previous link when the link is created, so that a Sequence's hash code
+ * is available in constant time.  An Event must therefore not be renamed
+ * after it has been added to a Sequence.
  * 
  * @author Anthony J H Simons
  * @version Broker@Cloud 1.0
  */
 public class Sequence extends Element {
+	
+	/**
+	 * Link represents one immutable link in the chain of Events of some
+	 * Sequences.  A Link is shared by all Sequences that have the prefix
+	 * ending at this Link.
+	 */
+	private static class Link {
+		
+		/**
+		 * The Event at this Link.
+		 */
+		private final Event event;
+		
+		/**
+		 * The Link for the previous Event, or null, if this is the first.
+		 */
+		private final Link prior;
+		
+		/**
+		 * The length of the prefix ending at this Link.
+		 */
+		private final int size;
+		
+		/**
+		 * The hash code of the prefix ending at this Link.
+		 */
+		private final int hash;
+		
+		/**
+		 * Creates a Link for an Event, following a prior Link.
+		 * @param event the Event.
+		 * @param prior the Link for the previous Event, or null.
+		 */
+		private Link(Event event, Link prior) {
+			this.event = event;
+			this.prior = prior;
+			size = (prior == null) ? 1 : prior.size + 1;
+			hash = 31 * ((prior == null) ? 1 : prior.hash) + 
+					(event == null ? 0 : event.hashCode());
+		}
+	}
 
 	/**
-	 * The sequence of events.
+	 * The last Link in the chain of events; or null, if this sequence is 
+	 * empty.
+	 */
+	private Link last;
+	
+	/**
+	 * The cached list of events; a volatile variable, which is null until
+	 * the list is requested, or after this sequence is extended.
 	 */
-	protected List<Event> events;
+	private List<Event> events;
 	
 	/**
 	 * The name of the State to be covered by this Sequence.
@@ -69,17 +128,18 @@ public class Sequence extends Element {
 	 * Creates an empty sequence.
 	 */
 	public Sequence() {
-		events = new ArrayList<Event>();
 	}
 	
 	/**
 	 * Copies another sequence.  The new sequence is a shallow copy of the
 	 * old sequence, sharing all of its events.  This constructor is used
-	 * when extending a Sequence to create longer Sequences.
+	 * when extending a Sequence to create longer Sequences.  The copy takes
+	 * constant time, since the chain of events is shared.
 	 * @param other the other sequence.
 	 */
 	public Sequence(Sequence other) {
-		events = new ArrayList<Event>(other.events);
+		last = other.last;
+		events = other.events;
 		state = other.state;
 		path = other.path;
 	}
@@ -87,7 +147,9 @@ public class Sequence extends Element {
 	/**
 	 * Reports whether this sequence is equal to another object.  True,
 	 * if the other object is a sequence consisting of the same events
-	 * ordered in the same sequence.
+	 * ordered in the same sequence.  Compares the lengths and hash codes
+	 * first, then compares the events from last to first, until reaching
+	 * a prefix shared by both sequences.
 	 * @param other the other object.
 	 * @return true, if both objects are sequences with the same events.
 	 */
@@ -95,7 +157,18 @@ public class Sequence extends Element {
 	public boolean equals(Object other) {
 		try {
 			Sequence sequence = (Sequence) other;
-			return events.equals(sequence.events);
+			if (size() != sequence.size() || 
+					hashCode() != sequence.hashCode())
+				return false;
+			Link mine = last;
+			Link theirs = sequence.last;
+			while (mine != theirs) {
+				if (! safeEquals(mine.event, theirs.event))
+					return false;
+				mine = mine.prior;
+				theirs = theirs.prior;
+			}
+			return true;
 		}
 		catch (ClassCastException ex) {
 			return false;
@@ -104,12 +177,13 @@ public class Sequence extends Element {
 	
 	/**
 	 * Returns a quasi-unique hash code for this sequence.  Returns the hash
-	 * code associated with this sequence's list of events.
+	 * code associated with this sequence's list of events, which is cached
+	 * in the chain of events once computed.
 	 * @return the hash code for this sequence.
 	 */
 	@Override
 	public int hashCode() {
-		return events.hashCode();
+		return (last == null) ? 1 : last.hash;
 	}
 	
 	/**
@@ -117,7 +191,7 @@ public class Sequence extends Element {
 	 * @return the length of this sequence.
 	 */
 	public int size() {
-		return events.size();
+		return (last == null) ? 0 : last.size;
 	}
 	
 	/**
@@ -125,39 +199,55 @@ public class Sequence extends Element {
 	 * @return true, if this Sequence is empty.
 	 */
 	public boolean isEmpty() {
-		return events.isEmpty();
+		return last == null;
 	}
 
 	/**
 	 * Adds an event to the end of this sequence.  Modifies this sequence by
-	 * adding an event to the end of this sequence's list of events.
+	 * adding an event to the end of this sequence's chain of events.  Any
+	 * other sequences sharing the chain are unaffected.
 	 * @param event a named event.
 	 * @return this sequence.
 	 */
 	public Sequence addEvent(Event event) {
-		events.add(event);
+		last = new Link(event, last);
+		events = null;
 		return this;
 	}
 	
 	/**
 	 * Concatenates another sequence onto the end of this sequence.  Modifies
 	 * this sequence by concatenating all the events from the other sequence,
-	 * in order, onto the end of this sequence's list of events.  The result
+	 * in order, onto the end of this sequence's chain of events.  The result
 	 * is a longer sequence which contains this sequence as a prefix and the
 	 * other sequence as a suffix.  The other sequence is unchanged.
 	 * @param other the other sequence.
 	 * @return this sequence.
 	 */
 	public Sequence addSequence(Sequence other) {
-		events.addAll(other.getEvents());
+		if (isEmpty()) {
+			last = other.last;  		// share the whole chain of events
+			events = other.events;
+		}
+		else {
+			for (Event event : other.getEvents())
+				addEvent(event);
+		}
 		return this;
 	}
 
 	/**
-	 * Returns the ordered list of events.
+	 * Returns the ordered list of events.  The list is created from the
+	 * chain of events when first requested, and may not be modified.
 	 * @return the list of Events.
 	 */
 	public List<Event> getEvents() {
+		if (events == null) {
+			Event[] array = new Event[size()];
+			for (Link link = last; link != null; link = link.prior)
+				array[link.size - 1] = link.event;
+			events = Collections.unmodifiableList(Arrays.asList(array));
+		}
 		return events;
 	}
 	
@@ -170,7 +260,7 @@ public class Sequence extends Element {
 		if (isEmpty())
 			return null;
 		else
-			return events.get(0);
+			return getEvents().get(0);
 	}
 
 	/**
@@ -182,7 +272,7 @@ public class Sequence extends Element {
 		if (isEmpty())
 			return null;
 		else
-			return events.get(events.size() -1);
+			return last.event;
 	}
 
 	/**
@@ -34,10 +34,20 @@
 
 package uk.ac.sheffield.vtts.model;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 
+import org.jast.ast.ASTReader;
+import org.jast.ast.ASTWriter;
+
 /**
  * Service represents a a model or specification of a software service. 
  * The model consists of two parts, a Protocol, describing the Memory and
@@ -159,11 +169,76 @@ public class Service extends Specification {
 	 * the Transitions in the Machine.  Checks that the Memory is correctly 
 	 * initialised.  Checks that each Operation is deterministic and complete
 	 * under all input and memory conditions.  Annotates the Protocol with
-	 * various Notice, Analysis and Warning nodes.
+	 * various Notice, Analysis and Warning nodes.  Checks the Operations
+	 * in a single thread.
 	 * @return the annotated Protocol.
 	 */
 	public Protocol verifyProtocol() {
-		return protocol.verifyProtocol(machine);
+		return verifyProtocol(1);
+	}
+	
+	/**
+	 * Verifies this Service's Protocol for consistency and completeness, 
+	 * using the given number of threads.  Produces the same report as 
+	 * verifyProtocol(), but checks the Operations of the Protocol 
+	 * concurrently, each in a separate replica of this Service, if several
+	 * threads were requested.
+	 * @param threads the number of threads to use.
+	 * @return the annotated Protocol.
+	 */
+	public Protocol verifyProtocol(int threads) {
+		if (threads > 1) {
+			List<Protocol> replicas = new ArrayList<Protocol>();
+			for (int index = 0; index < threads; ++index) {
+				replicas.add(replicate().getProtocol());
+			}
+			return protocol.verifyProtocol(machine, replicas);
+		}
+		else
+			return protocol.verifyProtocol(machine);
+	}
+	
+	/**
+	 * Captures a Checkpoint of the current simulated state of this Service.
+	 * The Checkpoint records the current State of the Machine and the 
+	 * bindings of every assignable Parameter in the Protocol.  Restoring the
+	 * Checkpoint later resumes the simulation from this point, which is much
+	 * cheaper than resetting this Service and replaying the Sequence that 
+	 * reached it.  Further Checkpoints of the same simulation are best taken
+	 * using Checkpoint.capture().
+	 * @return a Checkpoint of this Service.
+	 */
+	public Checkpoint checkpoint() {
+		return new Checkpoint(machine, protocol);
+	}
+	
+	/**
+	 * Creates a replica of this Service, for simulation in another thread.
+	 * Marshals this Service to XML and unmarshals the result, creating a
+	 * deep copy of the Protocol and Machine in their specified initial 
+	 * condition.  The replica shares no simulated state with this Service,
+	 * so can be simulated independently and concurrently.
+	 * @return a replica of this Service.
+	 */
+	protected Service replicate() {
+		String packageName = getClass().getPackage().getName();
+		Service replica = null;
+		try {
+			StringWriter buffer = new StringWriter();
+			ASTWriter writer = new ASTWriter(buffer, "UTF-8");
+			writer.usePackage(packageName);
+			writer.writeDocument(this);
+			writer.close();
+			ASTReader reader = 
+					new ASTReader(new StringReader(buffer.toString()), "UTF-8");
+			reader.usePackage(packageName);
+			replica = (Service) reader.readDocument();
+			reader.close();
+		}
+		catch (IOException ex) {
+			semanticError("could not be replicated: " + ex.getMessage());
+		}
+		return replica;
 	}
 	
 	/**
@@ -182,9 +257,9 @@ public class Service extends Specification {
 	 */
 	public TestSuite generateTests() {
 		Alphabet alphabet = machine.getAlphabet();
-		Language stateCover = getStateCover(alphabet);
+		Language stateCover = getStateCover(alphabet, 1);
 		Language allPaths = Language.createBoundedStar(alphabet, testDepth);
-		return generateTestSuite(stateCover.product(allPaths));
+		return generateTestSuite(stateCover.product(allPaths), 1);
 	}
 	
 	/**
@@ -204,60 +279,114 @@ public class Service extends Specification {
 	 * @return an optimised TestSuite.
 	 */
 	public TestSuite generateTests(int testDepth, boolean multiTest) {
+		return generateTests(testDepth, multiTest, 1);
+	}
+	
+	/**
+	 * Generates the TestSuite for this Service, using the given generation
+	 * parameters and the given number of threads.  Generates the same 
+	 * optimised TestSuite as generateTests(testDepth, multiTest), but uses
+	 * several threads to search for the state cover of this Service, and 
+	 * to simulate the Sequences of the test Language, each thread simulating
+	 * its own replica of this Service.
+	 * @param testDepth the maximum depth of generated test paths.
+	 * @param multiTest whether to generate multi-objective tests.
+	 * @param threads the number of threads to use.
+	 * @return an optimised TestSuite.
+	 */
+	public TestSuite generateTests(int testDepth, boolean multiTest, 
+			int threads) {
 		this.testDepth = testDepth;		// set the new testDepth
 		this.multiTest = multiTest;		// set the new multiTest
 		Alphabet alphabet = machine.getAlphabet();
-		Language stateCover = getStateCover(alphabet);
+		Language stateCover = getStateCover(alphabet, threads);
 		Language allPaths = Language.createBoundedStar(alphabet, testDepth);
-		return generateTestSuite(stateCover.product(allPaths));
+		return generateTestSuite(stateCover.product(allPaths), threads);
 	}
 
 	/**
-	 * Calculates the state cover for this Service.  This is the smallest 
-	 * Language containing the shortest Sequences that will reach every
-	 * State in this Service's Machine, via Transitions whose guard 
+	 * Calculates the state cover for this Service, using the given number
+	 * of threads.  Performs the serial search of this Service if a single
+	 * thread was requested; otherwise performs a parallel StateSearch, 
+	 * which finds the same state cover.
+	 * @param alphabet the Alphabet for this Service's Machine.
+	 * @param threads the number of threads to use.
+	 * @return the state cover Language for this Service.
+	 */
+	protected Language getStateCover(Alphabet alphabet, int threads) {
+		if (threads > 1)
+			return new StateSearch(this, threads).search(alphabet);
+		else
+			return getSerialStateCover(alphabet);
+	}
+
+	/**
+	 * Calculates the state cover for this Service, in a single thread.  This
+	 * is the smallest Language containing the shortest Sequences that will
+	 * reach every State in this Service's Machine, via Transitions whose guard 
 	 * conditions are also satisfied in this Service's Protocol.  Performs
 	 * a breadth-first search, starting with the empty Sequence, and 
 	 * extending this on each iteration with every Event from the Alphabet,
-	 * until every State has been visited once.  Times out if the search 
-	 * eventually fails to reach every State.
+	 * until every State has been visited once.  Each explored Sequence is
+	 * paired with a Checkpoint of the configuration that it reached, from
+	 * which its extensions are simulated.  Only Sequences whose last Event
+	 * fired successfully, and which reached a configuration not visited 
+	 * before, are explored further, since all other extensions would repeat 
+	 * the behaviour of some earlier Sequence.  The search ends when every 
+	 * State is found, or no unvisited configurations remain; or times out,
+	 * if the configurations of the Protocol's Memory are unbounded.
 	 * @param alphabet the Alphabet for this Service's Machine.
 	 * @return the state cover Language for this Service.
 	 */
-	protected Language getStateCover(Alphabet alphabet) {
+	protected Language getSerialStateCover(Alphabet alphabet) {
 		long timeout = System.currentTimeMillis() + TIMEOUT; // set the timeout
 		Language stateCover = new Language();
 		Set<State> toFind = machine.getStates();			// the states to find
-		List<Sequence> paths = new ArrayList<Sequence>();	// paths to explore
-		paths.add(new Sequence());							// contains empty sequence
-		while (! toFind.isEmpty() && System.currentTimeMillis() < timeout) {
-			// Explore one sequence from the search space
-			machine.reset();
-			protocol.reset();
-			Sequence sequence = paths.remove(0);
-			boolean expand = true;						// expand empty sequence
-			for (Event event : sequence.getEvents()) {
-				boolean enabled = machine.accept(event);
-				boolean triggered = protocol.accept(event);
-				if (enabled && triggered) {
-					machine.fireEvent(event);
-					protocol.fireEvent(event);
-					expand = true; 						// expand successful path
+		Set<Checkpoint> visited = new HashSet<Checkpoint>();	// configurations
+		Queue<int[]> paths = new ArrayDeque<int[]>();		// paths to explore
+		Queue<Checkpoint> reached = new ArrayDeque<Checkpoint>();  // and their ends
+		machine.index(alphabet);			// fire events by alphabet index
+		machine.reset();
+		protocol.reset();
+		Checkpoint origin = checkpoint();
+		int[] empty = new int[0];							// the empty path
+		visited.add(origin);
+		if (toFind.remove(origin.getState())) {
+			Sequence sequence = alphabet.createSequence(empty);
+			stateCover.addSequence(sequence.setState(origin.getState().getName()));
+		}
+		paths.add(empty);
+		reached.add(origin);
+		while (! toFind.isEmpty() && ! paths.isEmpty() && 
+				System.currentTimeMillis() < timeout) {
+			// Explore every extension of one path from the search space
+			int[] sequence = paths.remove();
+			Checkpoint checkpoint = reached.remove();
+			for (int index = 0; index < alphabet.size(); ++index) {
+				Event event = alphabet.getEvent(index);
+				checkpoint.restore();
+				Scenario scenario;
+				if (machine.accept(index) && 
+						(scenario = protocol.tryFire(event)) != null) {
+					machine.fireEvent(index);
+					scenario.commit();
+					Checkpoint target = checkpoint.capture();
+					if (visited.add(target)) {
+						// Expand the successful path to a new configuration
+						int[] path = Arrays.copyOf(sequence, sequence.length + 1);
+						path[sequence.length] = index;
+						State currentState = target.getState();
+						// Check if we found a new state; and if so, remember it
+						if (toFind.remove(currentState)) {
+							Sequence found = alphabet.createSequence(path);
+							stateCover.addSequence(
+									found.setState(currentState.getName()));
+						}
+						paths.add(path);
+						reached.add(target);
+					}
 				}
-				else
-					expand = false;						// prune unsuccessful path
-			}
-			// Check if we found a new state; and if so, remember the sequence
-			State currentState = machine.getCurrentState();
-			if (toFind.remove(currentState)) {
-				sequence.setState(currentState.getName());
-				stateCover.addSequence(sequence);
 			}
-			// If still searching, expand the current successful path
-			if (expand && !toFind.isEmpty())
-				for (Event event : alphabet.getEvents()) {
-					paths.add(new Sequence(sequence).addEvent(event));
-				}
 		}
 		return stateCover;
 	}
@@ -271,12 +400,20 @@ public class Service extends Specification {
 	 * by the Machine yields a negative test case; a Sequence rejected by the
 	 * Protocol is infeasible under the memory and input conditions, so is
 	 * pruned; and a Sequence containing ignored steps in the prefix is 
-	 * redundant, so is pruned.  If multi-objective tests were requested,
-	 * merges shorter tests with longer tests of which they are the prefix.
+	 * redundant, so is pruned.  Each distinct prefix of the Language is
+	 * simulated only once, by growing a PrefixTree of simulated prefixes on
+	 * demand.  A bounded product is expanded by extending each prefix only
+	 * by feasible Events, so that infeasible subtrees are counted, but never
+	 * built.  If several threads were requested, the Language is simulated 
+	 * concurrently by a TestGenerator, but the TestSuite is numbered in the
+	 * same order.  If
+	 * multi-objective tests were requested, merges shorter tests with longer
+	 * tests of which they are the prefix.
 	 * @param language the Language used to simulate this Service.
+	 * @param threads the number of threads to use.
 	 * @return the TestSuite specified by the generation parameters.
 	 */
-	protected TestSuite generateTestSuite(Language language) {
+	protected TestSuite generateTestSuite(Language language, int threads) {
 		TestSuite testSuite = new TestSuite(getName(), testDepth);
 		Notice topInfo = 
 				new Notice("Generated test suite for service: " + getName());
@@ -286,21 +423,11 @@ public class Service extends Specification {
 		int theoretical = language.size();  // Theoretical number of sequences
 		topInfo.addNotice(
 				new Analysis("Number of theoretical sequences: " + theoretical));
-		// Count 
-		int redundant = 0;
-		int infeasible = 0;
 		machine.clear();  	// Remove all traces of execution during State cover
-		for (Sequence sequence : language.getSequences()) {
-			TestSequence testSequence = generateTestSequence(sequence);
-			if (testSequence == null) 
-				++infeasible;	// No sequence generated if infeasible
-			else {
-				int priorSize = testSuite.size();
-				testSuite.addTestSequence(testSequence);
-				if (testSuite.size() == priorSize)
-					++redundant;	// Truncated sequence is redundant
-			}
-		}
+		TestGenerator generator = new TestGenerator(this, threads);
+		generator.generate(language, testSuite);
+		int infeasible = generator.getInfeasible();
+		int redundant = generator.getRedundant();
 		int actual = testSuite.size();  // Actual number of feasible sequences
 		topInfo.addNotice(
 				new Analysis("Number of infeasible sequences: " + infeasible));
@@ -327,6 +454,8 @@ public class Service extends Specification {
 	 * by the Protocol will also constitute a successful negative test of the 
 	 * infeasible Sequence.  TestSequences are truncated after the first
 	 * refusal, to avoid generating TestSequences with nullops in the prefix.
+	 * This replays the whole Sequence, after resetting the Machine and the
+	 * Protocol to their initial state.
 	 * @param sequence the Sequence of Events.
 	 * @return a TestSequence, or null.
 	 */
@@ -352,6 +481,83 @@ public class Service extends Specification {
 		return testSequence;
 	}
 	
+	/**
+	 * Starts a PrefixTree of the TestSteps simulated for each prefix of a
+	 * Language.  Resets the Machine and Protocol and records the initial
+	 * TestStep at the root of the PrefixTree, together with a Checkpoint of
+	 * the initial simulated state.  Further branches are simulated on demand,
+	 * when a Sequence first extends a prefix by a new Event.
+	 * @return the root of a new PrefixTree.
+	 */
+	protected PrefixTree generateTestSteps() {
+		machine.reset();
+		protocol.reset();
+		TestStep initialStep = new TestStep(TestStep.initialName);
+		initialStep.setState(machine.getInitialState().getName());
+		PrefixTree prefixTree = new PrefixTree();
+		prefixTree.setTestStep(initialStep);
+		prefixTree.setCheckpoint(checkpoint());
+		return prefixTree;
+	}
+	
+	/**
+	 * Extends the simulation of one prefix by one Event.  Returns the branch
+	 * of the prefix for the Event, if this was already simulated.  Otherwise,
+	 * adds the branch, restores the Checkpoint of the prefix and simulates
+	 * the Event, recording the generated TestStep in the branch.  A feasible,
+	 * unrefused branch also records a Checkpoint of its simulated state, from
+	 * which it may be extended in turn.  Branches below an infeasible or a
+	 * refused TestStep are never simulated, since every Sequence through such
+	 * a node is either infeasible, or truncated after the refusal.
+	 * @param prefix the node of a PrefixTree for the simulated prefix.
+	 * @param event the Event extending the prefix.
+	 * @return the branch node for the extended prefix.
+	 */
+	protected PrefixTree extendTestSteps(PrefixTree prefix, Event event) {
+		PrefixTree branch = prefix.getBranch(event);
+		if (branch == null) {
+			branch = prefix.addBranch(event);
+			Checkpoint checkpoint = prefix.getCheckpoint();
+			checkpoint.restore();
+			TestStep testStep = generateTestStep(event);
+			branch.setTestStep(testStep);
+			if (testStep != null && !testStep.isRefused())
+				branch.setCheckpoint(checkpoint.capture());
+		}
+		return branch;
+	}
+	
+	/**
+	 * Generates a single TestSequence from an abstract Sequence of Events,
+	 * using the TestSteps simulated for each prefix of the Sequence in a
+	 * PrefixTree.  Produces the same result as simulating the Sequence from
+	 * scratch, but only simulates those prefixes that were not simulated for
+	 * earlier Sequences.  If any prefix of the Sequence was infeasible, 
+	 * returns null.  Otherwise, copies the simulated TestSteps into a new
+	 * positive or negative TestSequence, truncated after the first refusal.
+	 * @param sequence the Sequence of Events.
+	 * @param prefixTree the PrefixTree of simulated prefixes.
+	 * @return a TestSequence, or null.
+	 */
+	protected TestSequence generateTestSequence(Sequence sequence, 
+			PrefixTree prefixTree) {
+		TestSequence testSequence = new TestSequence(sequence);
+		PrefixTree node = prefixTree;
+		testSequence.addEvent(new TestStep(node.getTestStep()));
+		for (Event event : sequence.getEvents()) {
+			node = extendTestSteps(node, event);
+			TestStep testStep = node.getTestStep();
+			if (testStep == null)  // infeasible - delete TestSequence
+				return null;
+			else
+				testSequence.addEvent(new TestStep(testStep));
+			if (testStep.isRefused())
+				break;  // truncate TestSequence after first refusal
+		}
+		testSequence.doVerify();  // assert outcome of the TestSequence
+		return testSequence;
+	}
+
 	/**
 	 * Generates a single TestStep from an abstract Event.  If the Event is
 	 * accepted both by the Protocol and the Machine, fires the event and
@@ -368,11 +574,12 @@ public class Service extends Specification {
 		Operation operation = protocol.getOperation(event);
 		TestStep testCase = new TestStep(event.getName());
 		boolean enabled = machine.accept(event);
-		boolean triggered = protocol.accept(event);
+		Scenario scenario = protocol.tryFire(event);
+		boolean triggered = (scenario != null);
 		if (triggered && enabled) {
 			// Protocol and Machine both accept the event.
 			machine.fireEvent(event);
-			protocol.fireEvent(event);
+			scenario.commit();
 			testCase.recordInputs(operation);
 			testCase.recordResults(operation);  // Return any valid outputs
 		}
@@ -60,6 +60,12 @@ public class State extends Coverable {
 	 * The set of labelled Transitions exiting this State.
 	 */
 	private Map<String, Transition> transitions;
+	
+	/**
+	 * The exit Transitions, indexed by the Events of an Alphabet; a volatile
+	 * variable, which is null until this State is indexed.
+	 */
+	private Transition[] indexed;
 
 	/**
 	 * Creates a default state.
@@ -163,6 +169,31 @@ public class State extends Coverable {
 	public Transition getEnabled(Event event) {
 		return transitions.get(event.getName());
 	}
+	
+	/**
+	 * Indexes the exit Transitions of this State by the Events of an
+	 * Alphabet.  After this, the Transition matching each Event may be
+	 * found directly from the Event's index in the Alphabet.
+	 * @param alphabet the Alphabet.
+	 * @return this State.
+	 */
+	protected State index(Alphabet alphabet) {
+		indexed = new Transition[alphabet.size()];
+		for (int index = 0; index < indexed.length; ++index) {
+			indexed[index] = getEnabled(alphabet.getEvent(index));
+		}
+		return this;
+	}
+	
+	/**
+	 * Returns the exit Transition matching an Event, given the index of the
+	 * Event in the Alphabet by which this State was last indexed.
+	 * @param event the index of the Event.
+	 * @return the Transition matching the Event, or null.
+	 */
+	public Transition getEnabled(int event) {
+		return indexed[event];
+	}
 
 	/**
 	 * Takes a snapshot of this State, without its dependent Transitions.
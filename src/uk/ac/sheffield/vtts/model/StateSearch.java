@@ -0,0 +1,435 @@
+/**
+ * Broker@Cloud Verification and Testing Tool Suite.
+ * Copyright (C) 2015 Anthony J H Simons and Raluca Lefticaru, 
+ * University of Sheffield, UK.  All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This file is "foreground software", developed as an output of 
+ * the European Union collaborative research project, "Broker@Cloud: 
+ * enabling continuous quality assurance and optimization in future 
+ * enterprise cloud service brokers", FP7-ICT-2011-8 no. 318392, and
+ * is licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or 
+ * implied.  See the License for the specific language governing 
+ * permissions and limitations under the License.
+ * 
+ * The freedoms granted by the License to incorporate, redistribute,
+ * modify or extend the software apply only to "foreground software"
+ * contributed by the Broker@Cloud project; and not to any proprietary 
+ * software, or "background software" incorporated from other sources, 
+ * which may be offered under different terms of usage.
+ * 
+ * Please contact the Department of Computer Science, University of
+ * Sheffield, Regent Court, 211 Portobello, Sheffield S1 4DP, UK or
+ * visit www.sheffield.ac.uk/dcs if you need additional information 
+ * or have any questions.
+ */
+
+
+package uk.ac.sheffield.vtts.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * StateSearch represents a parallel search for the state cover of a Service.
+ * The state cover is the smallest Language containing the shortest Sequence
+ * that reaches each State of the Service's Machine, via Transitions whose
+ * guard conditions are also satisfied in the Service's Protocol.  The search
+ * space is split into branches, one for each first Event of the Alphabet,
+ * which are explored breadth-first by the worker threads of a ForkJoinPool.
+ * Each worker simulates the Sequences of its branch on its own replica of
+ * the Service, since simulation modifies the Machine and Protocol.
+ * <p>
+ * The workers share a concurrent table recording, for each State, the rank
+ * of the best Sequence found so far, where shorter Sequences rank before
+ * longer ones, and Sequences of equal length rank in the order of their
+ * first Event.  A worker stops as soon as its branch can no longer improve
+ * on the table, which happens at the latest when every State is covered by
+ * Sequences shorter than those it is about to explore.  Since every branch
+ * is explored in the same order as the serial search, the chosen Sequence
+ * for each State is always the same, whatever the number of threads, and
+ * is the same Sequence that the serial search would choose.
+ * 
+ * @author Anthony J H Simons
+ * @version Broker@Cloud 1.0
+ */
+public class StateSearch extends Element {
+	
+	/**
+	 * The Service whose state cover is sought.
+	 */
+	private Service service;
+	
+	/**
+	 * The number of worker threads to use.
+	 */
+	private int threads;
+	
+	/**
+	 * The Alphabet of the Machine, which indexes its Events.
+	 */
+	private Alphabet alphabet;
+	
+	/**
+	 * The names of the States to find, in order.
+	 */
+	private Set<String> toFind;
+	
+	/**
+	 * The name of the initial State.
+	 */
+	private String initial;
+	
+	/**
+	 * The replicas of the Service available to workers.
+	 */
+	private BlockingQueue<Service> replicas;
+	
+	/**
+	 * The rank of the best Sequence found for each State, indexed by the
+	 * name of the State, shared by all workers.
+	 */
+	private ConcurrentMap<String, Long> ranks;
+	
+	/**
+	 * The covering Sequences found by all workers.
+	 */
+	private Queue<Cover> covers;
+	
+	/**
+	 * The time at which the search gives up.
+	 */
+	private long timeout;
+	
+	/**
+	 * Cover represents a Sequence that covers a State, found by the search.
+	 * A Cover records the branch in which the Sequence was found, and the
+	 * order in which it was found within that branch, so that all Covers
+	 * may be sorted into the order in which the serial search finds them.
+	 */
+	private static class Cover implements Comparable<Cover> {
+		
+		/**
+		 * The covering Sequence, labelled with the covered State.
+		 */
+		private Sequence sequence;
+		
+		/**
+		 * The index of the branch, or -1 for the empty Sequence.
+		 */
+		private int branch;
+		
+		/**
+		 * The order in which the Sequence was found within its branch.
+		 */
+		private int order;
+		
+		/**
+		 * Creates a Cover for a Sequence found in a branch of the search.
+		 * @param sequence the covering Sequence.
+		 * @param branch the index of the branch.
+		 * @param order the order of finding within the branch.
+		 */
+		private Cover(Sequence sequence, int branch, int order) {
+			this.sequence = sequence;
+			this.branch = branch;
+			this.order = order;
+		}
+		
+		/**
+		 * Compares this Cover with another Cover.  Shorter Sequences come
+		 * first; then Sequences in earlier branches; then Sequences found
+		 * earlier in the same branch.
+		 * @param other the other Cover.
+		 * @return a negative, zero or positive integer.
+		 */
+		@Override
+		public int compareTo(Cover other) {
+			int result = sequence.size() - other.sequence.size();
+			if (result == 0)
+				result = branch - other.branch;
+			if (result == 0)
+				result = order - other.order;
+			return result;
+		}
+	}
+	
+	/**
+	 * BranchSearch represents the fork/join task that searches a range of
+	 * branches.  A range of several branches is split in half, and both
+	 * halves are searched in parallel.  A single branch is searched by a
+	 * breadth-first exploration of all Sequences starting with its Event.
+	 */
+	private class BranchSearch extends RecursiveAction {
+		
+		/**
+		 * The serial version UID of this task.
+		 */
+		private static final long serialVersionUID = 1L;
+		
+		/**
+		 * The index of the first branch in the range.
+		 */
+		private int low;
+		
+		/**
+		 * The index after the last branch in the range.
+		 */
+		private int high;
+		
+		/**
+		 * Creates a BranchSearch task for a range of branches.
+		 * @param low the index of the first branch.
+		 * @param high the index after the last branch.
+		 */
+		private BranchSearch(int low, int high) {
+			this.low = low;
+			this.high = high;
+		}
+		
+		/**
+		 * Searches the range of branches.  Splits a range of several 
+		 * branches into two halves and searches these in parallel; 
+		 * otherwise searches the single branch.
+		 */
+		@Override
+		protected void compute() {
+			if (high - low > 1) {
+				int middle = (low + high) / 2;
+				invokeAll(new BranchSearch(low, middle), 
+						new BranchSearch(middle, high));
+			}
+			else if (high > low) {
+				Service replica = acquire();
+				try {
+					searchBranch(low, replica);
+				}
+				finally {
+					replicas.add(replica);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Creates a StateSearch for a Service, using a given number of threads.
+	 * @param service the Service whose state cover is sought.
+	 * @param threads the number of worker threads.
+	 */
+	public StateSearch(Service service, int threads) {
+		this.service = service;
+		this.threads = Math.max(threads, 1);
+	}
+	
+	/**
+	 * Acquires a replica of the Service for the exclusive use of a worker.
+	 * Waits until some other worker releases a replica, if none is free.
+	 * @return a replica of the Service.
+	 */
+	private Service acquire() {
+		try {
+			return replicas.take();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			semanticError("was interrupted while waiting for a replica.");
+			return null;
+		}
+	}
+	
+	/**
+	 * Computes the rank of a Sequence of a given length in a given branch.
+	 * Shorter Sequences rank before longer Sequences; and Sequences of the
+	 * same length rank in the order of their branches.
+	 * @param length the length of the Sequence.
+	 * @param branch the index of the branch, or -1 for the empty Sequence.
+	 * @return the rank of the Sequence.
+	 */
+	private long rank(int length, int branch) {
+		return (long) length * (alphabet.size() + 1) + branch + 1;
+	}
+	
+	/**
+	 * Records that a Sequence of the given rank covers a named State, if
+	 * this improves on the best rank known so far for that State.
+	 * @param name the name of the covered State.
+	 * @param rank the rank of the covering Sequence.
+	 */
+	private void improve(String name, long rank) {
+		while (true) {
+			Long best = ranks.get(name);
+			if (best == null) {
+				if (ranks.putIfAbsent(name, rank) == null)
+					return;
+			}
+			else if (best <= rank || ranks.replace(name, best, rank))
+				return;
+		}
+	}
+	
+	/**
+	 * Reports whether a Sequence of the given rank could still improve on
+	 * the best rank known for some State.  If not, the worker exploring
+	 * Sequences of this rank may stop, since all further Sequences in its
+	 * branch rank even lower.
+	 * @param rank the rank of the Sequences about to be explored.
+	 * @return true, if some State could still be improved.
+	 */
+	private boolean canImprove(long rank) {
+		for (String name : toFind) {
+			Long best = ranks.get(name);
+			if (best == null || best > rank)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Searches one branch of the state space, on a replica of the Service.
+	 * Resets the replica, then explores breadth-first all Sequences that 
+	 * start with the Event of this branch.  Each explored Sequence is paired
+	 * with a Checkpoint of the configuration that it reached, from which
+	 * its extensions are simulated.  Only Sequences whose last Event fired
+	 * successfully, and which reached a configuration not visited before in
+	 * this branch, are explored further.  Stops when every State was found
+	 * in this branch, or when this branch can no longer improve on the 
+	 * Sequences found in other branches, or when the search times out.
+	 * @param branch the index of the branch.
+	 * @param replica the replica of the Service to simulate.
+	 */
+	private void searchBranch(int branch, Service replica) {
+		Machine machine = replica.getMachine();
+		Protocol protocol = replica.getProtocol();
+		machine.index(alphabet);
+		machine.reset();
+		protocol.reset();
+		Checkpoint origin = replica.checkpoint();
+		Set<String> unfound = new HashSet<String>(toFind);
+		unfound.remove(initial);				// covered by the empty Sequence
+		Set<Checkpoint> visited = new HashSet<Checkpoint>();
+		visited.add(origin);
+		List<int[]> paths = new ArrayList<int[]>();
+		List<Checkpoint> reached = new ArrayList<Checkpoint>();
+		paths.add(new int[0]);
+		reached.add(origin);
+		int first = branch;						// the first level only
+		int last = branch + 1;					// extends by this branch
+		int length = 1;
+		int order = 0;
+		while (! unfound.isEmpty() && ! paths.isEmpty() && 
+				canImprove(rank(length, branch)) &&
+				System.currentTimeMillis() < timeout) {
+			// Explore every extension of the current level of this branch
+			List<int[]> nextPaths = new ArrayList<int[]>();
+			List<Checkpoint> nextReached = new ArrayList<Checkpoint>();
+			for (int index = 0; index < paths.size(); ++index) {
+				int[] sequence = paths.get(index);
+				Checkpoint checkpoint = reached.get(index);
+				for (int event = first; event < last; ++event) {
+					Event action = alphabet.getEvent(event);
+					checkpoint.restore();
+					Scenario scenario;
+					if (machine.accept(event) && 
+							(scenario = protocol.tryFire(action)) != null) {
+						machine.fireEvent(event);
+						scenario.commit();
+						Checkpoint target = checkpoint.capture();
+						if (visited.add(target)) {
+							int[] path = Arrays.copyOf(sequence, length);
+							path[length - 1] = event;
+							String name = target.getState().getName();
+							if (unfound.remove(name)) {
+								Sequence found = alphabet.createSequence(path);
+								found.setState(name);
+								covers.add(new Cover(found, branch, order++));
+								improve(name, rank(length, branch));
+							}
+							nextPaths.add(path);
+							nextReached.add(target);
+						}
+					}
+				}
+			}
+			paths = nextPaths;
+			reached = nextReached;
+			first = 0;
+			last = alphabet.size();
+			++length;
+		}
+	}
+	
+	/**
+	 * Searches for the state cover of the Service.  Creates one replica of 
+	 * the Service for each worker thread, then searches all branches of the
+	 * state space in a ForkJoinPool.  Chooses the best covering Sequence 
+	 * for each State, and returns these in the order in which the serial
+	 * search would have found them.  Times out if the configurations of the
+	 * Protocol's Memory are unbounded.
+	 * @param alphabet the Alphabet of the Service's Machine.
+	 * @return the state cover Language for the Service.
+	 */
+	public Language search(Alphabet alphabet) {
+		timeout = System.currentTimeMillis() + Service.TIMEOUT;
+		this.alphabet = alphabet;
+		Machine machine = service.getMachine();
+		toFind = new LinkedHashSet<String>();
+		for (State state : machine.getStates()) {
+			toFind.add(state.getName());
+		}
+		initial = machine.getInitialState().getName();
+		replicas = new ArrayBlockingQueue<Service>(threads);
+		for (int index = 0; index < threads; ++index) {
+			replicas.add(service.replicate());
+		}
+		ranks = new ConcurrentHashMap<String, Long>();
+		covers = new ConcurrentLinkedQueue<Cover>();
+		ranks.put(initial, rank(0, -1));
+		covers.add(new Cover(new Sequence().setState(initial), -1, 0));
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new BranchSearch(0, alphabet.size()));
+		}
+		finally {
+			pool.shutdown();
+		}
+		// Choose the best Cover for each State, then sort in serial order
+		Map<String, Cover> chosen = new LinkedHashMap<String, Cover>();
+		for (Cover cover : covers) {
+			String name = cover.sequence.getState();
+			Cover best = chosen.get(name);
+			if (best == null || cover.compareTo(best) < 0)
+				chosen.put(name, cover);
+		}
+		List<Cover> result = new ArrayList<Cover>(chosen.values());
+		Collections.sort(result);
+		Language stateCover = new Language();
+		for (Cover cover : result) {
+			stateCover.addSequence(cover.sequence);
+		}
+		return stateCover;
+	}
+
+}
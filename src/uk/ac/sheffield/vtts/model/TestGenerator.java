@@ -0,0 +1,543 @@
+/**
+ * Broker@Cloud Verification and Testing Tool Suite.
+ * Copyright (C) 2015 Anthony J H Simons and Raluca Lefticaru, 
+ * University of Sheffield, UK.  All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This file is "foreground software", developed as an output of 
+ * the European Union collaborative research project, "Broker@Cloud: 
+ * enabling continuous quality assurance and optimization in future 
+ * enterprise cloud service brokers", FP7-ICT-2011-8 no. 318392, and
+ * is licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or 
+ * implied.  See the License for the specific language governing 
+ * permissions and limitations under the License.
+ * 
+ * The freedoms granted by the License to incorporate, redistribute,
+ * modify or extend the software apply only to "foreground software"
+ * contributed by the Broker@Cloud project; and not to any proprietary 
+ * software, or "background software" incorporated from other sources, 
+ * which may be offered under different terms of usage.
+ * 
+ * Please contact the Department of Computer Science, University of
+ * Sheffield, Regent Court, 211 Portobello, Sheffield S1 4DP, UK or
+ * visit www.sheffield.ac.uk/dcs if you need additional information 
+ * or have any questions.
+ */
+
+package uk.ac.sheffield.vtts.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * TestGenerator represents the generation of TestSequences for a Service,
+ * from the Sequences of a Language.  A TestGenerator adds the TestSequence
+ * generated by simulating each feasible Sequence to a TestSuite, in the 
+ * order of the Language, so that the TestSuite numbers the TestSequences
+ * in this order.  It counts the infeasible Sequences, for which no 
+ * TestSequence could be generated, and the redundant Sequences, whose
+ * TestSequence was already in the TestSuite.
+ * <p>
+ * The Sequences of a Language are simulated in tasks, each of which yields
+ * an Outcome:  the TestSequences generated by the task, in order, and the
+ * counts of any infeasible or redundant Sequences that it detected.  A
+ * BoundedProduct is expanded in one task for each prefix, which extends 
+ * the prefix only by those Events that are feasible, and not refused,
+ * after the simulated prefix.  Infeasible subtrees and subtrees below a
+ * refusal are therefore never built; instead, their Sequences are counted
+ * arithmetically, as infeasible or redundant.  Any other Language
+ * is simulated in batches of consecutive Sequences.
+ * <p>
+ * Using a single thread, a TestGenerator performs each task in turn, by
+ * simulating the Service itself.  Using several threads, the tasks are
+ * performed concurrently by a pool of worker threads.  Each worker 
+ * simulates its own replica of the Service, since simulation modifies the
+ * Machine and Protocol.  Outcomes are added in the order of the tasks, so
+ * the TestSuite is numbered in the same way as for a single thread.  Only
+ * a few tasks are in progress at any time, so the Language is never stored
+ * in full.  When all tasks are done, the coverage of the replicas is merged
+ * into the Service's Machine.
+ * 
+ * @author Anthony J H Simons
+ * @version Broker@Cloud 1.0
+ */
+public class TestGenerator extends Element {
+	
+	/**
+	 * The number of consecutive Sequences in each batch.
+	 */
+	public static final int BATCH = 256;
+	
+	/**
+	 * The Service whose TestSequences are generated.
+	 */
+	private Service service;
+	
+	/**
+	 * The number of threads to use.
+	 */
+	private int threads;
+	
+	/**
+	 * The Workers that are not busy.
+	 */
+	private BlockingQueue<Worker> workers;
+	
+	/**
+	 * The number of infeasible Sequences found so far.
+	 */
+	private int infeasible = 0;
+	
+	/**
+	 * The number of redundant Sequences found so far.
+	 */
+	private int redundant = 0;
+	
+	/**
+	 * Worker represents a replica of the Service, owned by one worker at a
+	 * time, together with the PrefixTree of the prefixes that it simulated.
+	 * Below a prefix of a BoundedProduct, the PrefixTree only retains the
+	 * suffix that is currently being expanded.
+	 */
+	private static class Worker {
+		
+		/**
+		 * The replica of the Service.
+		 */
+		private Service replica;
+		
+		/**
+		 * The PrefixTree of prefixes simulated on the replica.
+		 */
+		private PrefixTree prefixTree;
+		
+		/**
+		 * Creates a Worker for a replica of a Service.
+		 * @param replica the replica of the Service.
+		 */
+		private Worker(Service replica) {
+			this.replica = replica;
+			replica.getMachine().clear();
+			prefixTree = replica.generateTestSteps();
+		}
+	}
+	
+	/**
+	 * Outcome represents the result of one task:  the TestSequences that it
+	 * generated, in order, and the numbers of infeasible and redundant 
+	 * Sequences that it detected.
+	 */
+	private static class Outcome {
+		
+		/**
+		 * The generated TestSequences, in order.
+		 */
+		private List<TestSequence> testSequences = 
+				new ArrayList<TestSequence>();
+		
+		/**
+		 * The number of infeasible Sequences.
+		 */
+		private long infeasible = 0;
+		
+		/**
+		 * The number of redundant Sequences.
+		 */
+		private long redundant = 0;
+	}
+	
+	/**
+	 * Task represents the simulation of part of a Language, on a borrowed
+	 * Worker.
+	 */
+	private abstract class Task implements Callable<Outcome> {
+		
+		/**
+		 * Borrows a Worker for the duration of this Task.
+		 * @return the Outcome of this Task.
+		 * @throws InterruptedException if interrupted waiting for a Worker.
+		 */
+		@Override
+		public Outcome call() throws InterruptedException {
+			Worker worker = workers.take();
+			try {
+				return perform(worker);
+			}
+			finally {
+				workers.add(worker);
+			}
+		}
+		
+		/**
+		 * Performs this Task on a Worker.
+		 * @param worker the Worker.
+		 * @return the Outcome of this Task.
+		 */
+		protected abstract Outcome perform(Worker worker);
+	}
+	
+	/**
+	 * Batch represents the task of generating the TestSequences for a batch
+	 * of consecutive Sequences.
+	 */
+	private class Batch extends Task {
+		
+		/**
+		 * The Sequences of this Batch.
+		 */
+		private List<Sequence> sequences;
+		
+		/**
+		 * Creates a Batch of consecutive Sequences.
+		 * @param sequences the Sequences.
+		 */
+		private Batch(List<Sequence> sequences) {
+			this.sequences = sequences;
+		}
+		
+		/**
+		 * Generates the TestSequences for this Batch, counting each 
+		 * infeasible Sequence.
+		 * @param worker the Worker.
+		 * @return the Outcome of this Batch.
+		 */
+		@Override
+		protected Outcome perform(Worker worker) {
+			Outcome outcome = new Outcome();
+			for (Sequence sequence : sequences) {
+				TestSequence testSequence = worker.replica.
+						generateTestSequence(sequence, worker.prefixTree);
+				if (testSequence == null)
+					++outcome.infeasible;
+				else
+					outcome.testSequences.add(testSequence);
+			}
+			return outcome;
+		}
+	}
+	
+	/**
+	 * Expansion represents the task of generating the TestSequences for one
+	 * prefix of a BoundedProduct.  The suffixes are expanded depth-first,
+	 * each in alphabetical order, so that the Worker's PrefixTree only holds
+	 * the nodes of the current suffix below the prefix.  Each extension
+	 * restores the Checkpoint of its parent node, so backtracking needs no
+	 * further simulation, and the branch to each extension is released
+	 * once its subtree has been expanded.  Since the product lists the
+	 * suffixes one length at a time, the TestSequences are collected in a
+	 * separate list for each suffix length, which are joined in order.
+	 * A suffix is extended only if its simulation was feasible and was not
+	 * refused, so the subtree below an infeasible suffix is never built;
+	 * instead, all of its Sequences are counted as infeasible.  Likewise, 
+	 * every longer Sequence below a refused suffix would be truncated to 
+	 * the TestSequence of the refused suffix, so is counted as redundant,
+	 * without being built.  Suffixes that duplicate earlier
+	 * Sequences of the product are simulated, if longer suffixes may extend
+	 * them, but yield no TestSequence.
+	 */
+	private class Expansion extends Task {
+		
+		/**
+		 * The BoundedProduct to expand.
+		 */
+		private BoundedProduct product;
+		
+		/**
+		 * The index of the prefix to expand.
+		 */
+		private int prefix;
+		
+		/**
+		 * Creates an Expansion of one prefix of a BoundedProduct.
+		 * @param product the BoundedProduct.
+		 * @param prefix the index of the prefix.
+		 */
+		private Expansion(BoundedProduct product, int prefix) {
+			this.product = product;
+			this.prefix = prefix;
+		}
+		
+		/**
+		 * Expands the prefix of this Expansion, depth-first.  Simulates the
+		 * prefix, then expands its suffixes from the node for the prefix.
+		 * Finally joins the TestSequences generated for each suffix length,
+		 * in the order of the product.
+		 * @param worker the Worker.
+		 * @return the Outcome of this Expansion.
+		 */
+		@Override
+		protected Outcome perform(Worker worker) {
+			Outcome outcome = new Outcome();
+			Sequence base = product.getPrefixes().get(prefix);
+			PrefixTree node = worker.prefixTree;
+			for (Event event : base.getEvents()) {
+				if (node.getTestStep().isRefused())
+					break;
+				node = worker.replica.extendTestSteps(node, event);
+				if (node.getTestStep() == null)
+					break;
+			}
+			List<List<TestSequence>> levels = 
+					new ArrayList<List<TestSequence>>();
+			expand(worker, outcome, node, new Sequence(base), new int[0], 
+					levels);
+			for (List<TestSequence> level : levels)
+				outcome.testSequences.addAll(level);
+			return outcome;
+		}
+		
+		/**
+		 * Handles one simulated suffix of the prefix, then expands it.  If
+		 * the suffix was infeasible, counts all of its extensions as 
+		 * infeasible.  Otherwise, generates its TestSequence, unless it 
+		 * duplicates an earlier Sequence.  If the suffix was refused, counts
+		 * all of its longer extensions as redundant, since each would be 
+		 * truncated to the same TestSequence.  Otherwise, if any extension
+		 * remains to be generated, extends the suffix by each Event of the
+		 * Alphabet in turn, expanding each extension recursively, then 
+		 * releasing its branch.
+		 * @param worker the Worker.
+		 * @param outcome the Outcome of this Expansion.
+		 * @param node the node of the PrefixTree for the suffix.
+		 * @param sequence the prefix extended by the suffix.
+		 * @param suffix the suffix, as Alphabet indices.
+		 * @param levels the TestSequences generated for each suffix length.
+		 */
+		private void expand(Worker worker, Outcome outcome, PrefixTree node,
+				Sequence sequence, int[] suffix, 
+				List<List<TestSequence>> levels) {
+			long extensions = product.countExtensions(prefix, suffix);
+			if (node.getTestStep() == null) {
+				outcome.infeasible += extensions;  // prune the whole subtree
+				return;
+			}
+			if (! product.isDuplicate(prefix, suffix)) {
+				while (levels.size() <= suffix.length)
+					levels.add(new ArrayList<TestSequence>());
+				levels.get(suffix.length).add(worker.replica.
+						generateTestSequence(sequence, worker.prefixTree));
+				--extensions;
+			}
+			if (node.getTestStep().isRefused())
+				outcome.redundant += extensions;  // prune the whole subtree
+			else if (extensions > 0) {
+				Alphabet alphabet = product.getAlphabet();
+				for (int index = 0; index < alphabet.size(); ++index) {
+					Event event = alphabet.getEvent(index);
+					int[] extension = new int[suffix.length + 1];
+					System.arraycopy(suffix, 0, extension, 0, suffix.length);
+					extension[suffix.length] = index;
+					Sequence extended = new Sequence(sequence);
+					extended.addEvent(event);
+					extended.setPath(sequence.getPath() + 1);
+					expand(worker, outcome, 
+							worker.replica.extendTestSteps(node, event), 
+							extended, extension, levels);
+					node.removeBranch(event);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * BatchIterator yields a Batch for each run of consecutive Sequences
+	 * of a Language, creating each Batch on demand.
+	 */
+	private class BatchIterator implements Iterator<Task> {
+		
+		/**
+		 * The Sequences to simulate.
+		 */
+		private Iterator<Sequence> sequences;
+		
+		/**
+		 * Creates a BatchIterator over some Sequences.
+		 * @param sequences the Sequences to simulate.
+		 */
+		private BatchIterator(Iterator<Sequence> sequences) {
+			this.sequences = sequences;
+		}
+		
+		/**
+		 * Reports whether there is another Batch.
+		 * @return true, if there is another Sequence.
+		 */
+		@Override
+		public boolean hasNext() {
+			return sequences.hasNext();
+		}
+		
+		/**
+		 * Returns the next Batch of consecutive Sequences.
+		 * @return the next Batch.
+		 * @throws NoSuchElementException if there are no more Sequences.
+		 */
+		@Override
+		public Task next() {
+			if (! hasNext())
+				throw new NoSuchElementException();
+			List<Sequence> batch = new ArrayList<Sequence>(BATCH);
+			while (batch.size() < BATCH && sequences.hasNext()) {
+				batch.add(sequences.next());
+			}
+			return new Batch(batch);
+		}
+		
+		/**
+		 * Unsupported, since the Batches are generated.
+		 * @throws UnsupportedOperationException always.
+		 */
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	/**
+	 * Creates a TestGenerator for a Service, using a given number of threads.
+	 * @param service the Service whose TestSequences are generated.
+	 * @param threads the number of threads.
+	 */
+	public TestGenerator(Service service, int threads) {
+		this.service = service;
+		this.threads = Math.max(threads, 1);
+	}
+	
+	/**
+	 * Returns the number of infeasible Sequences found by this TestGenerator.
+	 * @return the number of infeasible Sequences.
+	 */
+	public int getInfeasible() {
+		return infeasible;
+	}
+	
+	/**
+	 * Returns the number of redundant Sequences found by this TestGenerator.
+	 * @return the number of redundant Sequences.
+	 */
+	public int getRedundant() {
+		return redundant;
+	}
+	
+	/**
+	 * Generates the TestSequences for every Sequence in a Language, adding
+	 * them to a TestSuite in the order of the Language.  The Service's
+	 * Machine should already have been cleared of coverage, and is marked
+	 * with the coverage of all simulations upon return.
+	 * @param language the Language of Sequences to simulate.
+	 * @param testSuite the TestSuite to which TestSequences are added.
+	 * @return the TestSuite.
+	 */
+	public TestSuite generate(Language language, TestSuite testSuite) {
+		Iterator<Task> tasks;
+		if (language instanceof BoundedProduct) {
+			BoundedProduct product = (BoundedProduct) language;
+			List<Task> expansions = new ArrayList<Task>();
+			for (int index = 0; index < product.getPrefixes().size(); ++index)
+				expansions.add(new Expansion(product, index));
+			tasks = expansions.iterator();
+		}
+		else
+			tasks = new BatchIterator(language.getSequences().iterator());
+		if (threads > 1)
+			generateParallel(tasks, testSuite);
+		else
+			generateSerial(tasks, testSuite);
+		return testSuite;
+	}
+	
+	/**
+	 * Performs each task in turn, by simulating the Service itself.
+	 * @param tasks the tasks to perform.
+	 * @param testSuite the TestSuite to which TestSequences are added.
+	 */
+	private void generateSerial(Iterator<Task> tasks, TestSuite testSuite) {
+		Worker worker = new Worker(service);
+		while (tasks.hasNext()) {
+			addOutcome(tasks.next().perform(worker), testSuite);
+		}
+	}
+	
+	/**
+	 * Performs the tasks concurrently, and adds their Outcomes in order.
+	 * Creates one Worker for each thread, and keeps twice as many tasks in
+	 * progress as there are threads, so that no worker waits for the next
+	 * task.  Rethrows any SemanticError raised during the simulation.  When
+	 * all tasks are done, stops the worker threads and merges the coverage 
+	 * of each Worker's replica into the Service's Machine.
+	 * @param tasks the tasks to perform.
+	 * @param testSuite the TestSuite to which TestSequences are added.
+	 */
+	private void generateParallel(Iterator<Task> tasks, TestSuite testSuite) {
+		workers = new ArrayBlockingQueue<Worker>(threads);
+		for (int index = 0; index < threads; ++index) {
+			workers.add(new Worker(service.replicate()));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		Queue<Future<Outcome>> pending = new ArrayDeque<Future<Outcome>>();
+		try {
+			while (tasks.hasNext() || ! pending.isEmpty()) {
+				while (pending.size() < 2 * threads && tasks.hasNext()) {
+					pending.add(executor.submit(tasks.next()));
+				}
+				addOutcome(pending.remove().get(), testSuite);
+			}
+		}
+		catch (InterruptedException ex) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			semanticError("was interrupted while generating tests.");
+		}
+		catch (ExecutionException ex) {
+			executor.shutdownNow();
+			if (ex.getCause() instanceof Error)
+				throw (Error) ex.getCause();
+			semanticError("failed to generate tests: " + ex.getCause());
+		}
+		executor.shutdown();
+		for (Worker worker : workers) {
+			service.getMachine().mergeCoverage(worker.replica.getMachine());
+		}
+	}
+	
+	/**
+	 * Adds the Outcome of a task to a TestSuite.  Adds its TestSequences in
+	 * order, counting any that were already in the TestSuite as redundant,
+	 * and accumulates its counts of infeasible and redundant Sequences.  The
+	 * counts are clipped to Integer.MAX_VALUE, if they are larger.
+	 * @param outcome the Outcome of a task.
+	 * @param testSuite the TestSuite to which TestSequences are added.
+	 */
+	private void addOutcome(Outcome outcome, TestSuite testSuite) {
+		long redundantSum = redundant + outcome.redundant;
+		for (TestSequence testSequence : outcome.testSequences) {
+			int priorSize = testSuite.size();
+			testSuite.addTestSequence(testSequence);
+			if (testSuite.size() == priorSize)
+				++redundantSum;	// Truncated sequence is redundant
+		}
+		redundant = (int) Math.min(redundantSum, Integer.MAX_VALUE);
+		infeasible = (int) Math.min(infeasible + outcome.infeasible, 
+				Integer.MAX_VALUE);
+	}
+
+}
@@ -114,7 +114,7 @@ public class TestSequence extends Sequence implements Comparable<TestSequence> {
 	 */
 	public List<TestStep> getTestSteps() {
 		List<TestStep> result = new ArrayList<TestStep>();
-		for (Event event : events) 
+		for (Event event : getEvents()) 
 			result.add((TestStep) event);
 		return result;
 	}
@@ -131,8 +131,9 @@ public class TestSequence extends Sequence implements Comparable<TestSequence> {
 	public boolean hasFailures() {
 		for (TestStep testStep : getTestSteps()) {
 			Operation operation = testStep.getOperation();
-			for (Failure failure : operation.getFailures()) {
-				if (! failure.isBound())
+			Parameter[] frame = operation.frame();
+			for (int slot : operation.failureSlots()) {
+				if (! frame[slot].isBound())
 					return true;
 			}
 		}
@@ -154,6 +155,7 @@ public class TestSequence extends Sequence implements Comparable<TestSequence> {
 		if (this == other || size() <= other.size())
 			return false;
 		else {
+			List<Event> events = getEvents();
 			List<Event> prefix = other.getEvents();
 			for (int i = 0; i < prefix.size(); ++i)
 				if (! events.get(i).equals(prefix.get(i)))
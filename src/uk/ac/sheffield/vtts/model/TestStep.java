@@ -89,6 +89,27 @@ public class TestStep extends Event {
 		operation = new Operation(requestName());
 	}
 
+	/**
+	 * Copies another TestStep.  The new TestStep has the same name, expected
+	 * State and verify flag as the other TestStep, and a copy of its tested
+	 * Operation, holding fresh snapshots of each recorded Parameter.  This
+	 * constructor is used when the same simulated TestStep contributes to
+	 * many TestSequences, each of which must own its TestSteps, since they
+	 * may later be verified differently.
+	 * @param other the other TestStep.
+	 */
+	public TestStep(TestStep other) {
+		super(other.name);
+		state = other.state;
+		verify = other.verify;
+		operation = new Operation(other.operation.getName());
+		for (Parameter parameter : other.operation.getParameters()) {
+			Parameter copy = parameter.snapshot();
+			copy.setContent(parameter.getContent());
+			operation.addParameter(copy);
+		}
+	}
+
 	/**
 	 * Sets the name of this TestStep.  Like the name of an Event, the name of
 	 * this TestStep must be in the format: "request/response".  Also, sets the
@@ -177,8 +198,10 @@ public class TestStep extends Event {
 	 * @return this TestStep.
 	 */
 	public TestStep recordInputs(Operation attempted) {
-		for (Input input : attempted.getInputs()) {
+		Parameter[] frame = attempted.frame();
+		for (int slot : attempted.inputSlots()) {
 			// Record all inputs, since all should be bound
+			Parameter input = frame[slot];
 			operation.addParameter(input.snapshot());
 			input.unbind();
 		}
@@ -193,11 +216,14 @@ public class TestStep extends Event {
 	 * @return this TestStep.
 	 */
 	public TestStep recordResults(Operation executed) {
-		for (Output output : executed.getOutputs()) {
+		Parameter[] frame = executed.frame();
+		for (int slot : executed.outputSlots()) {
+			Parameter output = frame[slot];
 			operation.addParameter(output.snapshot());
 			output.unbind();
 		}
-		for (Failure failure : executed.getFailures()) {
+		for (int slot : executed.failureSlots()) {
+			Parameter failure = frame[slot];
 			operation.addParameter(failure.snapshot());
 			failure.unbind();
 		}
@@ -36,8 +36,10 @@ package uk.ac.sheffield.vtts.model;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import uk.ac.sheffield.vtts.ground.Grounding;
@@ -73,6 +75,111 @@ public class TestSuite extends Specification {
 	 */
 	private boolean metaCheck = true;
 	
+	/**
+	 * PrefixIndex represents a trie of the TestSequences in this TestSuite,
+	 * indexed by their TestSteps.  Each node of the trie records the index
+	 * of the TestSequence ending at that node, if any, and the least index
+	 * of any TestSequence ending strictly below that node.
+	 */
+	private static class PrefixIndex {
+		
+		/**
+		 * The branches of this node, indexed by their TestSteps.
+		 */
+		private Map<Event, PrefixIndex> branches = 
+				new HashMap<Event, PrefixIndex>();
+		
+		/**
+		 * The index of the TestSequence ending at this node, or -1.
+		 */
+		private int index = -1;
+		
+		/**
+		 * The least index of any TestSequence ending below this node, or
+		 * -1, if there is no such TestSequence.
+		 */
+		private int below = -1;
+		
+		/**
+		 * Adds a TestSequence to the trie below this node.
+		 * @param testSequence the TestSequence to add.
+		 * @param index the index of the TestSequence.
+		 * @return the node at which the TestSequence ends.
+		 */
+		private PrefixIndex add(TestSequence testSequence, int index) {
+			PrefixIndex node = this;
+			for (Event event : testSequence.getEvents()) {
+				PrefixIndex branch = node.branches.get(event);
+				if (branch == null) {
+					branch = new PrefixIndex();
+					node.branches.put(event, branch);
+				}
+				node = branch;
+			}
+			node.index = index;
+			return node;
+		}
+		
+		/**
+		 * Computes the least index of any TestSequence ending below this
+		 * node, and of each node below this node.
+		 * @return the least index of any TestSequence ending at or below 
+		 * this node, or -1, if there is no such TestSequence.
+		 */
+		private int findLeast() {
+			for (PrefixIndex branch : branches.values()) {
+				int least = branch.findLeast();
+				if (least >= 0 && (below < 0 || least < below))
+					below = least;
+			}
+			if (index >= 0 && (below < 0 || index < below))
+				return index;
+			else
+				return below;
+		}
+	}
+	
+	/**
+	 * Ranked represents a TestSequence with its cached number of verified
+	 * TestSteps, for sorting by order of test priority.
+	 */
+	private static class Ranked implements Comparable<Ranked> {
+		
+		/**
+		 * The ranked TestSequence.
+		 */
+		private TestSequence testSequence;
+		
+		/**
+		 * The number of verified TestSteps in the TestSequence.
+		 */
+		private int count;
+		
+		/**
+		 * Creates a Ranked TestSequence.
+		 * @param testSequence the TestSequence.
+		 */
+		private Ranked(TestSequence testSequence) {
+			this.testSequence = testSequence;
+			count = testSequence.countVerify();
+		}
+		
+		/**
+		 * Compares this Ranked TestSequence with another, in the same way 
+		 * as TestSequence.compareTo, but using the cached verify counts.
+		 * @param other the other Ranked TestSequence.
+		 * @return a negative, zero or positive value, denoting respectively
+		 * that this precedes, is equal in rank to, or follows the other.
+		 */
+		@Override
+		public int compareTo(Ranked other) {
+			if (count == other.count)
+				return testSequence.size() - other.testSequence.size();
+			else
+				return other.count - count;
+		}
+	}
+	
 	/**
 	 * Creates an empty TestSuite.
 	 */
@@ -215,23 +322,36 @@ public class TestSuite extends Specification {
 	 * smaller TestSuite is re-ordered, so that the properties of shorter
 	 * paths are verified before the longer paths of which they are the
 	 * prefix.  The multiTest attribute is set to true.
+	 * <p>
+	 * Each TestSequence is merged with the first longer TestSequence, in
+	 * the order of this TestSuite, of which it is a prefix.  These longer
+	 * TestSequences are found using a trie of all the TestSequences, rather
+	 * than by comparing every pair of TestSequences.  The TestSequences are
+	 * merged in order, so that verified TestSteps are pushed down to the
+	 * longest extensions in one pass.
 	 * @return the size of this compressed TestSuite.
 	 */
 	public int compress() {
-		List<TestSequence> result = new ArrayList<TestSequence>();
-		for (TestSequence shorter : getTestSequences()) {
-			boolean merged = false;
-			for (TestSequence longer : getTestSequences()) {
-				if (merged = longer.mergePrefix(shorter)) 
-					break;
-			}
-			if (! merged)
-				result.add(shorter);
+		List<TestSequence> tests = new ArrayList<TestSequence>(testSequences);
+		PrefixIndex root = new PrefixIndex();
+		List<PrefixIndex> ends = new ArrayList<PrefixIndex>(tests.size());
+		for (int index = 0; index < tests.size(); ++index)
+			ends.add(root.add(tests.get(index), index));
+		root.findLeast();
+		List<Ranked> result = new ArrayList<Ranked>();
+		for (int index = 0; index < tests.size(); ++index) {
+			// Merge with the first longer TestSequence, if any
+			int longer = ends.get(index).below;
+			if (longer >= 0)
+				tests.get(longer).mergePrefix(tests.get(index));
+			else
+				result.add(new Ranked(tests.get(index)));
 		}
 		Collections.sort(result);  // By order of test priority
 		multiTest = true;
 		testSequences = new LinkedHashSet<TestSequence>();
-		for(TestSequence test : result) {
+		for (Ranked ranked : result) {
+			TestSequence test = ranked.testSequence;
 			testSequences.add(test);
 			test.setTest(testSequences.size());
 		}
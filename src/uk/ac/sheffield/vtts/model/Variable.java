@@ -69,8 +69,9 @@ public class Variable extends Parameter {
 	@Override
 	public Variable snapshot() {
 		Variable result = new Variable(name, type);
-		if (value != null)
-			result.setContent(value.toString());
+		Object current = assignedValue();
+		if (current != null)
+			result.setContent(current.toString());
 		return result;
 	}
 